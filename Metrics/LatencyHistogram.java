@@ -0,0 +1,156 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long something took, in nanoseconds, in buckets whose width
+ * grows with the value, so it covers everything from a few nanoseconds to
+ * hours in a few hundred buckets while keeping every reading to within about
+ * 12% of the real value.
+ * <p>
+ * Values below 8 each get their own bucket. Above that, every power of two is
+ * split into 8 equal buckets, so a value lands in a bucket worked out from
+ * its highest set bit and the 3 bits after it, without any searching.
+ * <p>
+ * Recording is lock-free: it increments one counter in an AtomicLongArray and
+ * adds to a LongAdder, so any number of threads can record at once. Reading
+ * the percentiles while values are being recorded gives an answer that is
+ * close to, but not exactly, a snapshot.
+ */
+public class LatencyHistogram
+{
+	// each power of two is split into 2^SUB_BITS buckets
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	static final int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record one value.
+	 *
+	 * @param nanos How long something took, in nanoseconds. Negative values count as 0.
+	 */
+	public void record(long nanos)
+	{
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		total.add(value);
+
+		// only try to raise the max if it is actually higher, which is rare
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value))
+		{
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Get the number of values recorded.
+	 */
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	/**
+	 * Get the mean of the values recorded.
+	 *
+	 * @return The mean in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public double getMean()
+	{
+		long n = getCount();
+		return (n == 0) ? 0 : (double) total.sum() / n;
+	}
+
+	/**
+	 * Get the highest value recorded, exactly.
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Get the value that a fraction of the recorded values are at or below.
+	 *
+	 * @param fraction The fraction, such as 0.99 for the 99th percentile
+	 * @return The top of the bucket the percentile falls in, in nanoseconds
+	 * (but no more than the max), or 0 if nothing has been recorded
+	 */
+	public long getPercentile(double fraction)
+	{
+		long[] snapshot = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			snapshot[i] = counts.get(i);
+			n += snapshot[i];
+		}
+		if (n == 0)
+		{
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(fraction * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += snapshot[i];
+			if (seen >= rank)
+			{
+				return Math.min(upperBoundOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Forget everything that has been recorded.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts.set(i, 0);
+		}
+		count.reset();
+		total.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Work out which bucket a value goes in.
+	 */
+	static int bucketOf(long value)
+	{
+		if (value < SUB_BUCKETS)
+		{
+			return (int) value;
+		}
+
+		int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		int shift = highestBit - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	/**
+	 * Get the highest value that goes in a bucket.
+	 */
+	static long upperBoundOf(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,93 @@
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Where the trie and suffix trie register their metrics, which are shown as
+ * JMX MBeans under the "trie" domain (for example in JConsole or VisualVM).
+ * <p>
+ * Metrics are off unless the JVM is started with {@code -Dtrie.metrics=true}.
+ * The switch is a static final field, so when it is off the JIT compiler
+ * removes the timing code altogether, and the only cost left is the check at
+ * class loading.
+ */
+public final class Metrics
+{
+	/**
+	 * Whether operations should be timed and structures registered.
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("trie.metrics");
+
+	static final String DOMAIN = "trie";
+
+	private static final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+	private Metrics()
+	{
+	}
+
+	/**
+	 * Get the metrics for an operation, creating them and registering them
+	 * with JMX the first time.
+	 *
+	 * @param type      The class the operation belongs to, such as "Trie"
+	 * @param operation The name of the operation, such as "insert"
+	 * @return The metrics for the operation
+	 */
+	public static OperationMetrics operation(String type, String operation)
+	{
+		return operations.computeIfAbsent(type + "." + operation, key -> {
+			OperationMetrics metrics = new OperationMetrics();
+			if (ENABLED)
+			{
+				register("type=" + type + ",operation=" + operation, metrics);
+			}
+			return metrics;
+		});
+	}
+
+	/**
+	 * Register the size and build time of a structure that has just been
+	 * built, replacing anything already registered under the same name. Does
+	 * nothing if metrics are off.
+	 * <p>
+	 * The nodes are counted once, here, so the MBean server never holds on to
+	 * the structure or walks it while it is being changed.
+	 *
+	 * @param type        The class of the structure, such as "Trie"
+	 * @param name        What the structure was built from, such as the file name
+	 * @param structure   The structure
+	 * @param nodeCounter Counts the nodes in the structure, which is only done if metrics are on
+	 * @param buildNanos  How long the structure took to build, in nanoseconds
+	 * @param <T>         The type of the structure
+	 */
+	public static <T> void structure(String type, String name, T structure, ToLongFunction<T> nodeCounter, long buildNanos)
+	{
+		if (ENABLED)
+		{
+			register("type=" + type + ",structure=" + ObjectName.quote(name),
+					new StructureMetrics(nodeCounter.applyAsLong(structure), buildNanos));
+		}
+	}
+
+	private static void register(String properties, Object mbean)
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+			if (server.isRegistered(name))
+			{
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(mbean, name);
+		}
+		catch (JMException ex)
+		{
+			// metrics are only for watching, so a failure to register shouldn't stop anything working
+			System.err.println("Could not register metrics " + properties + ": " + ex);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * The latency histogram for one operation, as a JMX MBean. Get one from
+ * {@link Metrics#operation(String, String)}, and time the operation only when
+ * {@link Metrics#ENABLED} is set:
+ *
+ * <pre>
+ * long start = Metrics.ENABLED ? System.nanoTime() : 0;
+ * ...
+ * if (Metrics.ENABLED)
+ * {
+ *     INSERT_METRICS.recordSince(start);
+ * }
+ * </pre>
+ */
+public class OperationMetrics implements OperationMetricsMBean
+{
+	private final LatencyHistogram histogram = new LatencyHistogram();
+	private volatile long since = System.nanoTime();
+
+	/**
+	 * Record one run of the operation.
+	 *
+	 * @param start The System.nanoTime() when the operation started
+	 */
+	public void recordSince(long start)
+	{
+		histogram.record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Get the histogram of how long the operation has taken.
+	 */
+	public LatencyHistogram getHistogram()
+	{
+		return histogram;
+	}
+
+	@Override
+	public long getCount()
+	{
+		return histogram.getCount();
+	}
+
+	@Override
+	public double getRatePerSecond()
+	{
+		double seconds = (System.nanoTime() - since) / 1e9;
+		return (seconds <= 0) ? 0 : histogram.getCount() / seconds;
+	}
+
+	@Override
+	public double getMeanMicros()
+	{
+		return histogram.getMean() / 1e3;
+	}
+
+	@Override
+	public double getP50Micros()
+	{
+		return histogram.getPercentile(0.50) / 1e3;
+	}
+
+	@Override
+	public double getP99Micros()
+	{
+		return histogram.getPercentile(0.99) / 1e3;
+	}
+
+	@Override
+	public double getMaxMicros()
+	{
+		return histogram.getMax() / 1e3;
+	}
+
+	@Override
+	public void reset()
+	{
+		histogram.reset();
+		since = System.nanoTime();
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("count=%d, mean=%.2f us, p50=%.2f us, p99=%.2f us, max=%.2f us",
+				getCount(), getMeanMicros(), getP50Micros(), getP99Micros(), getMaxMicros());
+	}
+}
@@ -0,0 +1,20 @@
+/**
+ * The figures JMX shows for one operation, such as Trie.insert. Times are in
+ * microseconds, and the rate is per second since the figures were last reset.
+ */
+public interface OperationMetricsMBean
+{
+	long getCount();
+
+	double getRatePerSecond();
+
+	double getMeanMicros();
+
+	double getP50Micros();
+
+	double getP99Micros();
+
+	double getMaxMicros();
+
+	void reset();
+}
@@ -0,0 +1,32 @@
+/**
+ * The size and build time of one built structure, as a JMX MBean. Only the
+ * figures are kept, not the structure, so registering it doesn't stop the
+ * structure from being garbage collected.
+ */
+public class StructureMetrics implements StructureMetricsMBean
+{
+	private final long nodeCount;
+	private final long buildNanos;
+
+	/**
+	 * @param nodeCount  The number of nodes in the structure when it was built
+	 * @param buildNanos How long it took to build, in nanoseconds
+	 */
+	public StructureMetrics(long nodeCount, long buildNanos)
+	{
+		this.nodeCount = nodeCount;
+		this.buildNanos = buildNanos;
+	}
+
+	@Override
+	public long getNodeCount()
+	{
+		return nodeCount;
+	}
+
+	@Override
+	public double getBuildTimeMillis()
+	{
+		return buildNanos / 1e6;
+	}
+}
@@ -0,0 +1,13 @@
+/**
+ * The figures JMX shows for one built structure, such as a Trie read in from
+ * a dictionary.
+ */
+public interface StructureMetricsMBean
+{
+	/**
+	 * The number of nodes, counted when the structure was built.
+	 */
+	long getNodeCount();
+
+	double getBuildTimeMillis();
+}
@@ -0,0 +1,315 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shape and estimated size of a built structure, filled in by a walker
+ * such as TrieStats or SuffixTrieStats, so that a change to how a structure
+ * is stored can be judged by numbers.
+ * <p>
+ * It holds named counts (such as the number of nodes), named histograms
+ * (such as how many nodes have each number of children), and the estimated
+ * bytes used by each component of the structure (such as the nodes or the
+ * child maps).
+ * <p>
+ * The sizes are estimates of what the objects take up on a 64-bit HotSpot JVM
+ * with compressed references, which is the default for heaps under 32GB:
+ * every object has a 12 byte header, every array a 16 byte header, a
+ * reference is 4 bytes, and everything is padded to a multiple of 8 bytes.
+ * The size of an object is worked out from its class's fields, so it follows
+ * any change to the fields.
+ */
+public class StructureStats
+{
+	private static final int OBJECT_HEADER = 12;
+	private static final int ARRAY_HEADER = 16;
+	private static final int REFERENCE = 4;
+	private static final int ALIGNMENT = 8;
+
+	private static final Map<Class<?>, Long> shallowSizes = new ConcurrentHashMap<>();
+
+	private final String name;
+	private final Map<String, Long> counts = new LinkedHashMap<>();
+	private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+	private final Map<String, long[]> components = new LinkedHashMap<>();
+
+	/**
+	 * @param name What the structure is, such as "Trie of words.txt"
+	 */
+	public StructureStats(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Add to a count, creating it the first time.
+	 */
+	public void count(String count, long amount)
+	{
+		counts.merge(count, amount, Long::sum);
+	}
+
+	/**
+	 * Get a count, which is 0 if nothing was added to it.
+	 */
+	public long getCount(String count)
+	{
+		return counts.getOrDefault(count, 0L);
+	}
+
+	/**
+	 * Record a value in a histogram, creating it the first time.
+	 *
+	 * @param histogram The name of the histogram, such as "fanout"
+	 * @param value     The value, which can't be negative
+	 */
+	public void record(String histogram, int value)
+	{
+		histograms.computeIfAbsent(histogram, key -> new Histogram()).record(value);
+	}
+
+	/**
+	 * Get a histogram, or null if nothing was recorded in it.
+	 */
+	public Histogram getHistogram(String histogram)
+	{
+		return histograms.get(histogram);
+	}
+
+	/**
+	 * Add some objects to a component of the structure, creating it the first time.
+	 *
+	 * @param component The name of the component, such as "nodes"
+	 * @param objects   How many objects are being added
+	 * @param bytes     How many bytes they take up altogether
+	 */
+	public void add(String component, long objects, long bytes)
+	{
+		long[] totals = components.computeIfAbsent(component, key -> new long[2]);
+		totals[0] += objects;
+		totals[1] += bytes;
+	}
+
+	/**
+	 * Get the estimated bytes used by a component, which is 0 if nothing was added to it.
+	 */
+	public long getBytes(String component)
+	{
+		long[] totals = components.get(component);
+		return (totals == null) ? 0 : totals[1];
+	}
+
+	/**
+	 * Get the estimated bytes used by the whole structure.
+	 */
+	public long getTotalBytes()
+	{
+		return components.values().stream().mapToLong(totals -> totals[1]).sum();
+	}
+
+	/**
+	 * Estimate the size of an object of a class, not counting anything it refers to.
+	 */
+	public static long shallowSize(Class<?> type)
+	{
+		return shallowSizes.computeIfAbsent(type, key -> {
+			long fieldBytes = 0;
+			for (Class<?> c = key; c != null; c = c.getSuperclass())
+			{
+				for (Field field : c.getDeclaredFields())
+				{
+					if (!Modifier.isStatic(field.getModifiers()))
+					{
+						fieldBytes += fieldSize(field.getType());
+					}
+				}
+			}
+			return align(OBJECT_HEADER + fieldBytes);
+		});
+	}
+
+	/**
+	 * Estimate the size of an array.
+	 *
+	 * @param elementType The type of the elements, such as char.class or Object.class
+	 * @param length      The length of the array
+	 */
+	public static long arraySize(Class<?> elementType, int length)
+	{
+		return align(ARRAY_HEADER + (long) length * fieldSize(elementType));
+	}
+
+	/**
+	 * Estimate the size of a String and its characters, which take 1 byte each
+	 * if they are all Latin-1 and 2 bytes each if not.
+	 */
+	public static long stringSize(String string)
+	{
+		boolean latin1 = string.chars().allMatch(c -> c < 256);
+		return shallowSize(String.class) + arraySize(byte.class, latin1 ? string.length() : 2 * string.length());
+	}
+
+	private static int fieldSize(Class<?> type)
+	{
+		if (type == long.class || type == double.class)
+		{
+			return 8;
+		}
+		if (type == int.class || type == float.class)
+		{
+			return 4;
+		}
+		if (type == char.class || type == short.class)
+		{
+			return 2;
+		}
+		if (type == byte.class || type == boolean.class)
+		{
+			return 1;
+		}
+		return REFERENCE;
+	}
+
+	private static long align(long bytes)
+	{
+		return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	/**
+	 * Write out all the counts, histograms and components.
+	 */
+	public String report()
+	{
+		StringBuilder report = new StringBuilder(name).append('\n');
+		for (Map.Entry<String, Long> count : counts.entrySet())
+		{
+			report.append(String.format("  %-24s %,d%n", count.getKey(), count.getValue()));
+		}
+
+		long total = getTotalBytes();
+		// a structure without nodes, like a suffix array, is measured per character instead
+		boolean perNode = counts.containsKey("nodes");
+		long divisor = Math.max(getCount(perNode ? "nodes" : "characters"), 1);
+		report.append(String.format("  %-24s %14s %14s %8s %8s%n", "estimated bytes", "objects", "bytes", "share", perNode ? "per node" : "per char"));
+		for (Map.Entry<String, long[]> component : components.entrySet())
+		{
+			long[] totals = component.getValue();
+			report.append(String.format("  %-24s %,14d %,14d %7.1f%% %8.1f%n", component.getKey(), totals[0], totals[1],
+					100.0 * totals[1] / Math.max(total, 1), (double) totals[1] / divisor));
+		}
+		report.append(String.format("  %-24s %14s %,14d %7.1f%% %8.1f%n", "total", "", total, 100.0, (double) total / divisor));
+
+		for (Map.Entry<String, Histogram> histogram : histograms.entrySet())
+		{
+			report.append("  ").append(histogram.getKey()).append(": ").append(histogram.getValue()).append('\n');
+		}
+		return report.toString();
+	}
+
+	@Override
+	public String toString()
+	{
+		return report();
+	}
+
+	/**
+	 * Counts how many times each value was seen. Values below 8 are counted
+	 * on their own, and bigger values in one bucket per power of two, so a
+	 * histogram of anything from fanouts to label lengths stays short.
+	 */
+	public static class Histogram
+	{
+		private static final int EXACT = 8;
+
+		private long[] counts = new long[EXACT];
+		private long count = 0;
+		private long total = 0;
+		private int max = 0;
+
+		/**
+		 * Record one value.
+		 *
+		 * @param value The value, which can't be negative
+		 */
+		public void record(int value)
+		{
+			if (value < 0)
+			{
+				throw new IllegalArgumentException("A histogram can't record a negative value: " + value);
+			}
+
+			int bucket = bucketOf(value);
+			if (bucket >= counts.length)
+			{
+				counts = Arrays.copyOf(counts, bucket + 1);
+			}
+			counts[bucket]++;
+			count++;
+			total += value;
+			max = Math.max(max, value);
+		}
+
+		private static int bucketOf(int value)
+		{
+			// 8..15 is bucket 8, 16..31 is bucket 9, and so on
+			return (value < EXACT) ? value : EXACT + (31 - Integer.numberOfLeadingZeros(value)) - 3;
+		}
+
+		private static int bucketStart(int bucket)
+		{
+			return (bucket < EXACT) ? bucket : 1 << (bucket - EXACT + 3);
+		}
+
+		/**
+		 * Get the number of values recorded.
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * Get the average of the values recorded, or 0 if there are none.
+		 */
+		public double getMean()
+		{
+			return (count == 0) ? 0 : (double) total / count;
+		}
+
+		/**
+		 * Get the biggest value recorded, or 0 if there are none.
+		 */
+		public int getMax()
+		{
+			return max;
+		}
+
+		/**
+		 * Get how many values were exactly this, for a value below 8.
+		 */
+		public long getCountOf(int value)
+		{
+			return (value < counts.length) ? counts[value] : 0;
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder text = new StringBuilder(String.format("mean %.2f, max %d;", getMean(), max));
+			for (int bucket = 0; bucket < counts.length; bucket++)
+			{
+				if (counts[bucket] == 0)
+				{
+					continue;
+				}
+				int start = bucketStart(bucket);
+				String range = (bucket < EXACT) ? String.valueOf(start) : start + "-" + (2 * start - 1);
+				text.append(String.format(" %s: %,d (%.1f%%)", range, counts[bucket], 100.0 * counts[bucket] / count));
+			}
+			return text.toString();
+		}
+	}
+}
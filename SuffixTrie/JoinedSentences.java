@@ -0,0 +1,144 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The sentences a {@link SuffixTree} or {@link SuffixArray} is built over,
+ * cleaned the same way as in SuffixTrie and joined into one char array with
+ * a separator after each. A pattern can't contain the separator, so a match
+ * never runs across two sentences.
+ * <p>
+ * A match is found as a position in the joined text, and is turned back into
+ * a sentence and a character with a binary search over where the sentences
+ * start. Every sentence, even an empty one, is followed by a separator, so
+ * no two sentences start at the same position.
+ */
+final class JoinedSentences
+{
+	// put after every sentence, so no pattern can match across one
+	static final char SEPARATOR = '\0';
+
+	private final char[] text;
+	private final int[] sentenceStarts;
+	// the characters that can't be in a sentence: the separator and anything put after the last sentence
+	private final String reserved;
+
+	/**
+	 * Clean and join some sentences.
+	 *
+	 * @param sentences The sentences, which are cleaned the same way as by {@link SuffixTrie#insert(String, int)}
+	 * @param ending    Characters to put after the last separator, which can't be in any sentence either
+	 * @throws IllegalArgumentException if a sentence contains the separator or a character of the ending
+	 */
+	JoinedSentences(List<String> sentences, String ending)
+	{
+		reserved = SEPARATOR + ending;
+		sentenceStarts = new int[sentences.size()];
+		StringBuilder joined = new StringBuilder();
+		for (int i = 0; i < sentences.size(); i++)
+		{
+			String sentence = SuffixTrie.CleanString(sentences.get(i));
+			if (hasReserved(sentence))
+			{
+				throw new IllegalArgumentException("Sentence " + i + " contains a character reserved for separating sentences");
+			}
+			sentenceStarts[i] = joined.length();
+			joined.append(sentence).append(SEPARATOR);
+		}
+		joined.append(ending);
+		text = joined.toString().toCharArray();
+	}
+
+	/**
+	 * Get the joined text. It is the array itself, which mustn't be changed.
+	 */
+	char[] getText()
+	{
+		return text;
+	}
+
+	int getSentenceCount()
+	{
+		return sentenceStarts.length;
+	}
+
+	/**
+	 * Whether a character is the separator or part of the ending, so isn't in any sentence.
+	 */
+	boolean isReserved(char c)
+	{
+		return reserved.indexOf(c) >= 0;
+	}
+
+	/**
+	 * Whether a string contains a character that isn't in any sentence, so it can't match anywhere.
+	 */
+	boolean hasReserved(String string)
+	{
+		for (int i = 0; i < reserved.length(); i++)
+		{
+			if (string.indexOf(reserved.charAt(i)) >= 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Turn the positions of some matches in the joined text into the sentence
+	 * and character each one starts at, in order of sentence and then
+	 * character. Positions on a reserved character, which only the empty
+	 * pattern matches, are left out.
+	 *
+	 * @param positions The positions, in any order
+	 * @param from      The index of the first position to use
+	 * @param to        The index after the last position to use
+	 * @return The data for a {@link SuffixTrieNode} holding the matches
+	 */
+	SuffixTrieData toData(int[] positions, int from, int to)
+	{
+		// the sentence in the high 32 bits and the character in the low 32, so they sort in order
+		long[] indexes = new long[to - from];
+		int kept = 0;
+		for (int i = from; i < to; i++)
+		{
+			int position = positions[i];
+			if (isReserved(text[position]))
+			{
+				continue;
+			}
+			int sentence = sentenceOf(position);
+			indexes[kept++] = ((long) sentence << 32) | (position - sentenceStarts[sentence]);
+		}
+		Arrays.sort(indexes, 0, kept);
+
+		SuffixTrieData data = new SuffixTrieData();
+		for (int i = 0; i < kept; i++)
+		{
+			data.addStartIndex(new SuffixIndex((int) (indexes[i] >>> 32), (int) indexes[i]));
+		}
+		return data;
+	}
+
+	/**
+	 * Find the sentence a position in the joined text is in.
+	 */
+	private int sentenceOf(int position)
+	{
+		int index = Arrays.binarySearch(sentenceStarts, position);
+		return (index >= 0) ? index : -(index + 1) - 1;
+	}
+
+	/**
+	 * Add the estimated size of the text and the sentence starts to some stats.
+	 * See {@link SuffixTrieStats}.
+	 */
+	void addSizes(StructureStats stats)
+	{
+		stats.count("characters", text.length);
+		stats.count("sentences", sentenceStarts.length);
+		stats.add("text", 1, StructureStats.arraySize(char.class, text.length));
+		stats.add("sentence starts", 1, StructureStats.arraySize(int.class, sentenceStarts.length));
+		stats.add("JoinedSentences", 1, StructureStats.shallowSize(JoinedSentences.class) + StructureStats.stringSize(reserved));
+	}
+}
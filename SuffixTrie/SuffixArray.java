@@ -0,0 +1,509 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A suffix array and LCP array of every sentence of a text, answering the
+ * same {@link #get(String)} queries as {@link SuffixTrie} in a fraction of
+ * the memory.
+ * <p>
+ * A SuffixTrie keeps a node, a HashMap, a String label and a list of
+ * SuffixIndex objects for every branch, which comes to hundreds of bytes per
+ * character of text. This keeps the text as one char array, the start of
+ * every suffix in sorted order as one int array, and the length of the
+ * prefix each suffix shares with the one before it (the LCP) as another, so
+ * it needs 2 ints and a char per character once built.
+ * <p>
+ * The suffix array is built in linear time with SA-IS (induced sorting):
+ * only the suffixes that start a run of smaller characters (the LMS
+ * suffixes) are sorted, by sorting a string of half the length or less in the
+ * same way, and the order of every other suffix is worked out from them in
+ * two passes. The LCP array is then filled in with Kasai's algorithm.
+ * <p>
+ * A query is a binary search for the first suffix starting with the
+ * pattern, and the matches are every suffix from there on that shares at
+ * least the pattern's length with the one before it, read off the LCP array.
+ * The sentences are cleaned and joined with a separator after each, and a
+ * match's position is turned back into a sentence and a character, by
+ * {@link JoinedSentences}.
+ */
+public class SuffixArray
+{
+	// only timed when Metrics.ENABLED is set; see Metrics
+	private static final OperationMetrics GET_METRICS = Metrics.operation("SuffixArray", "get");
+
+	private final JoinedSentences joined;
+	private final char[] text;
+	// suffixes[i] is where the i-th smallest suffix of the text starts
+	private final int[] suffixes;
+	// lcp[i] is how many characters suffixes[i] and suffixes[i - 1] start with in common, up to a separator
+	private final int[] lcp;
+
+	/**
+	 * Build a suffix array of some sentences.
+	 *
+	 * @param sentences The sentences, which are cleaned the same way as by {@link SuffixTrie#insert(String, int)}
+	 * @throws IllegalArgumentException if a sentence contains the separator character
+	 */
+	public SuffixArray(List<String> sentences)
+	{
+		joined = new JoinedSentences(sentences, "");
+		text = joined.getText();
+
+		suffixes = buildSuffixArray(text);
+		lcp = buildLcp(text, suffixes);
+	}
+
+	/**
+	 * Sort the suffixes of a text.
+	 */
+	static int[] buildSuffixArray(char[] text)
+	{
+		int n = text.length;
+
+		// number the characters in order from 1, leaving 0 for the end of the text, which must be the smallest
+		int[] names = new int[Character.MAX_VALUE + 1];
+		for (char c : text)
+		{
+			names[c] = 1;
+		}
+		int alphabet = 1;
+		for (int c = 0; c < names.length; c++)
+		{
+			if (names[c] != 0)
+			{
+				names[c] = alphabet++;
+			}
+		}
+
+		int[] s = new int[n + 1];
+		for (int i = 0; i < n; i++)
+		{
+			s[i] = names[text[i]];
+		}
+		names = null;
+
+		int[] sa = new int[n + 1];
+		sais(s, sa, n + 1, alphabet);
+
+		// the first suffix is the end of the text on its own
+		return Arrays.copyOfRange(sa, 1, n + 1);
+	}
+
+	/**
+	 * Sort the suffixes of s with SA-IS. The last value of s must be 0, and
+	 * every other value must be between 1 and alphabet - 1.
+	 *
+	 * @param s        The string
+	 * @param sa       Where to put the suffix array
+	 * @param n        The length of the string
+	 * @param alphabet One more than the biggest value in the string
+	 */
+	private static void sais(int[] s, int[] sa, int n, int alphabet)
+	{
+		// a suffix is S-type if it is smaller than the one after it, and L-type if it is larger
+		boolean[] sType = new boolean[n];
+		sType[n - 1] = true;
+		for (int i = n - 2; i >= 0; i--)
+		{
+			sType[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && sType[i + 1]);
+		}
+
+		// put the LMS suffixes at the ends of their buckets, and induce the order of the LMS substrings from them
+		int[] bucket = new int[alphabet];
+		bucketEnds(s, n, bucket);
+		Arrays.fill(sa, 0, n, -1);
+		for (int i = 1; i < n; i++)
+		{
+			if (isLms(sType, i))
+			{
+				sa[--bucket[s[i]]] = i;
+			}
+		}
+		induce(s, sa, n, sType, bucket);
+
+		// move the sorted LMS substrings to the front
+		int lmsCount = 0;
+		for (int i = 0; i < n; i++)
+		{
+			if (isLms(sType, sa[i]))
+			{
+				sa[lmsCount++] = sa[i];
+			}
+		}
+
+		// name each LMS substring by its order, with equal substrings getting the same name;
+		// LMS positions are at least 2 apart, so position / 2 gives each its own place after the front
+		Arrays.fill(sa, lmsCount, n, -1);
+		int name = 0;
+		int previous = -1;
+		for (int i = 0; i < lmsCount; i++)
+		{
+			int position = sa[i];
+			if (previous < 0 || !equalLmsSubstrings(s, sType, position, previous))
+			{
+				name++;
+				previous = position;
+			}
+			sa[lmsCount + position / 2] = name - 1;
+		}
+		int[] reduced = new int[lmsCount];
+		for (int i = n - 1, j = lmsCount - 1; i >= lmsCount; i--)
+		{
+			if (sa[i] >= 0)
+			{
+				reduced[j--] = sa[i];
+			}
+		}
+
+		// sort the LMS suffixes by sorting the string of their names, which only needs recursion if two names are the same
+		int[] reducedSa = new int[lmsCount];
+		if (name < lmsCount)
+		{
+			sais(reduced, reducedSa, lmsCount, name);
+		}
+		else
+		{
+			for (int i = 0; i < lmsCount; i++)
+			{
+				reducedSa[reduced[i]] = i;
+			}
+		}
+
+		// turn the sorted names back into positions, and induce every suffix's order from the sorted LMS suffixes
+		for (int i = 1, j = 0; i < n; i++)
+		{
+			if (isLms(sType, i))
+			{
+				reduced[j++] = i;
+			}
+		}
+		bucketEnds(s, n, bucket);
+		Arrays.fill(sa, 0, n, -1);
+		for (int i = lmsCount - 1; i >= 0; i--)
+		{
+			int position = reduced[reducedSa[i]];
+			sa[--bucket[s[position]]] = position;
+		}
+		induce(s, sa, n, sType, bucket);
+	}
+
+	/**
+	 * Fill in the L-type suffixes from left to right, then the S-type ones
+	 * from right to left, each in order after the suffix one place after it.
+	 */
+	private static void induce(int[] s, int[] sa, int n, boolean[] sType, int[] bucket)
+	{
+		bucketStarts(s, n, bucket);
+		for (int i = 0; i < n; i++)
+		{
+			int j = sa[i] - 1;
+			if (j >= 0 && !sType[j])
+			{
+				sa[bucket[s[j]]++] = j;
+			}
+		}
+
+		bucketEnds(s, n, bucket);
+		for (int i = n - 1; i >= 0; i--)
+		{
+			int j = sa[i] - 1;
+			if (j >= 0 && sType[j])
+			{
+				sa[--bucket[s[j]]] = j;
+			}
+		}
+	}
+
+	private static boolean isLms(boolean[] sType, int i)
+	{
+		return i > 0 && sType[i] && !sType[i - 1];
+	}
+
+	/**
+	 * Check whether the LMS substrings at a and b, which run up to and including the next LMS position, are the same.
+	 */
+	private static boolean equalLmsSubstrings(int[] s, boolean[] sType, int a, int b)
+	{
+		// the 0 at the end is only equal to itself, so this always stops before running off the end
+		for (int d = 0; ; d++)
+		{
+			if (s[a + d] != s[b + d] || sType[a + d] != sType[b + d])
+			{
+				return false;
+			}
+			if (d > 0 && (isLms(sType, a + d) || isLms(sType, b + d)))
+			{
+				return isLms(sType, a + d) && isLms(sType, b + d);
+			}
+		}
+	}
+
+	private static void bucketStarts(int[] s, int n, int[] bucket)
+	{
+		countCharacters(s, n, bucket);
+		int sum = 0;
+		for (int c = 0; c < bucket.length; c++)
+		{
+			int count = bucket[c];
+			bucket[c] = sum;
+			sum += count;
+		}
+	}
+
+	private static void bucketEnds(int[] s, int n, int[] bucket)
+	{
+		countCharacters(s, n, bucket);
+		int sum = 0;
+		for (int c = 0; c < bucket.length; c++)
+		{
+			sum += bucket[c];
+			bucket[c] = sum;
+		}
+	}
+
+	private static void countCharacters(int[] s, int n, int[] bucket)
+	{
+		Arrays.fill(bucket, 0);
+		for (int i = 0; i < n; i++)
+		{
+			bucket[s[i]]++;
+		}
+	}
+
+	/**
+	 * Work out how much each suffix has in common with the one before it in
+	 * sorted order, with Kasai's algorithm: going through the suffixes in
+	 * text order, each one has at most one fewer in common than the last.
+	 * Nothing counts past a separator, so the common prefixes stay inside one sentence.
+	 */
+	static int[] buildLcp(char[] text, int[] suffixes)
+	{
+		int n = text.length;
+		int[] rank = new int[n];
+		for (int i = 0; i < n; i++)
+		{
+			rank[suffixes[i]] = i;
+		}
+
+		int[] lcp = new int[n];
+		int common = 0;
+		for (int i = 0; i < n; i++)
+		{
+			if (rank[i] == 0)
+			{
+				common = 0;
+				continue;
+			}
+
+			int j = suffixes[rank[i] - 1];
+			while (i + common < n && j + common < n && text[i + common] == text[j + common] && text[i + common] != JoinedSentences.SEPARATOR)
+			{
+				common++;
+			}
+			lcp[rank[i]] = common;
+			if (common > 0)
+			{
+				common--;
+			}
+		}
+		return lcp;
+	}
+
+	/**
+	 * Get the suffix trie node associated with the given (sub)string, like
+	 * {@link SuffixTrie#get(String)}.
+	 * <p>
+	 * The node is made for the answer, and holds the position of every place
+	 * the (sub)string starts, in order of sentence and then character, but no
+	 * children.
+	 *
+	 * @param pattern the (sub)string to search for.
+	 * @return a node holding every position the (sub)string starts at, or null if it isn't in any sentence.
+	 */
+	public SuffixTrieNode get(String pattern)
+	{
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		try
+		{
+			SuffixTrieData data = find(SuffixTrie.CleanString(pattern));
+			return data.getStartIndexes().isEmpty() ? null : new SuffixTrieNode(data);
+		}
+		finally
+		{
+			if (Metrics.ENABLED)
+			{
+				GET_METRICS.recordSince(start);
+			}
+		}
+	}
+
+	/**
+	 * Count the places a (sub)string starts, without listing them.
+	 */
+	public int count(String pattern)
+	{
+		pattern = SuffixTrie.CleanString(pattern);
+		if (joined.hasReserved(pattern))
+		{
+			return 0;
+		}
+
+		int first = firstAtLeast(pattern);
+		int last = lastMatch(pattern, first);
+		if (pattern.isEmpty())
+		{
+			// every suffix starts with nothing, but the ones starting on a separator aren't in a sentence
+			return last - first + 1 - joined.getSentenceCount();
+		}
+		return last - first + 1;
+	}
+
+	/**
+	 * Find every place a pattern starts.
+	 *
+	 * @return The sentence and character of every match, which is empty if there aren't any
+	 */
+	private SuffixTrieData find(String pattern)
+	{
+		if (joined.hasReserved(pattern))
+		{
+			return new SuffixTrieData();
+		}
+
+		int first = firstAtLeast(pattern);
+		int last = lastMatch(pattern, first);
+		return joined.toData(suffixes, first, last + 1);
+	}
+
+	/**
+	 * Binary search for the first suffix that is at least the pattern. Each
+	 * comparison skips the characters the pattern is already known to share
+	 * with both ends of the range.
+	 */
+	private int firstAtLeast(String pattern)
+	{
+		int low = 0;
+		int high = suffixes.length;
+		int lowCommon = 0;
+		int highCommon = 0;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			int common = Math.min(lowCommon, highCommon);
+			int position = suffixes[middle];
+			while (common < pattern.length() && position + common < text.length && text[position + common] == pattern.charAt(common))
+			{
+				common++;
+			}
+
+			boolean suffixIsSmaller = common < pattern.length()
+					&& (position + common == text.length || text[position + common] < pattern.charAt(common));
+			if (suffixIsSmaller)
+			{
+				low = middle + 1;
+				lowCommon = common;
+			}
+			else
+			{
+				high = middle;
+				highCommon = common;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Find the last suffix starting with the pattern, given the first suffix
+	 * that is at least the pattern, by reading along the LCP array.
+	 *
+	 * @return The index of the last match, or first - 1 if there are none
+	 */
+	private int lastMatch(String pattern, int first)
+	{
+		if (first == suffixes.length || !startsWith(suffixes[first], pattern))
+		{
+			return first - 1;
+		}
+
+		int last = first;
+		while (last + 1 < suffixes.length && lcp[last + 1] >= pattern.length())
+		{
+			last++;
+		}
+		return last;
+	}
+
+	private boolean startsWith(int position, String pattern)
+	{
+		if (position + pattern.length() > text.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < pattern.length(); i++)
+		{
+			if (text[position + i] != pattern.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the number of characters indexed, counting a separator after each sentence.
+	 */
+	public int length()
+	{
+		return text.length;
+	}
+
+	/**
+	 * Get the number of sentences.
+	 */
+	public int getSentenceCount()
+	{
+		return joined.getSentenceCount();
+	}
+
+	/**
+	 * Add the estimated size of the arrays to some stats. See {@link SuffixTrieStats}.
+	 */
+	void addSizes(StructureStats stats)
+	{
+		joined.addSizes(stats);
+		stats.add("suffix array", 1, StructureStats.arraySize(int.class, suffixes.length));
+		stats.add("LCP array", 1, StructureStats.arraySize(int.class, lcp.length));
+		stats.add("SuffixArray", 1, StructureStats.shallowSize(SuffixArray.class));
+	}
+
+	/**
+	 * Read the text in the given file into a suffix array, breaking it up into
+	 * sentences the same way as {@link SuffixTrie#readInFromFile(String)}.
+	 *
+	 * @param fileName The name of the file within the 'SuffixTrie/data/' folder to import.
+	 * @return The suffix array, or null if the file can't be found.
+	 */
+	public static SuffixArray readInFromFile(String fileName)
+	{
+		long startTime = System.nanoTime();
+
+		List<String> sentences = SuffixTrie.readSentences(fileName);
+		if (sentences == null)
+		{
+			return null;
+		}
+		SuffixArray array = new SuffixArray(sentences);
+
+		long buildNanos = System.nanoTime() - startTime;
+		System.out.println("Read in " + sentences.size() + " sentences in " + (buildNanos / 1000000.0) + " ms.");
+		// a suffix array has no nodes, so count the suffixes instead
+		Metrics.structure("SuffixArray", fileName, array, SuffixArray::length, buildNanos);
+		return array;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "SuffixArray; #sentences=" + joined.getSentenceCount() + ", #characters=" + text.length;
+	}
+}
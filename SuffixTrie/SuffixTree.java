@@ -0,0 +1,410 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A suffix tree of every sentence of a text, built in linear time with
+ * Ukkonen's algorithm, that answers the same {@link #get(String)} and
+ * {@link #getChild(String)} queries as {@link SuffixTrie}.
+ * <p>
+ * {@link SuffixTrie#insert(String, int)} walks down from the root once for
+ * every position of a sentence, and cuts a new substring each time, so a
+ * sentence of n characters takes O(n^2) time and characters. This builds the
+ * tree over all the sentences at once, one character at a time, keeping an
+ * active point (where the next character goes) and suffix links (from the
+ * node for "xa" to the node for "a"), so each character only costs a constant
+ * amount of work on average.
+ * <p>
+ * Nothing is copied out of the text: each edge is a start and end index into
+ * it, and every leaf edge ends at the current end of the text, so a leaf
+ * grows when a character is added without being touched. The nodes are kept
+ * in parallel int arrays, and each node's children in a linked list.
+ * <p>
+ * The sentences are cleaned and joined with a separator after each, and a
+ * match's position in the joined text is turned back into a sentence and a
+ * character, by {@link JoinedSentences}.
+ */
+public class SuffixTree
+{
+	// put at the very end, so every suffix ends at a leaf
+	static final char TERMINATOR = '\uFFFF';
+
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+	// the end of a leaf edge, which is wherever the text ends so far
+	private static final int LEAF_END = -1;
+
+	// only timed when Metrics.ENABLED is set; see Metrics
+	private static final OperationMetrics GET_METRICS = Metrics.operation("SuffixTree", "get");
+
+	private final JoinedSentences joined;
+	private final char[] text;
+
+	// node i has the edge text[start[i]] to text[end[i]] from its parent
+	private int[] start;
+	private int[] end;
+	private int[] suffixLink;
+	private int[] firstChild;
+	private int[] nextSibling;
+	private int nodeCount = 0;
+
+	// while building, the last index of the text added so far
+	private int currentEnd = -1;
+
+	/**
+	 * Build a suffix tree of some sentences.
+	 *
+	 * @param sentences The sentences, which are cleaned the same way as by {@link SuffixTrie#insert(String, int)}
+	 * @throws IllegalArgumentException if a sentence contains the separator or terminator character
+	 */
+	public SuffixTree(List<String> sentences)
+	{
+		joined = new JoinedSentences(sentences, String.valueOf(TERMINATOR));
+		text = joined.getText();
+
+		// a suffix tree of n characters never has more than 2n nodes
+		int capacity = 2 * text.length + 1;
+		start = new int[capacity];
+		end = new int[capacity];
+		suffixLink = new int[capacity];
+		firstChild = new int[capacity];
+		nextSibling = new int[capacity];
+
+		newNode(0, NONE);
+		build();
+	}
+
+	/**
+	 * Run Ukkonen's algorithm over the whole text.
+	 */
+	private void build()
+	{
+		int activeNode = ROOT;
+		int activeEdge = 0;     // the index in the text of the first character of the edge the active point is on
+		int activeLength = 0;   // how far along that edge the active point is
+		int remainder = 0;      // how many suffixes still need to be added
+
+		for (int i = 0; i < text.length; i++)
+		{
+			// every leaf edge grows by this character
+			currentEnd = i;
+			remainder++;
+			int lastNewNode = NONE;
+
+			while (remainder > 0)
+			{
+				if (activeLength == 0)
+				{
+					activeEdge = i;
+				}
+
+				int next = findChild(activeNode, text[activeEdge]);
+				if (next == NONE)
+				{
+					// nothing starts with this character here, so add a leaf
+					addChild(activeNode, newNode(i, LEAF_END));
+					if (lastNewNode != NONE)
+					{
+						suffixLink[lastNewNode] = activeNode;
+						lastNewNode = NONE;
+					}
+				}
+				else
+				{
+					// walk down past whole edges until the active point is inside one
+					int length = edgeLength(next);
+					if (activeLength >= length)
+					{
+						activeEdge += length;
+						activeLength -= length;
+						activeNode = next;
+						continue;
+					}
+
+					if (text[start[next] + activeLength] == text[i])
+					{
+						// the suffix is already there, and so are all the shorter ones, so this character is done
+						if (lastNewNode != NONE && activeNode != ROOT)
+						{
+							suffixLink[lastNewNode] = activeNode;
+						}
+						activeLength++;
+						break;
+					}
+
+					// split the edge where the active point is, and hang a new leaf off the middle
+					int middle = newNode(start[next], start[next] + activeLength - 1);
+					replaceChild(activeNode, next, middle);
+					start[next] += activeLength;
+					addChild(middle, next);
+					addChild(middle, newNode(i, LEAF_END));
+
+					if (lastNewNode != NONE)
+					{
+						suffixLink[lastNewNode] = middle;
+					}
+					lastNewNode = middle;
+				}
+
+				// move the active point to the next shorter suffix
+				remainder--;
+				if (activeNode == ROOT && activeLength > 0)
+				{
+					activeLength--;
+					activeEdge = i - remainder + 1;
+				}
+				else if (activeNode != ROOT)
+				{
+					activeNode = suffixLink[activeNode];
+				}
+			}
+		}
+	}
+
+	private int newNode(int edgeStart, int edgeEnd)
+	{
+		int node = nodeCount++;
+		start[node] = edgeStart;
+		end[node] = edgeEnd;
+		suffixLink[node] = ROOT;
+		firstChild[node] = NONE;
+		nextSibling[node] = NONE;
+		return node;
+	}
+
+	private int edgeEnd(int node)
+	{
+		return (end[node] == LEAF_END) ? currentEnd : end[node];
+	}
+
+	private int edgeLength(int node)
+	{
+		return edgeEnd(node) - start[node] + 1;
+	}
+
+	private int findChild(int node, char label)
+	{
+		for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+		{
+			if (text[start[child]] == label)
+			{
+				return child;
+			}
+		}
+		return NONE;
+	}
+
+	private void addChild(int node, int child)
+	{
+		nextSibling[child] = firstChild[node];
+		firstChild[node] = child;
+	}
+
+	private void replaceChild(int node, int oldChild, int newChild)
+	{
+		nextSibling[newChild] = nextSibling[oldChild];
+		if (firstChild[node] == oldChild)
+		{
+			firstChild[node] = newChild;
+			return;
+		}
+
+		int previous = firstChild[node];
+		while (nextSibling[previous] != oldChild)
+		{
+			previous = nextSibling[previous];
+		}
+		nextSibling[previous] = newChild;
+	}
+
+	/**
+	 * Find where a pattern ends in the tree.
+	 *
+	 * @return The node whose edge the pattern ends on and how far down from the
+	 * root the end of that edge is, or null if the pattern isn't in the text
+	 */
+	private int[] find(String pattern)
+	{
+		if (joined.hasReserved(pattern))
+		{
+			return null;
+		}
+
+		int node = ROOT;
+		int depth = 0;
+		int matched = 0;
+		while (matched < pattern.length())
+		{
+			node = findChild(node, pattern.charAt(matched));
+			if (node == NONE)
+			{
+				return null;
+			}
+
+			int length = edgeLength(node);
+			for (int i = 0; i < length && matched < pattern.length(); i++, matched++)
+			{
+				if (text[start[node] + i] != pattern.charAt(matched))
+				{
+					return null;
+				}
+			}
+			depth += length;
+		}
+		return new int[]{node, depth};
+	}
+
+	/**
+	 * Get the suffix trie node associated with the given (sub)string, along with
+	 * the label of the edge the (sub)string ends on, like
+	 * {@link SuffixTrie#getChild(String)}.
+	 * <p>
+	 * The node isn't part of the tree: it is made for the answer, and holds
+	 * the position of every place the (sub)string starts, in order of
+	 * sentence and then character, but no children.
+	 *
+	 * @param pattern the (sub)string to search for.
+	 * @return the label and the node, or null if the (sub)string isn't in any sentence.
+	 */
+	public SuffixTrieChild getChild(String pattern)
+	{
+		pattern = SuffixTrie.CleanString(pattern);
+		int[] found = find(pattern);
+		if (found == null)
+		{
+			return null;
+		}
+
+		int node = found[0];
+		String label = "";
+		if (node != ROOT)
+		{
+			// a leaf edge runs on to the end of the text, but its label stops at the end of the sentence
+			int labelEnd = start[node];
+			while (labelEnd <= edgeEnd(node) && !joined.isReserved(text[labelEnd]))
+			{
+				labelEnd++;
+			}
+			label = new String(text, start[node], labelEnd - start[node]);
+		}
+
+		return new SuffixTrieChild(label, new SuffixTrieNode(dataBelow(node, found[1])));
+	}
+
+	/**
+	 * Get the suffix trie node associated with the given (sub)string. See
+	 * {@link #getChild(String)}.
+	 *
+	 * @param pattern the (sub)string to search for.
+	 * @return a node holding every position the (sub)string starts at, or null if it isn't in any sentence.
+	 */
+	public SuffixTrieNode get(String pattern)
+	{
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		try
+		{
+			SuffixTrieChild child = getChild(pattern);
+			return (child == null) ? null : child.Value();
+		}
+		finally
+		{
+			if (Metrics.ENABLED)
+			{
+				GET_METRICS.recordSince(start);
+			}
+		}
+	}
+
+	/**
+	 * Find where every suffix below a node starts.
+	 *
+	 * @param node  The node
+	 * @param depth The length of the string from the root to the end of the node's edge
+	 * @return The sentence and character of every suffix, leaving out the ones that start on a separator
+	 */
+	private SuffixTrieData dataBelow(int node, int depth)
+	{
+		int[] positions = new int[16];
+		int count = 0;
+
+		// walk the subtree without recursion, since the tree can be as deep as the longest sentence
+		int[] nodes = new int[16];
+		int[] depths = new int[16];
+		int stack = 0;
+		nodes[stack] = node;
+		depths[stack++] = depth;
+		while (stack > 0)
+		{
+			int current = nodes[--stack];
+			int currentDepth = depths[stack];
+			if (firstChild[current] == NONE)
+			{
+				// a leaf is the suffix that starts its depth back from the end of the text
+				if (count == positions.length)
+				{
+					positions = Arrays.copyOf(positions, count * 2);
+				}
+				positions[count++] = text.length - currentDepth;
+				continue;
+			}
+
+			for (int child = firstChild[current]; child != NONE; child = nextSibling[child])
+			{
+				if (stack == nodes.length)
+				{
+					nodes = Arrays.copyOf(nodes, stack * 2);
+					depths = Arrays.copyOf(depths, stack * 2);
+				}
+				nodes[stack] = child;
+				depths[stack++] = currentDepth + edgeLength(child);
+			}
+		}
+
+		return joined.toData(positions, 0, count);
+	}
+
+	/**
+	 * Get the number of nodes, counting the root.
+	 */
+	public int getNodeCount()
+	{
+		return nodeCount;
+	}
+
+	/**
+	 * Get the number of sentences.
+	 */
+	public int getSentenceCount()
+	{
+		return joined.getSentenceCount();
+	}
+
+	/**
+	 * Read the text in the given file into a suffix tree, breaking it up into
+	 * sentences the same way as {@link SuffixTrie#readInFromFile(String)}.
+	 *
+	 * @param fileName The name of the file within the 'SuffixTrie/data/' folder to import.
+	 * @return The suffix tree, or null if the file can't be found.
+	 */
+	public static SuffixTree readInFromFile(String fileName)
+	{
+		long startTime = System.nanoTime();
+
+		List<String> sentences = SuffixTrie.readSentences(fileName);
+		if (sentences == null)
+		{
+			return null;
+		}
+		SuffixTree tree = new SuffixTree(sentences);
+
+		long buildNanos = System.nanoTime() - startTime;
+		System.out.println("Read in " + sentences.size() + " sentences in " + (buildNanos / 1000000.0) + " ms.");
+		Metrics.structure("SuffixTree", fileName, tree, SuffixTree::getNodeCount, buildNanos);
+		return tree;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "SuffixTree; #sentences=" + joined.getSentenceCount() + ", #characters=" + text.length + ", #nodes=" + nodeCount;
+	}
+}
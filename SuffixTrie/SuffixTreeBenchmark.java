@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Compares how long it takes to build a {@link SuffixTrie} with
+ * {@link SuffixTrie#insert(String, int)}, a {@link SuffixTree} with
+ * Ukkonen's algorithm and a {@link SuffixArray} with SA-IS, over the bundled
+ * texts from smallest to biggest, and the estimated size of the suffix trie
+ * and the suffix array (see {@link SuffixTrieStats}).
+ * <p>
+ * The sentences are read from each file first, so only the building is
+ * timed. Each structure is built once to warm up and then several more
+ * times, and the median is reported. The suffix tree's and suffix array's
+ * answers are also checked against a plain search of every sentence, for
+ * substrings picked at random from the text.
+ * <p>
+ * Usage: {@code java SuffixTreeBenchmark [files in SuffixTrie/data...]}
+ */
+public class SuffixTreeBenchmark
+{
+	private static final int MEASURED_BUILDS = 5;
+	private static final int CHECKED_PATTERNS = 2000;
+	private static final int MAX_PATTERN_LENGTH = 12;
+
+	// results are added into this, so the JIT can't throw the work away
+	static volatile int sink;
+
+	public static void main(String[] args)
+	{
+		List<String> files = (args.length > 0)
+				? Arrays.asList(args)
+				: List.of("Frank01.txt", "Frank02.txt", "FrankChap02.txt", "FrankChap04.txt", "FrankMed.txt", "Frankenstein.txt");
+
+		System.out.println(String.format(Locale.ROOT, "%-18s %10s %10s %14s %14s %15s %9s %10s %11s %10s",
+				"file", "sentences", "chars", "SuffixTrie ms", "SuffixTree ms", "SuffixArray ms", "trie MB", "array MB", "tree nodes", "mismatches"));
+		for (String file : files)
+		{
+			List<String> sentences = SuffixTrie.readSentences(file);
+			if (sentences == null)
+			{
+				continue;
+			}
+			long chars = sentences.stream().mapToLong(String::length).sum();
+
+			double trieMillis = medianMillis(() -> {
+				SuffixTrie trie = new SuffixTrie();
+				for (int i = 0; i < sentences.size(); i++)
+				{
+					trie.insert(sentences.get(i), i);
+				}
+				sink += (int) SuffixTrie.countNodes(trie.getRoot());
+			});
+			double treeMillis = medianMillis(() -> sink += new SuffixTree(sentences).getNodeCount());
+			double arrayMillis = medianMillis(() -> sink += new SuffixArray(sentences).length());
+
+			SuffixTrie trie = new SuffixTrie();
+			for (int i = 0; i < sentences.size(); i++)
+			{
+				trie.insert(sentences.get(i), i);
+			}
+			SuffixTree tree = new SuffixTree(sentences);
+			SuffixArray array = new SuffixArray(sentences);
+
+			System.out.println(String.format(Locale.ROOT, "%-18s %10d %10d %14.2f %14.2f %15.2f %9.2f %10.2f %11d %10d",
+					file, sentences.size(), chars, trieMillis, treeMillis, arrayMillis,
+					SuffixTrieStats.of(trie, file).getTotalBytes() / 1e6, SuffixTrieStats.of(array, file).getTotalBytes() / 1e6,
+					tree.getNodeCount(), countMismatches(tree::get, sentences) + countMismatches(array::get, sentences)));
+		}
+	}
+
+	/**
+	 * Run a build once to warm up, then time it several times.
+	 *
+	 * @return The median time, in milliseconds
+	 */
+	private static double medianMillis(Runnable build)
+	{
+		build.run();
+
+		double[] millis = new double[MEASURED_BUILDS];
+		for (int i = 0; i < MEASURED_BUILDS; i++)
+		{
+			System.gc();
+			long start = System.nanoTime();
+			build.run();
+			millis[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(millis);
+		return millis[MEASURED_BUILDS / 2];
+	}
+
+	/**
+	 * Look up substrings picked at random from the sentences, and some that
+	 * aren't there, and count how many times the index gives different
+	 * positions from a plain search of every sentence.
+	 */
+	private static int countMismatches(Function<String, SuffixTrieNode> index, List<String> sentences)
+	{
+		List<String> cleaned = new ArrayList<>();
+		for (String sentence : sentences)
+		{
+			cleaned.add(SuffixTrie.CleanString(sentence));
+		}
+
+		Random random = new Random(42);
+		int mismatches = 0;
+		for (int i = 0; i < CHECKED_PATTERNS; i++)
+		{
+			String sentence = cleaned.get(random.nextInt(cleaned.size()));
+			if (sentence.isEmpty())
+			{
+				continue;
+			}
+			int start = random.nextInt(sentence.length());
+			String pattern = sentence.substring(start, Math.min(sentence.length(), start + 1 + random.nextInt(MAX_PATTERN_LENGTH)));
+			if (i % 10 == 0)
+			{
+				// almost certainly not in the text
+				pattern += "qxz";
+			}
+
+			String cleanPattern = SuffixTrie.CleanString(pattern);
+			if (cleanPattern.isEmpty())
+			{
+				// nothing but whitespace, which matches everywhere
+				continue;
+			}
+
+			List<String> expected = new ArrayList<>();
+			for (int s = 0; s < cleaned.size(); s++)
+			{
+				for (int c = cleaned.get(s).indexOf(cleanPattern); c >= 0; c = cleaned.get(s).indexOf(cleanPattern, c + 1))
+				{
+					expected.add(s + "." + c);
+				}
+			}
+
+			SuffixTrieNode node = index.apply(pattern);
+			List<String> actual = new ArrayList<>();
+			if (node != null)
+			{
+				for (SuffixIndex position : node.data.getStartIndexes())
+				{
+					actual.add(position.toString());
+				}
+			}
+			if (!actual.equals(expected))
+			{
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+}
@@ -7,6 +7,9 @@ public class SuffixTrie
 
 	private final SuffixTrieNode root = new SuffixTrieNode(-1, -1);
 
+	// only timed when Metrics.ENABLED is set; see Metrics
+	private static final OperationMetrics GET_METRICS = Metrics.operation("SuffixTrie", "get");
+
 	/**
 	 * Insert a String into the suffix trie.  For the assignment the string str
 	 * is a sentence from the given text file.
@@ -55,7 +58,7 @@ public class SuffixTrie
 						// if no child was found, add the rest of the input as a child of the previous node
 						if (currentNode == null)
 						{
-							previousNode.addChild(inputRemaining.substring(addPos), sentencePos, startFrom + addPos);
+							previousNode.addChild(inputRemaining.substring(addPos), sentencePos, startFrom);
 							break;
 						}
 
@@ -91,6 +94,12 @@ public class SuffixTrie
 					// advance forward one position in the current node
 					// this being at the end means that new nodes will always start at position 1, since we know 0 has to match since that's how we found the node
 					nodePos++;
+
+					// if the whole suffix matched, it ends inside (or at the end of) the current node, which needs its position too
+					if (addPos == inputRemaining.length() - 1)
+					{
+						currentNode.Value().addData(sentencePos, startFrom);
+					}
 				}
 			}
 		}
@@ -153,7 +162,18 @@ public class SuffixTrie
 	 */
 	public SuffixTrieNode get(String pattern)
 	{
-		return getChild(pattern).Value();
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		try
+		{
+			return getChild(pattern).Value();
+		}
+		finally
+		{
+			if (Metrics.ENABLED)
+			{
+				GET_METRICS.recordSince(start);
+			}
+		}
 	}
 
 	/**
@@ -170,6 +190,37 @@ public class SuffixTrie
 	{
 		SuffixTrie trie = new SuffixTrie();
 
+		int wordCounter = 0;
+
+		long startTime = System.nanoTime();
+
+		List<String> sentences = readSentences(fileName);
+		if (sentences == null)
+		{
+			return null;
+		}
+
+		for (int sentencePos = 0; sentencePos < sentences.size(); sentencePos++)
+		{
+			// insert the extracted sentence into the trie
+			trie.insert(sentences.get(sentencePos), sentencePos);
+		}
+
+		long buildNanos = System.nanoTime() - startTime;
+		System.out.println("Read in " + sentences.size() + " sentences containing " + wordCounter + " words in " + (buildNanos / 1000000.0) + " ms.");
+		Metrics.structure("SuffixTrie", fileName, trie, t -> countNodes(t.root), buildNanos);
+		return trie;
+	}
+
+	/**
+	 * Read the text in the given file and break it up into sentences, the
+	 * same way for every index built from the files in 'SuffixTrie/data/'.
+	 *
+	 * @param fileName The name of the file within the 'SuffixTrie/data/' folder to import.
+	 * @return The sentences, in order, or null if the file can't be found.
+	 */
+	static List<String> readSentences(String fileName)
+	{
 		Scanner scanner;
 		try
 		{
@@ -182,10 +233,7 @@ public class SuffixTrie
 			return null;
 		}
 
-		int sentenceCounter = 0;
-		int wordCounter = 0;
-
-		long startTime = System.nanoTime();
+		List<String> allSentences = new ArrayList<>();
 
 		// create a blank string which will be used to "scroll" through the file
 		String currentText = "";
@@ -208,21 +256,40 @@ public class SuffixTrie
 				sentences.add(currentText.substring(start, end));
 			}
 
-			// add all the sentences read so far into the trie
-			// the last sentence in the list is ONLY added to the tree if there is nothing else to read from the file
+			// keep all the sentences read so far
+			// the last sentence in the list is ONLY kept if there is nothing else to read from the file
 			for (int sentencePos = 0; sentencePos < sentences.size() - (scanner.hasNext() ? 1 : 0); sentencePos++)
 			{
-				// insert the extracted sentence into the trie
-				trie.insert(sentences.get(sentencePos), sentenceCounter);
-				sentenceCounter++;
+				allSentences.add(sentences.get(sentencePos));
 
 				// remove the extracted sentence from the read text
 				currentText = currentText.substring(sentences.get(sentencePos).length());
 			}
 		}
+		scanner.close();
 
-		System.out.println("Read in " + sentenceCounter + " sentences containing " + wordCounter + " words in " + ((System.nanoTime() - startTime) / 1000000.0) + " ms.");
-		return trie;
+		return allSentences;
+	}
+
+	/**
+	 * Get the root node, which has an empty label.
+	 */
+	SuffixTrieNode getRoot()
+	{
+		return root;
+	}
+
+	/**
+	 * Count the nodes at or below a node.
+	 */
+	static long countNodes(SuffixTrieNode node)
+	{
+		long count = 1;
+		for (SuffixTrieNode child : node.getChildren().values())
+		{
+			count += countNodes(child);
+		}
+		return count;
 	}
 
 	/**
@@ -231,7 +298,7 @@ public class SuffixTrie
 	 * @param str The string to clean.
 	 * @return The input string converted to lowercase with all leading and trailing whitespace removed.
 	 */
-	private String CleanString(String str)
+	static String CleanString(String str)
 	{
 		// to prevent @NotNull methods from causing problems, return null strings immediately.
 		if (str == null)
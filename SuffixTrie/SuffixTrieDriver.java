@@ -21,14 +21,42 @@ import java.util.*;
  * onster
  * ngeuhhh
  * ing? This
+ * <p>
+ * Given arguments, it runs a check instead, chosen by the first argument:
+ * <ul>
+ * <li>{@code java SuffixTrieDriver 1 [files in SuffixTrie/data...]} looks up
+ * substrings of the text in a SuffixTrie and a SuffixTree, and checks they
+ * both give the positions a plain search of the sentences gives;</li>
+ * <li>{@code java SuffixTrieDriver 2 [random texts]} checks SuffixArray's
+ * suffix and LCP arrays against sorting the suffixes by hand.</li>
+ * </ul>
  *
  * @author lewi0146
  */
 public class SuffixTrieDriver
 {
+	private static final int CHECKED_PATTERNS = 3000;
+	private static final int MAX_PATTERN_LENGTH = 12;
 
 	public static void main(String[] args)
 	{
+		if (args.length > 0)
+		{
+			switch (args[0])
+			{
+				case "1":
+					checkTreeAgainstTrie((args.length > 1)
+							? Arrays.asList(args).subList(1, args.length)
+							: List.of("mississippi.txt", "Frank01.txt", "Frank02.txt", "FrankChap02.txt", "FrankChap04.txt", "FrankMed.txt"));
+					break;
+				case "2":
+					checkSuffixArray((args.length > 1) ? Integer.parseInt(args[1]) : 3000);
+					break;
+				default:
+					System.out.println("There is no check " + args[0]);
+			}
+			return;
+		}
 
 		Scanner in = new Scanner(System.in);
 		String fileName = in.nextLine();
@@ -50,4 +78,245 @@ public class SuffixTrieDriver
 			System.out.println("[" + s + "]: " + sn);
 		}
 	}
+
+	/**
+	 * Look up substrings picked at random from each file's sentences, some
+	 * made longer so they aren't in the text, and every prefix of the first
+	 * sentences, in a SuffixTrie and a SuffixTree. Both must find the same
+	 * positions as a plain search of every cleaned sentence, in order of
+	 * sentence and then character, and neither may find a pattern that isn't
+	 * there.
+	 */
+	private static void checkTreeAgainstTrie(List<String> files)
+	{
+		List<String> failures = new ArrayList<>();
+		for (String file : files)
+		{
+			List<String> sentences = SuffixTrie.readSentences(file);
+			if (sentences == null)
+			{
+				continue;
+			}
+			SuffixTrie trie = new SuffixTrie();
+			for (int i = 0; i < sentences.size(); i++)
+			{
+				trie.insert(sentences.get(i), i);
+			}
+			SuffixTree tree = new SuffixTree(sentences);
+
+			List<String> cleaned = new ArrayList<>();
+			for (String sentence : sentences)
+			{
+				cleaned.add(SuffixTrie.CleanString(sentence));
+			}
+
+			Set<String> patterns = new LinkedHashSet<>();
+			for (String sentence : cleaned.subList(0, Math.min(3, cleaned.size())))
+			{
+				for (int end = 1; end <= sentence.length(); end++)
+				{
+					patterns.add(sentence.substring(0, end));
+				}
+			}
+			Random random = new Random(24);
+			for (int i = 0; i < CHECKED_PATTERNS; i++)
+			{
+				String sentence = cleaned.get(random.nextInt(cleaned.size()));
+				if (sentence.isEmpty())
+				{
+					continue;
+				}
+				int start = random.nextInt(sentence.length());
+				String pattern = sentence.substring(start, Math.min(sentence.length(), start + 1 + random.nextInt(MAX_PATTERN_LENGTH)));
+				patterns.add((i % 10 == 0) ? pattern + "qxz" : pattern);
+			}
+
+			for (String pattern : patterns)
+			{
+				String cleanPattern = SuffixTrie.CleanString(pattern);
+				if (cleanPattern.isEmpty())
+				{
+					// nothing but whitespace, which matches everywhere
+					continue;
+				}
+
+				List<String> expected = new ArrayList<>();
+				for (int s = 0; s < cleaned.size(); s++)
+				{
+					for (int c = cleaned.get(s).indexOf(cleanPattern); c >= 0; c = cleaned.get(s).indexOf(cleanPattern, c + 1))
+					{
+						expected.add(s + "." + c);
+					}
+				}
+
+				// a SuffixTrie throws from get() for a missing pattern, so ask getChild() instead
+				SuffixTrieChild inTrie = trie.getChild(pattern);
+				SuffixTrieChild inTree = tree.getChild(pattern);
+				List<String> trieFound = (inTrie == null) ? List.of() : positions(inTrie.Value());
+				List<String> treeFound = (inTree == null) ? List.of() : positions(inTree.Value());
+				if (!trieFound.equals(expected) || (inTrie == null) != expected.isEmpty())
+				{
+					failures.add(file + ": the SuffixTrie found [" + pattern + "] at " + trieFound + " instead of " + expected);
+				}
+				if (!treeFound.equals(expected) || (inTree == null) != expected.isEmpty())
+				{
+					failures.add(file + ": the SuffixTree found [" + pattern + "] at " + treeFound + " instead of " + expected);
+				}
+			}
+			System.out.println("Checked " + patterns.size() + " patterns in " + file);
+		}
+
+		if (failures.isEmpty())
+		{
+			System.out.println("All invariants hold");
+		}
+		else
+		{
+			System.out.println(failures.size() + " failures, for example:");
+			failures.stream().limit(10).forEach(System.out::println);
+		}
+	}
+
+	/**
+	 * Build the suffix and LCP arrays of texts that are hard for SA-IS, and
+	 * compare them with sorting the suffixes by hand and counting what each
+	 * has in common with the one before it. The texts are empty and single
+	 * characters, runs of one character (which have no LMS suffixes at all),
+	 * Fibonacci and Thue-Morse words and short repeats (which are sorted by
+	 * recursing again and again on shorter strings), and random texts over
+	 * alphabets of one to four characters, including the separator and the
+	 * highest char.
+	 */
+	private static void checkSuffixArray(int randomTexts)
+	{
+		List<String> texts = new ArrayList<>(List.of("", "a", "\0", "\uFFFF"));
+		for (int length : new int[]{2, 3, 4, 5, 8, 17, 100, 1000})
+		{
+			texts.add("a".repeat(length));
+			texts.add("\0".repeat(length));
+			texts.add("ab".repeat(length));
+			texts.add("aab".repeat(length));
+			texts.add("b".repeat(length) + "a");
+			texts.add("a".repeat(length) + "b");
+		}
+
+		// Fibonacci words and Thue-Morse sequences repeat themselves at every scale, so SA-IS recurses about log n times
+		String previous = "a";
+		String fibonacci = "ab";
+		while (fibonacci.length() < 5000)
+		{
+			texts.add(fibonacci);
+			String next = fibonacci + previous;
+			previous = fibonacci;
+			fibonacci = next;
+		}
+		StringBuilder thueMorse = new StringBuilder("a");
+		while (thueMorse.length() < 5000)
+		{
+			texts.add(thueMorse.toString());
+			for (int i = 0, length = thueMorse.length(); i < length; i++)
+			{
+				thueMorse.append((thueMorse.charAt(i) == 'a') ? 'b' : 'a');
+			}
+		}
+
+		Random random = new Random(25);
+		char[] characters = {'a', 'b', JoinedSentences.SEPARATOR, '\uFFFF', 'c'};
+		for (int i = 0; i < randomTexts; i++)
+		{
+			int alphabet = 1 + random.nextInt(4);
+			int offset = random.nextInt(characters.length - alphabet + 1);
+			char[] text = new char[random.nextInt(60)];
+			for (int j = 0; j < text.length; j++)
+			{
+				text[j] = characters[offset + random.nextInt(alphabet)];
+			}
+			texts.add(new String(text));
+		}
+
+		List<String> failures = new ArrayList<>();
+		for (String text : texts)
+		{
+			char[] chars = text.toCharArray();
+			Integer[] order = new Integer[chars.length];
+			for (int i = 0; i < order.length; i++)
+			{
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> compareSuffixes(chars, a, b));
+			int[] expected = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+
+			int[] expectedLcp = new int[chars.length];
+			for (int i = 1; i < chars.length; i++)
+			{
+				int a = expected[i - 1];
+				int b = expected[i];
+				while (Math.max(a, b) + expectedLcp[i] < chars.length && chars[a + expectedLcp[i]] == chars[b + expectedLcp[i]]
+						&& chars[a + expectedLcp[i]] != JoinedSentences.SEPARATOR)
+				{
+					expectedLcp[i]++;
+				}
+			}
+
+			String shown = (text.length() <= 20) ? text.replace("\0", "\\0").replace("\uFFFF", "\\uFFFF") : text.length() + " characters";
+			int[] suffixes;
+			try
+			{
+				suffixes = SuffixArray.buildSuffixArray(chars);
+			}
+			catch (RuntimeException ex)
+			{
+				failures.add("sorting the suffixes of \"" + shown + "\" threw " + ex);
+				continue;
+			}
+			if (!Arrays.equals(suffixes, expected))
+			{
+				failures.add("the suffix array of \"" + shown + "\" is wrong");
+			}
+			else if (!Arrays.equals(SuffixArray.buildLcp(chars, suffixes), expectedLcp))
+			{
+				failures.add("the LCP array of \"" + shown + "\" is wrong");
+			}
+		}
+
+		System.out.println("Checked " + texts.size() + " texts");
+
+		if (failures.isEmpty())
+		{
+			System.out.println("All invariants hold");
+		}
+		else
+		{
+			System.out.println(failures.size() + " failures, for example:");
+			failures.stream().limit(10).forEach(System.out::println);
+		}
+	}
+
+	/**
+	 * Compare two suffixes of a text a character at a time, the way
+	 * String.compareTo does, with a suffix coming before any longer one it starts.
+	 */
+	private static int compareSuffixes(char[] text, int a, int b)
+	{
+		while (a < text.length && b < text.length)
+		{
+			if (text[a] != text[b])
+			{
+				return Character.compare(text[a], text[b]);
+			}
+			a++;
+			b++;
+		}
+		return Integer.compare(text.length - a, text.length - b);
+	}
+
+	private static List<String> positions(SuffixTrieNode node)
+	{
+		List<String> positions = new ArrayList<>();
+		for (SuffixIndex position : node.data.getStartIndexes())
+		{
+			positions.add(position.toString());
+		}
+		return positions;
+	}
 }
@@ -37,7 +37,7 @@ public class SuffixTrieNode
 	HashMap<String, SuffixTrieNode> children = new HashMap<>(1, 0.75f);
 	// Using a HashMap because it has very fast access, the cost of slow creation and high space usage.
 	// the point of this is to search trees FAST, since if we're creating a Trie, we probably have the time to add stuff
-	// TODO calculate how often the map is getting rehashed
+	// SuffixTrieStats reports how much space the maps take and how often they were rehashed as they grew
 
 	/**
 	 * Get all the children of ths node.
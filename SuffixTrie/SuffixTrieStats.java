@@ -0,0 +1,155 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Walks a {@link SuffixTrie} and reports its shape and estimated size: how
+ * many nodes it has, how many children they have, how deep they are, how long
+ * the labels are, and roughly how many bytes go on the nodes, the child
+ * HashMaps, the labels and the lists of {@link SuffixIndex} positions. See
+ * {@link StructureStats} for how the bytes are estimated.
+ * <p>
+ * A HashMap and an ArrayList only ever grow in a fixed way, and the suffix
+ * trie never takes children away, so the capacity of each map and list is
+ * worked out from its size. That also gives how many times each map was
+ * rehashed as it grew, and how many entries had to be moved.
+ * <p>
+ * Usage: {@code java SuffixTrieStats [file in SuffixTrie/data]}, which also
+ * reports a {@link SuffixArray} of the same file to compare with.
+ */
+public final class SuffixTrieStats
+{
+	// the child maps are created with new HashMap<>(1, 0.75f), see SuffixTrieNode
+	private static final float LOAD_FACTOR = 0.75f;
+	// the capacity an ArrayList grows to when the first element is added
+	private static final int LIST_FIRST_CAPACITY = 10;
+	private static final long MAP_ENTRY_BYTES = mapEntrySize();
+
+	private SuffixTrieStats()
+	{
+	}
+
+	/**
+	 * Walk a suffix trie.
+	 *
+	 * @param name What the suffix trie holds, for the report
+	 */
+	public static StructureStats of(SuffixTrie trie, String name)
+	{
+		StructureStats stats = new StructureStats("SuffixTrie of " + name);
+		walk(trie.getRoot(), 0, stats);
+		return stats;
+	}
+
+	/**
+	 * Report the size of a suffix array, which is only a few arrays. See {@link SuffixArray}.
+	 *
+	 * @param name What the suffix array holds, for the report
+	 */
+	public static StructureStats of(SuffixArray array, String name)
+	{
+		StructureStats stats = new StructureStats("SuffixArray of " + name);
+		array.addSizes(stats);
+		return stats;
+	}
+
+	private static void walk(SuffixTrieNode node, int depth, StructureStats stats)
+	{
+		stats.count("nodes", 1);
+		stats.add("nodes", 1, StructureStats.shallowSize(SuffixTrieNode.class) + StructureStats.shallowSize(SuffixTrieData.class));
+		stats.record("fanout", node.getNumChildren());
+		stats.record("depth", depth);
+		if (node.isTerminal())
+		{
+			stats.count("terminals", 1);
+		}
+
+		addMap(node.getChildren(), stats);
+
+		ArrayList<SuffixIndex> positions = node.data.getStartIndexes();
+		stats.record("positions per node", positions.size());
+		stats.add("SuffixIndex lists", 1, StructureStats.shallowSize(ArrayList.class)
+				+ (positions.isEmpty() ? 0 : StructureStats.arraySize(Object.class, listCapacity(positions.size()))));
+		stats.add("SuffixIndex objects", positions.size(), positions.size() * StructureStats.shallowSize(SuffixIndex.class));
+
+		for (Map.Entry<String, SuffixTrieNode> child : node.getChildren().entrySet())
+		{
+			stats.record("label length", child.getKey().length());
+			stats.add("labels", 1, StructureStats.stringSize(child.getKey()));
+			walk(child.getValue(), depth + 1, stats);
+		}
+	}
+
+	/**
+	 * Add a child map: the map itself, its table, and an entry object per child.
+	 * The key set view the map makes the first time it is iterated isn't counted.
+	 */
+	private static void addMap(HashMap<String, SuffixTrieNode> children, StructureStats stats)
+	{
+		long bytes = StructureStats.shallowSize(HashMap.class);
+		if (!children.isEmpty())
+		{
+			// the table is only made when the first child is put in
+			int capacity = 2;
+			int threshold = 1;
+			// going from 1 bucket to 2 happens straight after the first put
+			long resizes = 1;
+			long moved = 1;
+			while (children.size() > threshold)
+			{
+				// the map grows as soon as it holds one more than the threshold, and moves all of them
+				moved += threshold + 1;
+				resizes++;
+				capacity *= 2;
+				threshold = (int) (capacity * LOAD_FACTOR);
+			}
+			stats.count("map resizes", resizes);
+			stats.count("map entries rehashed", moved);
+
+			bytes += StructureStats.arraySize(Object.class, capacity)
+					+ children.size() * MAP_ENTRY_BYTES;
+		}
+		stats.add("child maps", 1, bytes);
+	}
+
+	/**
+	 * The capacity an ArrayList has after having elements added to it one at a time.
+	 */
+	private static int listCapacity(int size)
+	{
+		int capacity = LIST_FIRST_CAPACITY;
+		while (capacity < size)
+		{
+			capacity += capacity >> 1;
+		}
+		return capacity;
+	}
+
+	private static long mapEntrySize()
+	{
+		try
+		{
+			return StructureStats.shallowSize(Class.forName("java.util.HashMap$Node"));
+		}
+		catch (ClassNotFoundException ex)
+		{
+			// a header, a hash, a key, a value and a next entry
+			return 32;
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		String fileName = (args.length > 0) ? args[0] : "Frank01.txt";
+
+		SuffixTrie trie = SuffixTrie.readInFromFile(fileName);
+		if (trie == null)
+		{
+			return;
+		}
+		System.out.println(of(trie, fileName));
+
+		SuffixArray array = SuffixArray.readInFromFile(fileName);
+		System.out.println(of(array, fileName));
+	}
+}
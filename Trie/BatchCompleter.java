@@ -0,0 +1,141 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Answers a whole batch of most-frequent-word queries at once. See
+ * {@link Trie#completeAll(List)}.
+ * <p>
+ * Looking up each prefix on its own walks down from the root to the prefix,
+ * then down from there to the most frequent word, every time. In a burst of
+ * queries most of those walks have been done already: the same prefixes come
+ * up again and again, and prefixes being typed follow on from each other
+ * ("t", "th", "the"). So within a batch:
+ * <ul>
+ * <li>the path of nodes to the previous prefix is kept, and the next prefix
+ * only walks down from the end of the part it shares with it;</li>
+ * <li>the answer for each node is remembered, so a repeated prefix is
+ * answered as soon as its node is found, without walking down to the most
+ * frequent word again.</li>
+ * </ul>
+ * The prefixes are answered in the order they are given rather than sorted.
+ * Sorting would put more prefixes that share a start next to each other, but
+ * with the answers remembered there is little walking left for it to save,
+ * and sorting the batch cost more than that (see {@link TrieBenchmark}).
+ * <p>
+ * Large batches are cut into one run per core, and each run keeps its own
+ * path and answers, so the runs can be answered in parallel.
+ */
+class BatchCompleter
+{
+	// smaller runs than this aren't worth handing to another thread
+	static final int MIN_RUN_SIZE = 1024;
+
+	/**
+	 * Find the most frequent word for every prefix in a batch.
+	 *
+	 * @param root     The root of the trie
+	 * @param prefixes The prefixes to search for
+	 * @return The most frequent word for each prefix, in the same order as the prefixes
+	 */
+	static List<String> completeAll(TrieNode root, List<String> prefixes)
+	{
+		return completeAll(root, prefixes, Math.min(Runtime.getRuntime().availableProcessors(), prefixes.size() / MIN_RUN_SIZE));
+	}
+
+	/**
+	 * Find the most frequent word for every prefix in a batch, cut into a
+	 * given number of runs. This lets the parallel path be checked on a
+	 * machine with a single core.
+	 *
+	 * @param root     The root of the trie
+	 * @param prefixes The prefixes to search for
+	 * @param runs     The number of runs to cut the batch into, which is kept between 1 and the number of prefixes
+	 * @return The most frequent word for each prefix, in the same order as the prefixes
+	 */
+	static List<String> completeAll(TrieNode root, List<String> prefixes, int runs)
+	{
+		String[] batch = prefixes.toArray(new String[0]);
+		String[] results = new String[batch.length];
+
+		int count = Math.max(1, Math.min(runs, batch.length));
+		if (count == 1)
+		{
+			completeRun(root, batch, 0, batch.length, results);
+		}
+		else
+		{
+			IntStream.range(0, count).parallel().forEach(run -> completeRun(root, batch,
+					(int) ((long) batch.length * run / count), (int) ((long) batch.length * (run + 1) / count), results));
+		}
+
+		return new ArrayList<>(Arrays.asList(results));
+	}
+
+	/**
+	 * Answer a run of the prefixes, reusing the path from each prefix to the
+	 * next and the answers found so far.
+	 *
+	 * @param root    The root of the trie
+	 * @param batch   The prefixes
+	 * @param from    The index of the first prefix to answer
+	 * @param to      The index after the last prefix to answer
+	 * @param results Where to put the answer for each prefix, at the same index
+	 */
+	private static void completeRun(TrieNode root, String[] batch, int from, int to, String[] results)
+	{
+		// path[i] is the node for the first i characters of the previous prefix,
+		// for i up to depth; past a missing character it isn't filled in
+		TrieNode[] path = new TrieNode[16];
+		path[0] = root;
+		int depth = 0;
+		String previous = "";
+
+		// the answer for each node that has been looked up so far
+		Map<TrieNode, String> answered = new IdentityHashMap<>();
+
+		for (int index = from; index < to; index++)
+		{
+			String prefix = batch[index];
+
+			// keep the part of the path that this prefix shares with the previous one
+			int common = 0;
+			int limit = Math.min(depth, prefix.length());
+			while (common < limit && prefix.charAt(common) == previous.charAt(common))
+			{
+				common++;
+			}
+
+			if (path.length <= prefix.length())
+			{
+				path = Arrays.copyOf(path, Math.max(path.length * 2, prefix.length() + 1));
+			}
+
+			// walk down the rest of the prefix
+			TrieNode node = path[common];
+			depth = common;
+			while (depth < prefix.length() && node != null)
+			{
+				node = node.getChild(prefix.charAt(depth));
+				if (node != null)
+				{
+					path[++depth] = node;
+				}
+			}
+
+			previous = prefix;
+			if (node == null)
+			{
+				results[index] = prefix;
+				continue;
+			}
+
+			String answer = answered.get(node);
+			if (answer == null)
+			{
+				answer = Trie.getMostFrequentWordBelow(node, prefix);
+				answered.put(node, answer);
+			}
+			results[index] = answer;
+		}
+	}
+}
@@ -0,0 +1,333 @@
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A size-bounded cache of completions in front of a {@link Trie}, which can
+ * be used from any number of threads at once.
+ * <p>
+ * Completion queries are very uneven: a few short prefixes make up most of
+ * them, and each query walks the trie again. This keeps the answers for the
+ * most recently used prefixes, up to a fixed number of prefixes, and throws
+ * the least recently used prefix away when it is full.
+ * <p>
+ * Only the most frequent word and top-k queries are cached; other queries go
+ * straight to the trie. A change to a word can only change the answers for
+ * prefixes of that word, so every change made through this class drops the
+ * cached answers for the word's prefixes (at most one per character of the
+ * word). Changes made to the trie directly, rather than through this class,
+ * will not be seen.
+ * <p>
+ * The trie itself isn't safe to read while it is being changed, so queries
+ * share a read lock and changes take the write lock. A query that misses the
+ * cache looks the answer up under the read lock too, so a change can't happen
+ * between looking up the answer and caching it.
+ */
+public class CachedTrie
+{
+	/**
+	 * The cached answers for one prefix.
+	 */
+	private static class Answers
+	{
+		String mostFrequentWord;
+		// the top words for the largest k asked for so far
+		List<String> topWords;
+		int topK;
+	}
+
+	private final Trie trie;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// only used while holding its own monitor, in least recently used order
+	private final LinkedHashMap<String, Answers> cache;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Put a cache in front of a trie.
+	 *
+	 * @param trie        The trie to answer queries from
+	 * @param maxPrefixes The most prefixes to keep answers for
+	 */
+	public CachedTrie(Trie trie, int maxPrefixes)
+	{
+		if (maxPrefixes < 1)
+		{
+			throw new IllegalArgumentException("The cache must hold at least one prefix, not " + maxPrefixes);
+		}
+
+		this.trie = trie;
+		cache = new LinkedHashMap<>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Answers> eldest)
+			{
+				if (size() > maxPrefixes)
+				{
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Inserts a string into the trie, dropping the cached answers it could change.
+	 * See {@link Trie#insert(String, TrieData)}.
+	 */
+	public TrieNode insert(String str, TrieData data)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			invalidate(str);
+			return trie.insert(str, data);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Change the frequency of a word, dropping the cached answers it could change.
+	 * See {@link Trie#setFrequency(String, int)}.
+	 */
+	public TrieNode setFrequency(String word, int frequency)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			invalidate(word);
+			return trie.setFrequency(word, frequency);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Change the frequency of a word, dropping the cached answers it could change.
+	 * See {@link Trie#incrementFrequency(String, int)}.
+	 */
+	public TrieNode incrementFrequency(String word, int delta)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			invalidate(word);
+			return trie.incrementFrequency(word, delta);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove a word from the trie, dropping the cached answers it could change.
+	 * See {@link Trie#remove(String)}.
+	 */
+	public boolean remove(String word)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			invalidate(word);
+			return trie.remove(word);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the most frequent word that begins with a prefix, from the cache
+	 * if it is there. See {@link Trie#getMostFrequentWordWithPrefix(String)}.
+	 */
+	public String getMostFrequentWordWithPrefix(String prefix)
+	{
+		lock.readLock().lock();
+		try
+		{
+			synchronized (cache)
+			{
+				Answers answers = cache.get(prefix);
+				if (answers != null && answers.mostFrequentWord != null)
+				{
+					hits.increment();
+					return answers.mostFrequentWord;
+				}
+			}
+
+			misses.increment();
+			String word = trie.getMostFrequentWordWithPrefix(prefix);
+			synchronized (cache)
+			{
+				cache.computeIfAbsent(prefix, p -> new Answers()).mostFrequentWord = word;
+			}
+			return word;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds up to k of the most frequent words that begin with a prefix, from
+	 * the cache if it is there. See {@link Trie#getTopKWordsWithPrefix(String, int)}.
+	 */
+	public List<String> getTopKWordsWithPrefix(String prefix, int k)
+	{
+		lock.readLock().lock();
+		try
+		{
+			synchronized (cache)
+			{
+				Answers answers = cache.get(prefix);
+				if (answers != null && answers.topWords != null && k <= answers.topK)
+				{
+					hits.increment();
+					return new ArrayList<>(answers.topWords.subList(0, Math.min(k, answers.topWords.size())));
+				}
+			}
+
+			misses.increment();
+			List<String> words = trie.getTopKWordsWithPrefix(prefix, k);
+			synchronized (cache)
+			{
+				Answers answers = cache.computeIfAbsent(prefix, p -> new Answers());
+				if (k > answers.topK)
+				{
+					answers.topWords = new ArrayList<>(words);
+					answers.topK = k;
+				}
+			}
+			return words;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Retrieve an alphabetically sorted list of all words beginning with a
+	 * prefix. Not cached. See {@link Trie#getAlphabeticalListWithPrefix(String)}.
+	 */
+	public List<String> getAlphabeticalListWithPrefix(String prefix)
+	{
+		lock.readLock().lock();
+		try
+		{
+			return trie.getAlphabeticalListWithPrefix(prefix);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Searches for a whole word. Not cached. See {@link Trie#get(String)}.
+	 */
+	public TrieNode get(String str)
+	{
+		lock.readLock().lock();
+		try
+		{
+			return trie.get(str);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Drop the cached answers for every prefix of a word, including the empty
+	 * prefix and the word itself.
+	 */
+	private void invalidate(String word)
+	{
+		synchronized (cache)
+		{
+			for (int i = 0; i <= word.length(); i++)
+			{
+				cache.remove(word.substring(0, i));
+			}
+		}
+	}
+
+	/**
+	 * Drop every cached answer. The counters are not reset.
+	 */
+	public void clear()
+	{
+		synchronized (cache)
+		{
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Get the number of prefixes that have answers cached.
+	 */
+	public int size()
+	{
+		synchronized (cache)
+		{
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Get the number of queries that were answered from the cache.
+	 */
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of queries that had to be looked up in the trie.
+	 */
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * Get the number of prefixes that were thrown away to make room for others.
+	 */
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	/**
+	 * Get the fraction of queries that were answered from the cache.
+	 *
+	 * @return The hit rate, from 0 to 1, or 0 if there haven't been any queries
+	 */
+	public double getHitRate()
+	{
+		long hitCount = getHits();
+		long total = hitCount + getMisses();
+		return (total == 0) ? 0 : (double) hitCount / total;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CachedTrie; #prefixes=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions();
+	}
+}
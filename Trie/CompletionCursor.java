@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * Follows the word being typed into a text document, one character at a time,
+ * keeping the trie node for it so a completion can be found without searching
+ * from the root again.
+ * <p>
+ * The cursor keeps a stack with the node for every letter of the word, so a
+ * typed letter moves down to one child and a backspace moves back up one
+ * node. Either way the work done is the same no matter how long the document
+ * is. A character that isn't a letter ends the word and starts a new, empty
+ * one after it.
+ * <p>
+ * The cursor remembers where in the document the word ends. If an edit
+ * happens anywhere else (the caret was moved, or text was pasted somewhere
+ * else), the cursor is out of step and has to be set up again with
+ * {@link #resync(CharSequence, int)}, which reads back from the edit to the
+ * start of the word.
+ */
+public class CompletionCursor
+{
+	private final TrieNode root;
+
+	// nodes[i] is the node for the first i letters of the word, or null once
+	// the word has left the trie
+	private TrieNode[] nodes = new TrieNode[16];
+	private final StringBuilder word = new StringBuilder();
+
+	// the position in the document just after the word, or -1 if the cursor is out of step
+	private int end = -1;
+
+	/**
+	 * Create a cursor that looks words up in a trie. It starts out of step,
+	 * so the first edit sets it up with {@link #resync(CharSequence, int)}.
+	 *
+	 * @param trie The trie to find completions in
+	 */
+	public CompletionCursor(Trie trie)
+	{
+		root = trie.getNode("");
+		nodes[0] = root;
+	}
+
+	/**
+	 * Follow some text being inserted into the document.
+	 *
+	 * @param offset The position in the document the text was inserted at
+	 * @param text   The text that was inserted
+	 * @return false if the text wasn't inserted at the end of the word, in
+	 * which case the cursor is out of step and nothing has changed
+	 */
+	public boolean insert(int offset, CharSequence text)
+	{
+		if (offset != end)
+		{
+			end = -1;
+			return false;
+		}
+
+		for (int i = 0; i < text.length(); i++)
+		{
+			type(text.charAt(i));
+		}
+		end += text.length();
+		return true;
+	}
+
+	/**
+	 * Follow some text being removed from the document. Removing the end of
+	 * the word moves back up the trie; anything else puts the cursor out of
+	 * step.
+	 *
+	 * @param offset The position in the document the text was removed from
+	 * @param length The number of characters that were removed
+	 * @return false if the cursor is now out of step
+	 */
+	public boolean remove(int offset, int length)
+	{
+		if (end < 0 || offset + length != end || length > word.length())
+		{
+			end = -1;
+			return false;
+		}
+
+		word.setLength(word.length() - length);
+		end = offset;
+		return true;
+	}
+
+	/**
+	 * Set the cursor up again from the text of the document, after it has
+	 * fallen out of step. Only the letters just before end are read.
+	 *
+	 * @param text The text of the document, which only needs to be correct up to end
+	 * @param end  The position in the document just after the word
+	 */
+	public void resync(CharSequence text, int end)
+	{
+		int start = end;
+		while (start > 0 && Character.isLetter(text.charAt(start - 1)))
+		{
+			start--;
+		}
+
+		reset(start);
+		insert(start, text.subSequence(start, end));
+	}
+
+	/**
+	 * Start a new, empty word.
+	 *
+	 * @param offset The position in the document the word starts at
+	 */
+	public void reset(int offset)
+	{
+		word.setLength(0);
+		end = offset;
+	}
+
+	/**
+	 * Get the word being typed, in lower case.
+	 */
+	public String getWord()
+	{
+		return word.toString();
+	}
+
+	/**
+	 * Get the number of letters in the word being typed.
+	 */
+	public int getWordLength()
+	{
+		return word.length();
+	}
+
+	/**
+	 * Get the trie node for the word being typed.
+	 *
+	 * @return The node for the word, or null if no word in the trie starts with it
+	 */
+	public TrieNode getNode()
+	{
+		return nodes[word.length()];
+	}
+
+	/**
+	 * Find the rest of the most frequent word that starts with the word being
+	 * typed, walking down from the word's node rather than from the root.
+	 *
+	 * @return The letters to add to the word to complete it, or null if there
+	 * is no longer word in the trie that starts with it
+	 */
+	public String getCompletion()
+	{
+		TrieNode node = getNode();
+		if (node == null)
+		{
+			return null;
+		}
+
+		String match = Trie.getMostFrequentWordBelow(node, getWord());
+		return (match.length() > word.length()) ? match.substring(word.length()) : null;
+	}
+
+	/**
+	 * Move the cursor on by one typed character.
+	 */
+	private void type(char c)
+	{
+		if (!Character.isLetter(c))
+		{
+			// the word is over, and the next one starts after this character
+			word.setLength(0);
+			return;
+		}
+
+		char letter = Character.toLowerCase(c);
+		TrieNode node = getNode();
+		word.append(letter);
+
+		if (nodes.length <= word.length())
+		{
+			nodes = Arrays.copyOf(nodes, nodes.length * 2);
+		}
+		nodes[word.length()] = (node == null) ? null : node.getChild(letter);
+	}
+}
@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A closed-loop load generator for {@link CompletionServer}: a fixed number of
+ * clients each send a request, wait for the answer, and send the next one
+ * straight away, for a fixed length of time. It reports the throughput and
+ * the 50th, 99th and 99.9th percentile latency.
+ * <p>
+ * The prefixes are prefixes of words from the dictionary, picked in
+ * proportion to the words' frequencies, the same as in {@link TrieBenchmark}.
+ * Most requests ask for the single most frequent word, with some top-k and
+ * alphabetical list requests mixed in.
+ * <p>
+ * Usage: {@code java CompletionLoadGenerator [dictionary] [clients] [seconds] [url]}
+ * <p>
+ * If no url is given, a CompletionServer for the dictionary is started in the
+ * same JVM on a free port on localhost.
+ */
+public class CompletionLoadGenerator
+{
+	private static final long WARMUP_SECONDS = 5;
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		String fileName = (args.length > 0) ? args[0] : "Trie/data/word-freq.expanded.trim.txt";
+		int clients = (args.length > 1) ? Integer.parseInt(args[1]) : 16;
+		long seconds = (args.length > 2) ? Long.parseLong(args[2]) : 20;
+
+		List<String> words = new ArrayList<>();
+		List<TrieData> data = new ArrayList<>();
+		if (!TrieBenchmark.readEntries(fileName, words, data))
+		{
+			System.out.println("Can't read " + fileName);
+			return;
+		}
+		String[] prefixes = TrieBenchmark.samplePrefixes(words, data, new Random(42));
+
+		CompletionServer server = null;
+		String url;
+		if (args.length > 3)
+		{
+			url = args[3];
+		}
+		else
+		{
+			Trie trie = new Trie();
+			for (int i = 0; i < words.size(); i++)
+			{
+				trie.insert(words.get(i), data.get(i));
+			}
+			server = new CompletionServer(trie, 0);
+			server.start();
+			url = "http://localhost:" + server.getPort();
+		}
+
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		try
+		{
+			System.out.println("Warming up for " + WARMUP_SECONDS + " s against " + url);
+			run(client, url, prefixes, clients, WARMUP_SECONDS);
+
+			System.out.println("Running " + clients + " clients for " + seconds + " s");
+			long[] latencies = run(client, url, prefixes, clients, seconds);
+			report(latencies, seconds);
+		}
+		finally
+		{
+			client.close();
+			if (server != null)
+			{
+				server.stop();
+			}
+		}
+	}
+
+	/**
+	 * Run the clients for a while, each on its own virtual thread.
+	 *
+	 * @return The latency of every request that was answered, in nanoseconds, sorted
+	 */
+	private static long[] run(HttpClient client, String url, String[] prefixes, int clients, long seconds)
+			throws InterruptedException
+	{
+		long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+		List<long[]> perClient = Collections.synchronizedList(new ArrayList<>());
+		AtomicLong errors = new AtomicLong();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+		{
+			for (int c = 0; c < clients; c++)
+			{
+				Random random = new Random(c);
+				executor.execute(() -> {
+					long[] latencies = new long[1024];
+					int count = 0;
+					while (System.nanoTime() < deadline)
+					{
+						HttpRequest request = HttpRequest.newBuilder(URI.create(url + pickQuery(prefixes, random))).GET().build();
+						long start = System.nanoTime();
+						try
+						{
+							HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+							if (response.statusCode() != 200)
+							{
+								errors.incrementAndGet();
+								continue;
+							}
+						}
+						catch (IOException ex)
+						{
+							errors.incrementAndGet();
+							continue;
+						}
+						catch (InterruptedException ex)
+						{
+							Thread.currentThread().interrupt();
+							break;
+						}
+
+						if (count == latencies.length)
+						{
+							latencies = Arrays.copyOf(latencies, count * 2);
+						}
+						latencies[count++] = System.nanoTime() - start;
+					}
+					perClient.add(Arrays.copyOf(latencies, count));
+				});
+			}
+		}
+
+		if (errors.get() > 0)
+		{
+			System.out.println(errors.get() + " requests failed");
+		}
+		long[] all = perClient.stream().flatMapToLong(Arrays::stream).toArray();
+		Arrays.sort(all);
+		return all;
+	}
+
+	/**
+	 * Pick the path and query for the next request: mostly the single most
+	 * frequent word, as typing would ask for, with some top-k and list requests.
+	 */
+	private static String pickQuery(String[] prefixes, Random random)
+	{
+		String prefix = URLEncoder.encode(prefixes[random.nextInt(prefixes.length)], StandardCharsets.UTF_8);
+		int kind = random.nextInt(10);
+		if (kind < 8)
+		{
+			return "/complete?prefix=" + prefix;
+		}
+		else if (kind < 9)
+		{
+			return "/top?prefix=" + prefix + "&k=5";
+		}
+		else
+		{
+			return "/list?prefix=" + prefix + "&limit=20";
+		}
+	}
+
+	private static void report(long[] latencies, long seconds)
+	{
+		if (latencies.length == 0)
+		{
+			System.out.println("No requests were answered");
+			return;
+		}
+
+		System.out.printf(Locale.ROOT, "%d requests, %.0f requests/sec%n", latencies.length, (double) latencies.length / seconds);
+		System.out.printf(Locale.ROOT, "latency p50 %.1f us, p99 %.1f us, p999 %.1f us, max %.1f us%n",
+				percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3,
+				percentile(latencies, 0.999) / 1e3, latencies[latencies.length - 1] / 1e3);
+	}
+
+	/**
+	 * Get a percentile of some sorted values, using the nearest rank.
+	 */
+	static long percentile(long[] sorted, double fraction)
+	{
+		int rank = (int) Math.ceil(fraction * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+	}
+}
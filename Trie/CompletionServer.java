@@ -0,0 +1,257 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Serves completions from a dictionary over HTTP, so other programs can use
+ * the trie without embedding it. Every request is handled on its own virtual
+ * thread. The trie isn't changed once it is loaded, so any number of requests
+ * can read it at once.
+ * <p>
+ * The endpoints all take a {@code prefix} parameter, and answer in plain
+ * text with one word per line:
+ * <ul>
+ * <li>{@code GET /complete?prefix=th} - the most frequent word starting with
+ * the prefix, the same as {@link Trie#getMostFrequentWordWithPrefix(String)};</li>
+ * <li>{@code GET /top?prefix=th&k=5} - up to k of the most frequent words,
+ * most frequent first (k is 10 if it is left out);</li>
+ * <li>{@code GET /list?prefix=th&limit=100} - the words starting with the
+ * prefix in alphabetical order, up to the limit if there is one.</li>
+ * </ul>
+ * With {@code frequencies=true}, /complete and /top give each word's
+ * frequency after it, separated by a tab, and /complete gives nothing at all
+ * if no word starts with the prefix. This is what {@link RemoteTrieShard}
+ * uses to merge the answers from several servers.
+ * <p>
+ * The server only listens on the loopback address, so it can only be reached
+ * from the same machine.
+ * <p>
+ * Usage: {@code java CompletionServer [dictionary] [port]}
+ */
+public class CompletionServer
+{
+	static final int DEFAULT_PORT = 8080;
+	static final int DEFAULT_K = 10;
+
+	static
+	{
+		// the JDK server writes the headers and the body separately, and with Nagle's algorithm on,
+		// the body waits for the client's delayed ACK, adding about 40 ms to every request
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+		{
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	/**
+	 * Create a server for a trie, listening on the loopback address. It
+	 * doesn't accept requests until it is started.
+	 *
+	 * @param trie The words to serve, which mustn't change while the server is running
+	 * @param port The port to listen on, or 0 for any free port
+	 * @throws IOException if the port can't be listened on
+	 */
+	public CompletionServer(Trie trie, int port) throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(executor);
+
+		LocalTrieShard shard = new LocalTrieShard(trie);
+		server.createContext("/complete", handler(params -> withFrequencies(params)
+				? withFrequencies(Optional.ofNullable(shard.getMostFrequentWordWithPrefix(params.get("prefix"))).stream().toList())
+				: List.of(trie.getMostFrequentWordWithPrefix(params.get("prefix")))));
+		server.createContext("/top", handler(params -> withFrequencies(params)
+				? withFrequencies(shard.getTopKWordsWithPrefix(params.get("prefix"), intParam(params, "k", DEFAULT_K)))
+				: trie.getTopKWordsWithPrefix(params.get("prefix"), intParam(params, "k", DEFAULT_K))));
+		server.createContext("/list", handler(params -> trie.streamWithPrefix(params.get("prefix"))
+				.limit(intParam(params, "limit", Integer.MAX_VALUE))
+				.collect(Collectors.toList())));
+	}
+
+	public void start()
+	{
+		server.start();
+	}
+
+	/**
+	 * Stop accepting requests, and wait up to a second for the ones being handled to finish.
+	 */
+	public void stop()
+	{
+		server.stop(1);
+		executor.close();
+	}
+
+	/**
+	 * Get the port the server is listening on.
+	 */
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * A query that answers with a list of words, given the request's parameters.
+	 */
+	private interface Query
+	{
+		List<String> answer(Map<String, String> params);
+	}
+
+	/**
+	 * Wrap a query in a handler that reads the parameters and writes the words
+	 * back, or a 400 response if the parameters are missing or wrong.
+	 */
+	private static HttpHandler handler(Query query)
+	{
+		return exchange -> {
+			try (exchange)
+			{
+				if (!"GET".equals(exchange.getRequestMethod()))
+				{
+					send(exchange, 405, "Only GET is supported\n");
+					return;
+				}
+
+				List<String> words;
+				try
+				{
+					Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+					if (!params.containsKey("prefix"))
+					{
+						throw new IllegalArgumentException("The prefix parameter is missing");
+					}
+					words = query.answer(params);
+				}
+				catch (IllegalArgumentException ex)
+				{
+					send(exchange, 400, ex.getMessage() + "\n");
+					return;
+				}
+
+				StringBuilder body = new StringBuilder();
+				for (String word : words)
+				{
+					body.append(word).append('\n');
+				}
+				send(exchange, 200, body.toString());
+			}
+		};
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException
+	{
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody())
+		{
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Split a raw query string like "prefix=th&k=5" into its decoded parameters.
+	 *
+	 * @throws IllegalArgumentException if the query has a bad escape in it, like "%zz"
+	 */
+	static Map<String, String> parseQuery(String rawQuery)
+	{
+		Map<String, String> params = new HashMap<>();
+		if (rawQuery == null)
+		{
+			return params;
+		}
+
+		for (String pair : rawQuery.split("&"))
+		{
+			int equals = pair.indexOf('=');
+			String name = (equals < 0) ? pair : pair.substring(0, equals);
+			String value = (equals < 0) ? "" : pair.substring(equals + 1);
+			try
+			{
+				params.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+			}
+			catch (IllegalArgumentException ex)
+			{
+				throw new IllegalArgumentException("The query isn't encoded properly: " + pair);
+			}
+		}
+		return params;
+	}
+
+	private static boolean withFrequencies(Map<String, String> params)
+	{
+		return Boolean.parseBoolean(params.get("frequencies"));
+	}
+
+	/**
+	 * Write each word with its frequency after it, separated by a tab.
+	 */
+	private static List<String> withFrequencies(List<TrieShard.Completion> completions)
+	{
+		return completions.stream().map(completion -> completion.word() + "\t" + completion.frequency()).collect(Collectors.toList());
+	}
+
+	/**
+	 * Read a whole number parameter.
+	 *
+	 * @throws IllegalArgumentException if the parameter isn't a number of at least 0
+	 */
+	private static int intParam(Map<String, String> params, String name, int defaultValue)
+	{
+		String value = params.get(name);
+		if (value == null)
+		{
+			return defaultValue;
+		}
+
+		try
+		{
+			int number = Integer.parseInt(value);
+			if (number < 0)
+			{
+				throw new IllegalArgumentException("The " + name + " parameter can't be negative: " + value);
+			}
+			return number;
+		}
+		catch (NumberFormatException ex)
+		{
+			throw new IllegalArgumentException("The " + name + " parameter isn't a number: " + value);
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		String fileName = (args.length > 0) ? args[0] : "Trie/data/word-freq.expanded.trim.txt";
+		int port = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+
+		Trie trie = Trie.readInDictionary(fileName);
+		if (trie == null)
+		{
+			// readInDictionary has already said why
+			System.err.println("Not serving completions, since the dictionary couldn't be read");
+			System.exit(1);
+		}
+		CompletionServer server = new CompletionServer(trie, port);
+		server.start();
+		System.out.println("Serving completions on http://localhost:" + server.getPort() + "/");
+	}
+}
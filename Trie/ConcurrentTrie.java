@@ -0,0 +1,230 @@
+/**
+ * A trie that can be searched by any number of threads while other threads
+ * insert words into it.
+ * <p>
+ * Lookups never take a lock; they only read volatile fields and immutable
+ * child snapshots (see {@link ConcurrentTrieNode}). Inserts change the trie
+ * with compare-and-set operations, in an order that keeps these invariants
+ * true at every moment, as seen by any reader:
+ * <ul>
+ * <li>a node's maxFrequency is never lower than that of any of its children;</li>
+ * <li>once a word is visible as terminal, every node on its path has a
+ * maxFrequency of at least the word's frequency;</li>
+ * <li>every node without children is terminal.</li>
+ * </ul>
+ * The first two hold because maxFrequency is raised from the root down before
+ * the word is marked terminal. The third holds because a new branch is built
+ * privately, ending in a terminal node, and is then attached in one step.
+ * <p>
+ * Once the word is in place, every node on its path works out its
+ * maxFrequency again from the bottom up, which is what lowers it when a word
+ * is inserted again with a lower frequency. That pass can race with another
+ * insert that is raising the same nodes, and leave a node below a child for
+ * a moment, so while a frequency is being lowered a search may briefly miss
+ * the other insert's word. The other insert's own pass puts the node right,
+ * and once every insert has returned each maxFrequency is exact.
+ */
+public class ConcurrentTrie
+{
+	private final ConcurrentTrieNode root = new ConcurrentTrieNode();
+
+	/**
+	 * Inserts a string into the trie and returns the node at the end of it.
+	 * Safe to call from any number of threads at once. If two threads insert
+	 * the same word at the same time, one of their data objects wins. A word
+	 * that is already in the trie takes the new data, even if its frequency
+	 * is lower.
+	 *
+	 * @param str  The string to insert into the trie
+	 * @param data The data associated with the string
+	 * @return The node at the end of the string
+	 */
+	public ConcurrentTrieNode insert(String str, TrieData data)
+	{
+		int frequency = data.getFrequency();
+		ConcurrentTrieNode[] path = new ConcurrentTrieNode[str.length() + 1];
+		ConcurrentTrieNode currentNode = root;
+		currentNode.raiseMaxFrequency(frequency);
+		path[0] = currentNode;
+
+		for (int i = 0; i < str.length(); i++)
+		{
+			char c = str.charAt(i);
+			ConcurrentTrieNode child = currentNode.getChild(c);
+
+			if (child == null)
+			{
+				// build the rest of the word on its own, then attach it in one go
+				ConcurrentTrieNode branch = buildBranch(str, i + 1, data);
+				child = currentNode.addChildIfAbsent(c, branch);
+
+				if (child == branch)
+				{
+					// find the end of the new branch to return it
+					ConcurrentTrieNode end = branch;
+					for (int j = i + 1; j < str.length(); j++)
+					{
+						end = end.getChild(str.charAt(j));
+					}
+					repairPath(path, i);
+					return end;
+				}
+				// another thread added the same label first, so carry on down their node instead
+			}
+
+			child.raiseMaxFrequency(frequency);
+			currentNode = child;
+			path[i + 1] = currentNode;
+		}
+
+		currentNode.setWord(data);
+		repairPath(path, str.length());
+		return currentNode;
+	}
+
+	/**
+	 * Work out maxFrequency again on the first nodes of a word's path, from
+	 * the bottom up, so each node is worked out from children that have
+	 * already been fixed. This is what lowers maxFrequency after a word is
+	 * inserted again with a lower frequency, like Trie's repairPath. The whole
+	 * path is done even where a node doesn't change, since another insert may
+	 * have changed the nodes above it.
+	 *
+	 * @param path  The nodes along the path of the word, with the root first
+	 * @param depth The number of characters of the word whose nodes need fixing
+	 */
+	private static void repairPath(ConcurrentTrieNode[] path, int depth)
+	{
+		for (int i = depth; i >= 0; i--)
+		{
+			path[i].recomputeMaxFrequency();
+		}
+	}
+
+	/**
+	 * Build a chain of nodes for the end of a string, which isn't visible to
+	 * any other thread until it is attached to the trie.
+	 *
+	 * @param str  The string being inserted
+	 * @param from The position of the first character below the head of the chain
+	 * @param data The data for the word, which goes on the last node
+	 * @return The head of the chain
+	 */
+	private static ConcurrentTrieNode buildBranch(String str, int from, TrieData data)
+	{
+		ConcurrentTrieNode end = new ConcurrentTrieNode();
+		end.raiseMaxFrequency(data.getFrequency());
+		end.setWord(data);
+
+		// build from the bottom up, so each node is complete before its parent links to it
+		ConcurrentTrieNode head = end;
+		for (int i = str.length() - 1; i >= from; i--)
+		{
+			ConcurrentTrieNode parent = new ConcurrentTrieNode();
+			parent.raiseMaxFrequency(data.getFrequency());
+			parent.addChildIfAbsent(str.charAt(i), head);
+			head = parent;
+		}
+
+		return head;
+	}
+
+	/**
+	 * Search for a particular prefix in the trie, and return the final node in
+	 * the path from root to the end of the string. Never blocks.
+	 *
+	 * @param str The string to search for
+	 * @return the final node in the path from root to the end of the prefix, or
+	 * null if prefix is not found
+	 */
+	public ConcurrentTrieNode getNode(String str)
+	{
+		ConcurrentTrieNode currentNode = root;
+
+		for (int i = 0; i < str.length() && currentNode != null; i++)
+		{
+			currentNode = currentNode.getChild(str.charAt(i));
+		}
+
+		return currentNode;
+	}
+
+	/**
+	 * Searches for a whole word in the trie. Never blocks.
+	 *
+	 * @param str The word to search for
+	 * @return The node corresponding to the final character in the word, or
+	 * null if word is not found
+	 */
+	public ConcurrentTrieNode get(String str)
+	{
+		ConcurrentTrieNode node = getNode(str);
+
+		if ((node != null) && (node.isTerminal()))
+		{
+			return node;
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Finds the most frequently occurring word in the trie that begins with
+	 * the provided prefix. Never blocks.
+	 * <p>
+	 * The search follows the child whose maxFrequency matches the current
+	 * node's. While an insert is part way through, a node's maxFrequency may
+	 * already be raised for a word that isn't terminal yet; in that case the
+	 * search follows the child with the highest maxFrequency instead, which
+	 * always leads to a real word because every node without children is
+	 * terminal.
+	 *
+	 * @param prefix The prefix to search for
+	 * @return The most frequent word that starts with prefix, or the prefix
+	 * itself if it isn't in the trie
+	 */
+	public String getMostFrequentWordWithPrefix(String prefix)
+	{
+		ConcurrentTrieNode node = getNode(prefix);
+		StringBuilder word = new StringBuilder(prefix);
+
+		while (node != null)
+		{
+			ConcurrentTrieNode.Children children = node.getChildren();
+			int maxFrequency = node.getMaxFrequency();
+
+			// find the child leading to the most frequent word, remembering the best one in case none match exactly
+			int best = -1;
+			int match = -1;
+			for (int i = 0; i < children.nodes.length; i++)
+			{
+				int childMax = children.nodes[i].getMaxFrequency();
+				if (childMax >= maxFrequency)
+				{
+					match = i;
+				}
+				if (best < 0 || childMax > children.nodes[best].getMaxFrequency())
+				{
+					best = i;
+				}
+			}
+
+			if (match < 0)
+			{
+				if (node.isTerminal() || best < 0)
+				{
+					// the word ending here is the most frequent
+					break;
+				}
+				match = best;
+			}
+
+			word.append(children.labels[match]);
+			node = children.nodes[match];
+		}
+
+		return word.toString();
+	}
+}
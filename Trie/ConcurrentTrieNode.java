@@ -0,0 +1,253 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A node of a {@link ConcurrentTrie}, which can be read by any number of
+ * threads while other threads are adding to it.
+ * <p>
+ * The children are held in an immutable {@link Children} snapshot. Adding a
+ * child copies the snapshot with the new child in place, and swaps it in with
+ * a compare-and-set, retrying if another thread got there first. Readers just
+ * read whichever snapshot is current, so they never block or see a half-added
+ * child. maxFrequency is changed with a compare-and-set too: inserts raise it
+ * on the way down, and work it out again from the children on the way back
+ * up, which is how it comes down when a word becomes less frequent.
+ */
+public class ConcurrentTrieNode
+{
+	/**
+	 * The labels and children of a node at one point in time. The labels are
+	 * sorted, with nodes[i] being the child for labels[i]. Never modified once
+	 * published.
+	 */
+	static final class Children
+	{
+		final char[] labels;
+		final ConcurrentTrieNode[] nodes;
+
+		Children(char[] labels, ConcurrentTrieNode[] nodes)
+		{
+			this.labels = labels;
+			this.nodes = nodes;
+		}
+
+		/**
+		 * Binary search the labels.
+		 *
+		 * @return The position of the label, or {@code -(insertion point) - 1} if it isn't there
+		 */
+		int indexOf(char label)
+		{
+			int low = 0;
+			int high = labels.length - 1;
+
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+				if (labels[mid] < label)
+				{
+					low = mid + 1;
+				}
+				else if (labels[mid] > label)
+				{
+					high = mid - 1;
+				}
+				else
+				{
+					return mid;
+				}
+			}
+
+			return -(low + 1);
+		}
+	}
+
+	private static final Children NO_CHILDREN = new Children(new char[0], new ConcurrentTrieNode[0]);
+
+	private static final VarHandle CHILDREN;
+	private static final VarHandle MAX_FREQUENCY;
+
+	static
+	{
+		try
+		{
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			CHILDREN = lookup.findVarHandle(ConcurrentTrieNode.class, "children", Children.class);
+			MAX_FREQUENCY = lookup.findVarHandle(ConcurrentTrieNode.class, "maxFrequency", int.class);
+		}
+		catch (ReflectiveOperationException ex)
+		{
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+
+	private volatile Children children = NO_CHILDREN;
+	private volatile int maxFrequency = -1;   // the highest frequency among nodes following this one
+
+	// data is always written before terminal, so a reader that sees terminal == true also sees the data
+	private volatile TrieData data = null;
+	private volatile boolean terminal = false;
+
+	/**
+	 * Lookup a child node of the current node that is associated with a
+	 * particular character label.
+	 *
+	 * @param label The label to search for
+	 * @return The child node associated with the provided label, or null if there isn't one
+	 */
+	public ConcurrentTrieNode getChild(char label)
+	{
+		Children current = children;
+		int index = current.indexOf(label);
+		return (index >= 0) ? current.nodes[index] : null;
+	}
+
+	/**
+	 * Get the children of this node as they are right now. Children added
+	 * afterwards won't show up in the returned snapshot.
+	 */
+	Children getChildren()
+	{
+		return children;
+	}
+
+	public int getNumChildren()
+	{
+		return children.labels.length;
+	}
+
+	/**
+	 * Attach a child to this node, unless another child already has the same
+	 * label.
+	 *
+	 * @param label The character label to associate the new child node with
+	 * @param node  The new child node
+	 * @return The child that ends up with the label, which is not the given node if another thread added one first
+	 */
+	public ConcurrentTrieNode addChildIfAbsent(char label, ConcurrentTrieNode node)
+	{
+		while (true)
+		{
+			Children current = children;
+			int index = current.indexOf(label);
+			if (index >= 0)
+			{
+				return current.nodes[index];
+			}
+
+			// copy the children with the new one in its sorted position
+			index = -(index + 1);
+			int length = current.labels.length;
+			char[] labels = new char[length + 1];
+			ConcurrentTrieNode[] nodes = new ConcurrentTrieNode[length + 1];
+			System.arraycopy(current.labels, 0, labels, 0, index);
+			System.arraycopy(current.nodes, 0, nodes, 0, index);
+			labels[index] = label;
+			nodes[index] = node;
+			System.arraycopy(current.labels, index, labels, index + 1, length - index);
+			System.arraycopy(current.nodes, index, nodes, index + 1, length - index);
+
+			if (CHILDREN.compareAndSet(this, current, new Children(labels, nodes)))
+			{
+				return node;
+			}
+			// another thread changed the children first, so try again with theirs
+		}
+	}
+
+	/**
+	 * Get the highest frequency among the words at or below this node.
+	 */
+	public int getMaxFrequency()
+	{
+		return maxFrequency;
+	}
+
+	/**
+	 * Raise maxFrequency to at least the given frequency. It is never lowered
+	 * here; see {@link #recomputeMaxFrequency()}.
+	 *
+	 * @param frequency The frequency of a word at or below this node
+	 */
+	public void raiseMaxFrequency(int frequency)
+	{
+		int current = maxFrequency;
+		while (current < frequency && !MAX_FREQUENCY.compareAndSet(this, current, frequency))
+		{
+			current = maxFrequency;
+		}
+	}
+
+	/**
+	 * Work out maxFrequency again from this node's own word and its children,
+	 * which can lower it. The children must already be right, or be about to
+	 * be fixed by the thread changing them.
+	 * <p>
+	 * The value is only left alone once it matches a recomputation that read
+	 * the children after reading it. After a successful compare-and-set the
+	 * children are read again, so a value worked out from children another
+	 * thread changed in the meantime doesn't stay.
+	 */
+	public void recomputeMaxFrequency()
+	{
+		while (true)
+		{
+			int current = maxFrequency;
+
+			TrieData word = terminal ? data : null;
+			int max = (word == null) ? -1 : word.getFrequency();
+			for (ConcurrentTrieNode child : children.nodes)
+			{
+				max = Math.max(max, child.maxFrequency);
+			}
+
+			if (max == current)
+			{
+				return;
+			}
+			MAX_FREQUENCY.compareAndSet(this, current, max);
+		}
+	}
+
+	/**
+	 * Return whether this node is terminal.
+	 **/
+	public boolean isTerminal()
+	{
+		return terminal;
+	}
+
+	/**
+	 * Get the data object attached to this node.
+	 *
+	 * @return The data for the word ending at this node, or null if there isn't any
+	 */
+	public TrieData getData()
+	{
+		return data;
+	}
+
+	/**
+	 * Attach data to this node and mark it as the end of a word. Readers see
+	 * the node become terminal only once the data is in place.
+	 *
+	 * @param dataObject The data object to be added to the node.
+	 */
+	public void setWord(TrieData dataObject)
+	{
+		data = dataObject;
+		terminal = true;
+	}
+
+	/**
+	 * The toString() method for the node, in the same format as {@link TrieNode#toString()}.
+	 *
+	 * @return A description of the node as a String.
+	 */
+	@Override
+	public String toString()
+	{
+		TrieData current = data;
+		return "TrieNode; isTerminal=" + terminal + ", data=" + ((current == null) ? "null" : current.toString()) + ", #children=" + getNumChildren();
+	}
+}
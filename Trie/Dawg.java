@@ -0,0 +1,320 @@
+import java.util.*;
+
+/**
+ * A minimal directed acyclic word graph (DAWG) holding the same words as a
+ * {@link Trie}.
+ * <p>
+ * A trie shares the start of words that begin the same way; a DAWG also
+ * shares the end of words that finish the same way, so "-ing", "-tion" and
+ * "-ness" are each stored once rather than once per word. It is built with
+ * the incremental algorithm of Daciuk et al., which needs the words in sorted
+ * order: when a new word is added, the part of the previous word that isn't
+ * shared with it can never change again, so those nodes are swapped for an
+ * equivalent node already in the DAWG, if there is one.
+ * <p>
+ * Since nodes are shared, the frequency and rank of a word can't be kept on
+ * its last node. Instead every word gets an ordinal, its position in
+ * alphabetical order, which is worked out while walking the word from the
+ * counts of words below each node. The ordinal is an index into plain
+ * frequency and rank arrays.
+ */
+public class Dawg
+{
+	private final DawgNode root;
+	private final int[] frequencies;
+	private final int[] ranks;
+	private final int nodeCount;
+
+	private Dawg(DawgNode root, int[] frequencies, int[] ranks, int nodeCount)
+	{
+		this.root = root;
+		this.frequencies = frequencies;
+		this.ranks = ranks;
+		this.nodeCount = nodeCount;
+	}
+
+	/**
+	 * Build a DAWG with the same words and data as a trie.
+	 *
+	 * @param trie The trie to copy
+	 * @return The minimal DAWG for the trie's words
+	 */
+	public static Dawg fromTrie(Trie trie)
+	{
+		Builder builder = new Builder();
+		int[] frequencies = new int[16];
+		int[] ranks = new int[16];
+		int count = 0;
+
+		// the trie gives the words back in sorted order, which is what the builder needs
+		Iterator<String> words = trie.iteratorWithPrefix("");
+		while (words.hasNext())
+		{
+			String word = words.next();
+			TrieNode node = trie.get(word);
+
+			builder.add(word);
+			if (count == frequencies.length)
+			{
+				frequencies = Arrays.copyOf(frequencies, count * 2);
+				ranks = Arrays.copyOf(ranks, count * 2);
+			}
+			frequencies[count] = node.getFrequency();
+			ranks[count] = node.getRank();
+			count++;
+		}
+
+		DawgNode root = builder.finish();
+		return new Dawg(root, Arrays.copyOf(frequencies, count), Arrays.copyOf(ranks, count), builder.registered.size() + 1);
+	}
+
+	/**
+	 * Get the number of distinct nodes in the DAWG, including the root.
+	 */
+	public int getNodeCount()
+	{
+		return nodeCount;
+	}
+
+	/**
+	 * Get the number of words in the DAWG.
+	 */
+	public int getWordCount()
+	{
+		return frequencies.length;
+	}
+
+	/**
+	 * Search for a particular prefix, and return the node at the end of it.
+	 *
+	 * @param str The string to search for
+	 * @return The node at the end of the prefix, or null if prefix is not found
+	 */
+	public DawgNode getNode(String str)
+	{
+		DawgNode currentNode = root;
+
+		for (int i = 0; i < str.length() && currentNode != null; i++)
+		{
+			currentNode = currentNode.getChild(str.charAt(i));
+		}
+
+		return currentNode;
+	}
+
+	/**
+	 * Get the ordinal of a word, which is its position in alphabetical order
+	 * among all the words in the DAWG. This is a minimal perfect hash: every
+	 * word gets a different ordinal, from 0 to {@code getWordCount() - 1}.
+	 * <p>
+	 * Walking down the word, every word that is passed on the way (a terminal
+	 * node) and every word below a child with a smaller label comes before it.
+	 *
+	 * @param word The word to search for
+	 * @return The ordinal of the word, or -1 if it isn't in the DAWG
+	 */
+	public int getOrdinal(String word)
+	{
+		DawgNode currentNode = root;
+		int ordinal = 0;
+
+		for (int i = 0; i < word.length(); i++)
+		{
+			if (currentNode.isTerminal())
+			{
+				ordinal++;
+			}
+
+			char c = word.charAt(i);
+			DawgNode next = null;
+			for (int j = 0; j < currentNode.getNumChildren(); j++)
+			{
+				if (currentNode.getChildLabel(j) < c)
+				{
+					ordinal += currentNode.getChildAt(j).getWordCount();
+				}
+				else
+				{
+					if (currentNode.getChildLabel(j) == c)
+					{
+						next = currentNode.getChildAt(j);
+					}
+					break;
+				}
+			}
+
+			if (next == null)
+			{
+				return -1;
+			}
+			currentNode = next;
+		}
+
+		return currentNode.isTerminal() ? ordinal : -1;
+	}
+
+	/**
+	 * Return whether a whole word is in the DAWG. The same as {@link Trie#get(String)} not returning null.
+	 */
+	public boolean contains(String word)
+	{
+		DawgNode node = getNode(word);
+		return node != null && node.isTerminal();
+	}
+
+	/**
+	 * Get the frequency of a word.
+	 *
+	 * @param word The word to search for
+	 * @return The frequency of the word, or -1 if it isn't in the DAWG
+	 */
+	public int getFrequency(String word)
+	{
+		int ordinal = getOrdinal(word);
+		return (ordinal < 0) ? -1 : frequencies[ordinal];
+	}
+
+	/**
+	 * Get the rank of a word.
+	 *
+	 * @param word The word to search for
+	 * @return The rank of the word, or -1 if it isn't in the DAWG
+	 */
+	public int getRank(String word)
+	{
+		int ordinal = getOrdinal(word);
+		return (ordinal < 0) ? -1 : ranks[ordinal];
+	}
+
+	/**
+	 * Retrieve an alphabetically sorted list of all words beginning with a
+	 * particular prefix. The same as {@link Trie#getAlphabeticalListWithPrefix(String)}.
+	 *
+	 * @param prefix The prefix with which all words start.
+	 * @return The list of words beginning with the prefix, or an empty list if
+	 * the prefix was not found.
+	 */
+	public List<String> getAlphabeticalListWithPrefix(String prefix)
+	{
+		List<String> words = new ArrayList<>();
+		DawgNode node = getNode(prefix);
+
+		if (node != null)
+		{
+			addWords(node, new StringBuilder(prefix), words);
+		}
+
+		return words;
+	}
+
+	/**
+	 * Add every word at or below a node to a list, in alphabetical order.
+	 */
+	private static void addWords(DawgNode node, StringBuilder word, List<String> words)
+	{
+		if (node.isTerminal())
+		{
+			words.add(word.toString());
+		}
+
+		for (int i = 0; i < node.getNumChildren(); i++)
+		{
+			word.append(node.getChildLabel(i));
+			addWords(node.getChildAt(i), word, words);
+			word.setLength(word.length() - 1);
+		}
+	}
+
+	/**
+	 * Builds a minimal DAWG from words given in sorted order.
+	 */
+	private static class Builder
+	{
+		private final DawgNode root = new DawgNode();
+
+		// every node that has been checked and kept, so equivalent nodes can be found
+		private final Map<DawgNode, DawgNode> registered = new HashMap<>();
+
+		// the path of the last word that hasn't been checked against the register yet
+		private final List<DawgNode> uncheckedParents = new ArrayList<>();
+		private final List<DawgNode> uncheckedChildren = new ArrayList<>();
+
+		private String previousWord = "";
+		private boolean first = true;
+
+		void add(String word)
+		{
+			if (!first && word.compareTo(previousWord) <= 0)
+			{
+				throw new IllegalArgumentException("Words must be added in sorted order, without repeats: \"" + word + "\" after \"" + previousWord + "\"");
+			}
+
+			// the part of the previous word after the shared prefix will never change again
+			int common = 0;
+			while (common < word.length() && common < previousWord.length() && word.charAt(common) == previousWord.charAt(common))
+			{
+				common++;
+			}
+			minimize(common);
+
+			// add the rest of the new word
+			DawgNode node = uncheckedChildren.isEmpty() ? root : uncheckedChildren.get(uncheckedChildren.size() - 1);
+			for (int i = common; i < word.length(); i++)
+			{
+				DawgNode child = new DawgNode();
+				node.appendChild(word.charAt(i), child);
+				uncheckedParents.add(node);
+				uncheckedChildren.add(child);
+				node = child;
+			}
+			node.setTerminal(true);
+
+			previousWord = word;
+			first = false;
+		}
+
+		/**
+		 * Swap the unchecked nodes below a depth for equivalent registered
+		 * nodes, or register them if there aren't any. Works from the bottom
+		 * up, so a node's children are always final before it is checked.
+		 */
+		private void minimize(int downTo)
+		{
+			for (int i = uncheckedChildren.size() - 1; i >= downTo; i--)
+			{
+				DawgNode parent = uncheckedParents.remove(i);
+				DawgNode child = uncheckedChildren.remove(i);
+
+				DawgNode existing = registered.putIfAbsent(child, child);
+				if (existing != null)
+				{
+					parent.replaceLastChild(existing);
+				}
+			}
+		}
+
+		DawgNode finish()
+		{
+			minimize(0);
+			countWords(root);
+			return root;
+		}
+
+		/**
+		 * Work out the number of words below every node, visiting each shared node only once.
+		 */
+		private static int countWords(DawgNode node)
+		{
+			if (node.wordCount < 0)
+			{
+				int count = node.isTerminal() ? 1 : 0;
+				for (int i = 0; i < node.getNumChildren(); i++)
+				{
+					count += countWords(node.getChildAt(i));
+				}
+				node.wordCount = count;
+			}
+			return node.wordCount;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+import java.util.Arrays;
+
+/**
+ * A node in a {@link Dawg}. Unlike a TrieNode, a DawgNode can have more than
+ * one parent, since every word that ends the same way shares the same nodes
+ * for its ending.
+ * <p>
+ * Because nodes are shared, a node can't hold data for a particular word.
+ * Instead each node counts the words at or below it, which is enough to give
+ * every word a unique number (see {@link Dawg#getOrdinal(String)}).
+ */
+public class DawgNode
+{
+	private static final char[] NO_LABELS = new char[0];
+	private static final DawgNode[] NO_NODES = new DawgNode[0];
+
+	// sorted labels, with nodes[i] being the child for labels[i]
+	private char[] labels = NO_LABELS;
+	private DawgNode[] nodes = NO_NODES;
+	private boolean terminal = false;
+
+	// the number of words at or below this node, worked out once the DAWG is finished
+	int wordCount = -1;
+
+	public int getNumChildren()
+	{
+		return labels.length;
+	}
+
+	public char getChildLabel(int index)
+	{
+		return labels[index];
+	}
+
+	public DawgNode getChildAt(int index)
+	{
+		return nodes[index];
+	}
+
+	/**
+	 * Lookup a child node of the current node that is associated with a
+	 * particular character label.
+	 *
+	 * @param label The label to search for
+	 * @return The child node associated with the provided label, or null if there isn't one
+	 */
+	public DawgNode getChild(char label)
+	{
+		int index = Arrays.binarySearch(labels, label);
+		return (index >= 0) ? nodes[index] : null;
+	}
+
+	/**
+	 * Add a child after all the existing children. Words are added to a DAWG
+	 * in sorted order, so a new label is always the largest so far.
+	 */
+	void appendChild(char label, DawgNode node)
+	{
+		labels = Arrays.copyOf(labels, labels.length + 1);
+		nodes = Arrays.copyOf(nodes, nodes.length + 1);
+		labels[labels.length - 1] = label;
+		nodes[nodes.length - 1] = node;
+	}
+
+	/**
+	 * Replace the last child with an equivalent node that is already in the DAWG.
+	 */
+	void replaceLastChild(DawgNode node)
+	{
+		nodes[nodes.length - 1] = node;
+	}
+
+	public boolean isTerminal()
+	{
+		return terminal;
+	}
+
+	void setTerminal(boolean terminal)
+	{
+		this.terminal = terminal;
+	}
+
+	/**
+	 * Get the number of words at or below this node.
+	 */
+	public int getWordCount()
+	{
+		return wordCount;
+	}
+
+	/**
+	 * Two nodes are equivalent if they are both terminal or both not, and have
+	 * the same labels leading to the very same children. This is only used
+	 * while building, on nodes whose children are already final.
+	 */
+	@Override
+	public boolean equals(Object other)
+	{
+		if (this == other)
+		{
+			return true;
+		}
+		if (!(other instanceof DawgNode))
+		{
+			return false;
+		}
+
+		DawgNode node = (DawgNode) other;
+		if (terminal != node.terminal || !Arrays.equals(labels, node.labels))
+		{
+			return false;
+		}
+		for (int i = 0; i < nodes.length; i++)
+		{
+			if (nodes[i] != node.nodes[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int hash = terminal ? 1 : 0;
+		for (int i = 0; i < labels.length; i++)
+		{
+			hash = 31 * hash + labels[i];
+			hash = 31 * hash + System.identityHashCode(nodes[i]);
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "DawgNode; isTerminal=" + terminal + ", #words=" + wordCount + ", #children=" + labels.length;
+	}
+}
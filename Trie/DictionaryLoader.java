@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Reads a dictionary file into a trie using all the available cores.
+ * <p>
+ * Each line of the file is "rank word frequency [anything else]", the same
+ * as for {@link Trie#readInDictionary(String)}. Loading happens in three
+ * steps:
+ * <ol>
+ * <li>the file is read through a FileChannel in large chunks, each cut at the
+ * end of a line;</li>
+ * <li>the chunks are parsed in parallel on the common fork-join pool;</li>
+ * <li>the words are split up by their first character, a sub-trie is built for
+ * each character in parallel, and the sub-trees are attached to the root.</li>
+ * </ol>
+ * Within each sub-trie the words are inserted in the same order as they
+ * appear in the file, so duplicate words end up with the same data and every
+ * node ends up with the same maxFrequency as a single-threaded build.
+ */
+class DictionaryLoader
+{
+	// how much of the file to read at a time
+	static final int CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * The words parsed from one chunk of the file, in file order.
+	 */
+	private static class Chunk
+	{
+		final byte[] bytes;
+		int count = 0;
+		String[] words = new String[64];
+		int[] ranks = new int[64];
+		int[] frequencies = new int[64];
+
+		Chunk(byte[] bytes)
+		{
+			this.bytes = bytes;
+		}
+
+		void add(String word, int rank, int frequency)
+		{
+			if (count == words.length)
+			{
+				words = Arrays.copyOf(words, count * 2);
+				ranks = Arrays.copyOf(ranks, count * 2);
+				frequencies = Arrays.copyOf(frequencies, count * 2);
+			}
+			words[count] = word;
+			ranks[count] = rank;
+			frequencies[count] = frequency;
+			count++;
+		}
+	}
+
+	/**
+	 * Read a dictionary file and insert all its words below the given root.
+	 *
+	 * @param path  The dictionary file
+	 * @param root  The (empty) root node to build the trie below
+	 * @param table The table to add a row to for each line, in file order
+	 * @return The number of words read
+	 * @throws IOException if the file can't be read
+	 */
+	static int load(Path path, TrieNode root, TrieDataTable table) throws IOException
+	{
+		List<Chunk> chunks = readChunks(path);
+
+		// parse the chunks in parallel, keeping them in file order
+		chunks.parallelStream().forEach(DictionaryLoader::parse);
+
+		// give every line its row before the sub-tries are built, since the table can only be added to by one thread
+		int[] firstOrdinals = new int[chunks.size()];
+		for (int c = 0; c < chunks.size(); c++)
+		{
+			Chunk chunk = chunks.get(c);
+			firstOrdinals[c] = table.addAll(chunk.frequencies, chunk.ranks, chunk.count);
+		}
+
+		// sort the words into buckets by their first character, still in file order
+		Map<Character, List<int[]>> buckets = new TreeMap<>();
+		List<int[]> emptyWords = new ArrayList<>();
+		int wordCount = 0;
+		for (int c = 0; c < chunks.size(); c++)
+		{
+			Chunk chunk = chunks.get(c);
+			for (int i = 0; i < chunk.count; i++)
+			{
+				String word = chunk.words[i];
+				if (word.isEmpty())
+				{
+					emptyWords.add(new int[]{c, i});
+				}
+				else
+				{
+					buckets.computeIfAbsent(word.charAt(0), k -> new ArrayList<>()).add(new int[]{c, i});
+				}
+			}
+			wordCount += chunk.count;
+		}
+
+		// build a sub-trie for each first character in parallel
+		Map<Character, TrieNode> subTries = buckets.entrySet().parallelStream()
+				.collect(Collectors.toMap(Map.Entry::getKey, bucket -> buildSubTrie(bucket.getKey(), bucket.getValue(), chunks, table, firstOrdinals),
+						(a, b) -> a, TreeMap::new));
+
+		// attach the sub-tries to the root, and give the root its maxFrequency and list of most frequent words
+		for (Map.Entry<Character, TrieNode> subTrie : subTries.entrySet())
+		{
+			root.addChild(subTrie.getKey(), subTrie.getValue());
+		}
+		root.recomputeMaxFrequency();
+		root.rebuildTopWords("");
+
+		// an empty word belongs to the root itself, which the sub-tries don't cover
+		for (int[] entry : emptyWords)
+		{
+			Trie.insert(root, "", table, firstOrdinals[entry[0]] + entry[1]);
+		}
+
+		return wordCount;
+	}
+
+	/**
+	 * Build the sub-trie for all the words starting with a particular character.
+	 * It is built under a temporary parent, so the first node gets its
+	 * maxFrequency just like any other.
+	 *
+	 * @param first         The first character of all the words
+	 * @param entries       The chunk and position of each word, in file order
+	 * @param chunks        The parsed chunks
+	 * @param table         The table holding the words' data
+	 * @param firstOrdinals The row of the first word of each chunk
+	 * @return The node for the first character, with everything below it
+	 */
+	private static TrieNode buildSubTrie(char first, List<int[]> entries, List<Chunk> chunks, TrieDataTable table, int[] firstOrdinals)
+	{
+		TrieNode parent = new TrieNode();
+		for (int[] entry : entries)
+		{
+			Trie.insert(parent, chunks.get(entry[0]).words[entry[1]], table, firstOrdinals[entry[0]] + entry[1]);
+		}
+		return parent.getChild(first);
+	}
+
+	/**
+	 * Read the whole file in chunks of about {@code CHUNK_SIZE} bytes. Each
+	 * chunk ends at the end of a line, so the chunks can be parsed separately.
+	 */
+	private static List<Chunk> readChunks(Path path) throws IOException
+	{
+		List<Chunk> chunks = new ArrayList<>();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+			byte[] carried = new byte[0];
+
+			while (channel.read(buffer) >= 0)
+			{
+				buffer.flip();
+
+				// find the end of the last complete line
+				int end = buffer.limit();
+				while (end > 0 && buffer.get(end - 1) != '\n')
+				{
+					end--;
+				}
+
+				if (end == 0)
+				{
+					// a line longer than a whole chunk, so keep it and read some more
+					carried = append(carried, buffer, buffer.limit());
+				}
+				else
+				{
+					chunks.add(new Chunk(append(carried, buffer, end)));
+
+					// keep the start of the unfinished line for the next chunk
+					carried = new byte[buffer.limit() - end];
+					buffer.get(end, carried);
+				}
+				buffer.clear();
+			}
+
+			// the last line doesn't have to end with a new line
+			if (carried.length > 0)
+			{
+				chunks.add(new Chunk(carried));
+			}
+		}
+
+		return chunks;
+	}
+
+	/**
+	 * Join the bytes carried over from the last chunk to the first length bytes of the buffer.
+	 */
+	private static byte[] append(byte[] carried, ByteBuffer buffer, int length)
+	{
+		byte[] joined = Arrays.copyOf(carried, carried.length + length);
+		buffer.get(0, joined, carried.length, length);
+		return joined;
+	}
+
+	/**
+	 * Parse every line of a chunk. The fields are separated by single spaces,
+	 * just like {@code line.split(" ")}, so a line that
+	 * {@link Trie#readInDictionary(String)} can't read can't be read here either.
+	 */
+	private static void parse(Chunk chunk)
+	{
+		byte[] bytes = chunk.bytes;
+		int lineStart = 0;
+
+		while (lineStart < bytes.length)
+		{
+			int lineEnd = lineStart;
+			while (lineEnd < bytes.length && bytes[lineEnd] != '\n')
+			{
+				lineEnd++;
+			}
+			int next = lineEnd + 1;
+			if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r')
+			{
+				lineEnd--;
+			}
+
+			int rankEnd = fieldEnd(bytes, lineStart, lineEnd);
+			int wordEnd = fieldEnd(bytes, rankEnd + 1, lineEnd);
+			int frequencyEnd = fieldEnd(bytes, wordEnd + 1, lineEnd);
+			if (wordEnd >= lineEnd)
+			{
+				throw new NumberFormatException("Missing frequency in line \"" + new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8) + "\"");
+			}
+
+			int rank = parseInt(bytes, lineStart, rankEnd);
+			String word = new String(bytes, rankEnd + 1, wordEnd - rankEnd - 1, StandardCharsets.UTF_8);
+			int frequency = parseInt(bytes, wordEnd + 1, frequencyEnd);
+			chunk.add(word, rank, frequency);
+
+			lineStart = next;
+		}
+	}
+
+	/**
+	 * Find the end of the field starting at a position, which is the next space or the end of the line.
+	 */
+	private static int fieldEnd(byte[] bytes, int start, int lineEnd)
+	{
+		int end = Math.min(start, lineEnd);
+		while (end < lineEnd && bytes[end] != ' ')
+		{
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Parse a decimal int straight from the bytes, following the same rules as {@link Integer#parseInt(String)}.
+	 */
+	private static int parseInt(byte[] bytes, int start, int end)
+	{
+		if (start >= end)
+		{
+			throw new NumberFormatException("For input string: \"\"");
+		}
+
+		boolean negative = bytes[start] == '-';
+		int i = (negative || bytes[start] == '+') ? start + 1 : start;
+		if (i == end)
+		{
+			throw new NumberFormatException("For input string: \"" + new String(bytes, start, end - start, StandardCharsets.UTF_8) + "\"");
+		}
+
+		// accumulate negatively so that Integer.MIN_VALUE can be parsed
+		long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		long result = 0;
+		for (; i < end; i++)
+		{
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9 || (result = result * 10 - digit) < limit)
+			{
+				throw new NumberFormatException("For input string: \"" + new String(bytes, start, end - start, StandardCharsets.UTF_8) + "\"");
+			}
+		}
+
+		return (int) (negative ? result : -result);
+	}
+}
@@ -0,0 +1,600 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A read-only copy of a {@link Trie}, compiled into a double-array trie.
+ * <p>
+ * Every node becomes an int "state". The child of state s along the character
+ * with code c lives at state t = base[s] + c, and is only really a child if
+ * check[t] == s. This makes each step of a lookup two array reads, instead of
+ * following a pointer to a TrieNode and searching its children, and the whole
+ * trie is one flat block of ints rather than one object per node. Each state
+ * also keeps the code of its first child and each child the code of the next
+ * one, so walking the children of a state visits only the real ones rather
+ * than trying every code in the alphabet.
+ * <p>
+ * Create one with {@link Trie#freeze()} once the dictionary has been read in.
+ * Changes made to the original trie afterwards are not seen by the frozen copy.
+ * <p>
+ * The block of ints can also be written to a file with {@link #save(Path)} and
+ * memory mapped straight back in with {@link #map(Path)}, in which case the
+ * queries read the file in place and nothing is rebuilt on startup.
+ */
+public class FrozenTrie
+{
+	private static final int ROOT = 0;
+	private static final int FREE = -1;
+
+	// the ints stored for each state, side by side so a lookup touches as few cache lines as possible
+	private static final int BASE = 0;
+	private static final int CHECK = 1;
+	private static final int FREQUENCY = 2;
+	private static final int RANK = 3;
+	private static final int MAX_FREQUENCY = 4;
+	private static final int TERMINAL = 5;
+	// the code of a state's first child, and of the next child of the same parent, or 0 if there isn't one
+	private static final int FIRST_CHILD = 6;
+	private static final int NEXT_SIBLING = 7;
+	private static final int STATE_INTS = 8;
+
+	// the file format is: magic, version, alphabet length, alphabet (one int per char), number of states, states
+	private static final int MAGIC = 0x54524945; // "TRIE"
+	private static final int VERSION = 1;
+	private static final int HEADER_INTS = 4;
+
+	// the distinct labels used in the trie, in sorted order; the code of alphabet[i] is i + 1
+	private final char[] alphabet;
+	// codeOf[label] is the code of a label, or 0 if the label isn't used anywhere in the trie
+	private final int[] codeOf;
+
+	// STATE_INTS ints for each state, either on the heap or mapped from a file
+	private final IntBuffer states;
+	private final int size;
+
+	/**
+	 * Compile the trie below the given root node.
+	 *
+	 * @param root The root of the trie to copy
+	 */
+	FrozenTrie(TrieNode root)
+	{
+		Builder builder = new Builder(root);
+		alphabet = builder.alphabet;
+		codeOf = builder.codeOf;
+		size = builder.size;
+		states = IntBuffer.wrap(builder.pack());
+	}
+
+	/**
+	 * Wrap the states read from a file.
+	 */
+	private FrozenTrie(char[] alphabet, IntBuffer states, int size)
+	{
+		this.alphabet = alphabet;
+		this.codeOf = codesFor(alphabet);
+		this.states = states;
+		this.size = size;
+	}
+
+	/**
+	 * Work out the code of each label from the sorted alphabet.
+	 */
+	private static int[] codesFor(char[] alphabet)
+	{
+		int[] codeOf = new int[(alphabet.length == 0) ? 0 : alphabet[alphabet.length - 1] + 1];
+		for (int i = 0; i < alphabet.length; i++)
+		{
+			codeOf[alphabet[i]] = i + 1;
+		}
+		return codeOf;
+	}
+
+	/**
+	 * Write the frozen trie to a file, in a form that {@link #map(Path)} can
+	 * use directly.
+	 *
+	 * @param path The file to write, which is replaced if it already exists
+	 * @throws IOException if the file can't be written
+	 */
+	public void save(Path path) throws IOException
+	{
+		long bytes = 4L * (HEADER_INTS + alphabet.length + (long) size * STATE_INTS);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			IntBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+			out.put(MAGIC);
+			out.put(VERSION);
+			out.put(alphabet.length);
+			for (char label : alphabet)
+			{
+				out.put(label);
+			}
+			out.put(size);
+			out.put(states.duplicate().clear());
+		}
+	}
+
+	/**
+	 * Memory map a file written by {@link #save(Path)}. The states are read
+	 * from the file as they are needed, so this takes the same time however big
+	 * the trie is, and processes that map the same file share one copy of it in
+	 * the page cache.
+	 * <p>
+	 * Only the header, the alphabet and the size of the file are checked here,
+	 * since checking every state would mean reading the whole file. A file
+	 * whose states are corrupt is still mapped, but queries on it stay inside
+	 * the states and just give wrong answers, rather than throwing.
+	 *
+	 * @param path The file to map
+	 * @return a frozen trie that reads its states from the file
+	 * @throws IOException if the file can't be read, or isn't a saved trie
+	 */
+	public static FrozenTrie map(Path path) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			// the mapping stays valid after the channel is closed
+			ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+			IntBuffer in = bytes.asIntBuffer();
+
+			if (in.remaining() < HEADER_INTS || in.get() != MAGIC || in.get() != VERSION)
+			{
+				throw new IOException("\"" + path + "\" is not a saved trie");
+			}
+
+			// the alphabet is followed by at least the number of states, so a bigger length means the file is cut short or corrupt
+			int alphabetLength = in.get();
+			if (alphabetLength < 0 || alphabetLength > in.remaining() - 1)
+			{
+				throw new IOException("\"" + path + "\" is not a saved trie: its alphabet of " + alphabetLength + " characters doesn't fit in it");
+			}
+
+			char[] alphabet = new char[alphabetLength];
+			for (int i = 0; i < alphabet.length; i++)
+			{
+				int label = in.get();
+				// codesFor() relies on the labels being distinct and sorted
+				if (label > Character.MAX_VALUE || label <= ((i == 0) ? -1 : alphabet[i - 1]))
+				{
+					throw new IOException("\"" + path + "\" is not a saved trie: its alphabet isn't in order");
+				}
+				alphabet[i] = (char) label;
+			}
+
+			int size = in.get();
+			if (in.remaining() != (long) size * STATE_INTS)
+			{
+				throw new IOException("\"" + path + "\" is not the right size for " + size + " states");
+			}
+
+			return new FrozenTrie(alphabet, in.slice(), size);
+		}
+		catch (BufferUnderflowException ex)
+		{
+			throw new IOException("\"" + path + "\" is not a saved trie: it ends too soon", ex);
+		}
+	}
+
+	/**
+	 * Read one of the ints stored for a state.
+	 */
+	private int field(int state, int field)
+	{
+		return states.get(state * STATE_INTS + field);
+	}
+
+	/**
+	 * Get the child of a state that has a particular code, if there is one.
+	 * <p>
+	 * Every state a query reaches comes from here, so checking that the child
+	 * is inside the states is enough to stop a corrupt file from making a
+	 * query read past them. Each state names only one parent, so the states
+	 * reached from the root always form a tree, even in a corrupt file.
+	 */
+	private int childWithCode(int state, int code)
+	{
+		int child = field(state, BASE) + code;
+		return (child > ROOT && child < size && field(child, CHECK) == state) ? child : -1;
+	}
+
+	/**
+	 * Get the code of the first child of a state, or 0 if it has no children.
+	 */
+	private int firstChildCode(int state)
+	{
+		return checkedCode(field(state, FIRST_CHILD), 0);
+	}
+
+	/**
+	 * Get the code of the next child of the same parent after a child, or 0 if
+	 * it is the last one.
+	 */
+	private int nextChildCode(int child, int code)
+	{
+		return checkedCode(field(child, NEXT_SIBLING), code);
+	}
+
+	/**
+	 * The codes of the children always go up, so a code that doesn't, or isn't
+	 * in the alphabet, can only come from a corrupt file and ends the walk.
+	 */
+	private int checkedCode(int code, int previous)
+	{
+		return (code > previous && code <= alphabet.length) ? code : 0;
+	}
+
+	/**
+	 * Follow a single character from a state.
+	 *
+	 * @param state The state to start at
+	 * @param label The character to follow
+	 * @return The child state, or -1 if there is no child with that label
+	 */
+	public int getChild(int state, char label)
+	{
+		if (label >= codeOf.length || codeOf[label] == 0)
+		{
+			return -1;
+		}
+
+		return childWithCode(state, codeOf[label]);
+	}
+
+	/**
+	 * Search for a particular prefix, and return the state corresponding to the
+	 * final character of the prefix. The same as {@link Trie#getNode(String)}.
+	 *
+	 * @param str The string to search for
+	 * @return the state at the end of the prefix, or -1 if the prefix is not found
+	 */
+	public int getNode(String str)
+	{
+		int state = ROOT;
+
+		for (int i = 0; i < str.length() && state >= 0; i++)
+		{
+			state = getChild(state, str.charAt(i));
+		}
+
+		return state;
+	}
+
+	/**
+	 * Search for a whole word, and return the state corresponding to the final
+	 * character of the word. The same as {@link Trie#get(String)}.
+	 *
+	 * @param str The word to search for
+	 * @return the state at the end of the word, or -1 if the word is not found
+	 */
+	public int get(String str)
+	{
+		int state = getNode(str);
+
+		if ((state >= 0) && isTerminal(state))
+		{
+			return state;
+		}
+		else
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * Return whether a state is the end of a whole word.
+	 */
+	public boolean isTerminal(int state)
+	{
+		return field(state, TERMINAL) != 0;
+	}
+
+	/**
+	 * Get the frequency of the word ending at a state, or -1 if there isn't one.
+	 */
+	public int getFrequency(int state)
+	{
+		return field(state, FREQUENCY);
+	}
+
+	/**
+	 * Get the rank of the word ending at a state, or -1 if there isn't one.
+	 */
+	public int getRank(int state)
+	{
+		return field(state, RANK);
+	}
+
+	/**
+	 * Get the highest frequency among the words at or below a state.
+	 */
+	public int getMaxFrequency(int state)
+	{
+		return field(state, MAX_FREQUENCY);
+	}
+
+	/**
+	 * Get the number of states in use, including the unused gaps between them.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Finds the most frequently occurring word that begins with the provided
+	 * prefix. The same as {@link Trie#getMostFrequentWordWithPrefix(String)}.
+	 *
+	 * @param prefix The prefix to search for
+	 * @return The most frequent word that starts with prefix
+	 */
+	public String getMostFrequentWordWithPrefix(String prefix)
+	{
+		int state = getNode(prefix);
+		StringBuilder word = new StringBuilder(prefix);
+
+		while (state >= 0)
+		{
+			// find the last child that leads to a word as frequent as the best one below this state
+			int maxFrequency = getMaxFrequency(state);
+			int next = -1;
+			char nextLabel = 0;
+			int code = firstChildCode(state);
+			while (code != 0)
+			{
+				int child = childWithCode(state, code);
+				if (child < 0)
+				{
+					break;
+				}
+				if (getMaxFrequency(child) >= maxFrequency)
+				{
+					next = child;
+					nextLabel = alphabet[code - 1];
+				}
+				code = nextChildCode(child, code);
+			}
+
+			if (next < 0)
+			{
+				break;
+			}
+
+			word.append(nextLabel);
+			state = next;
+		}
+
+		return word.toString();
+	}
+
+	/**
+	 * Retrieve an alphabetically sorted list of all words beginning with a
+	 * particular prefix. The same as {@link Trie#getAlphabeticalListWithPrefix(String)}.
+	 * <p>
+	 * The codes are given out in alphabetical order, so walking the children in
+	 * order of code gives the words already sorted.
+	 *
+	 * @param prefix The prefix with which all words start.
+	 * @return The list of words beginning with the prefix, or an empty list if
+	 * the prefix was not found.
+	 */
+	public List<String> getAlphabeticalListWithPrefix(String prefix)
+	{
+		List<String> words = new ArrayList<>();
+		int state = getNode(prefix);
+
+		if (state >= 0)
+		{
+			addWords(state, new StringBuilder(prefix), words);
+		}
+
+		return words;
+	}
+
+	/**
+	 * Add every word at or below a state to a list, in alphabetical order.
+	 */
+	private void addWords(int state, StringBuilder word, List<String> words)
+	{
+		if (isTerminal(state))
+		{
+			words.add(word.toString());
+		}
+
+		int code = firstChildCode(state);
+		while (code != 0)
+		{
+			int child = childWithCode(state, code);
+			if (child < 0)
+			{
+				break;
+			}
+			word.append(alphabet[code - 1]);
+			addWords(child, word, words);
+			word.setLength(word.length() - 1);
+			code = nextChildCode(child, code);
+		}
+	}
+
+	/**
+	 * Lays out the nodes of a trie as double-array states. Each field is built
+	 * in its own array while the layout is being worked out, then they are
+	 * packed together at the end.
+	 */
+	private static class Builder
+	{
+		private final char[] alphabet;
+		private final int[] codeOf;
+
+		private int[] base;
+		private int[] check;
+		private int[] frequency;
+		private int[] rank;
+		private int[] maxFrequency;
+		private boolean[] terminal;
+		private int[] firstChild;
+		private int[] nextSibling;
+
+		private int size = 1;
+
+		Builder(TrieNode root)
+		{
+			// collect every label used in the trie, so characters can be mapped to small, dense codes
+			BitSet used = new BitSet();
+			Deque<TrieNode> toVisit = new ArrayDeque<>();
+			toVisit.add(root);
+			int nodeCount = 0;
+			while (!toVisit.isEmpty())
+			{
+				TrieNode node = toVisit.poll();
+				nodeCount++;
+				for (int i = 0; i < node.getNumChildren(); i++)
+				{
+					used.set(node.getChildLabel(i));
+					toVisit.add(node.getChildAt(i));
+				}
+			}
+
+			alphabet = new char[used.cardinality()];
+			int code = 0;
+			for (int c = used.nextSetBit(0); c >= 0; c = used.nextSetBit(c + 1))
+			{
+				alphabet[code++] = (char) c;
+			}
+			codeOf = codesFor(alphabet);
+
+			// a double array usually ends up a bit bigger than the number of nodes
+			allocate(nodeCount + nodeCount / 4 + alphabet.length + 1);
+			check[ROOT] = ROOT;
+			copyData(ROOT, root);
+
+			// place the children of each node breadth first, choosing a base for each node where all its children fit
+			Deque<TrieNode> nodes = new ArrayDeque<>();
+			Deque<Integer> states = new ArrayDeque<>();
+			nodes.add(root);
+			states.add(ROOT);
+			int searchFrom = 1;
+			while (!nodes.isEmpty())
+			{
+				TrieNode node = nodes.poll();
+				int state = states.poll();
+				int numChildren = node.getNumChildren();
+				if (numChildren == 0)
+				{
+					continue;
+				}
+
+				int firstCode = codeOf[node.getChildLabel(0)];
+
+				// skip past the slots that have already been filled
+				while (searchFrom < check.length && check[searchFrom] != FREE)
+				{
+					searchFrom++;
+				}
+
+				int b = Math.max(searchFrom - firstCode, 0);
+				while (!fits(b, node))
+				{
+					b++;
+				}
+
+				base[state] = b;
+				firstChild[state] = firstCode;
+				for (int i = 0; i < numChildren; i++)
+				{
+					int child = b + codeOf[node.getChildLabel(i)];
+					check[child] = state;
+					nextSibling[child] = (i + 1 < numChildren) ? codeOf[node.getChildLabel(i + 1)] : 0;
+					size = Math.max(size, child + 1);
+					copyData(child, node.getChildAt(i));
+
+					nodes.add(node.getChildAt(i));
+					states.add(child);
+				}
+			}
+		}
+
+		/**
+		 * Check whether every child of a node can be placed relative to a particular base,
+		 * growing the arrays if they are too short.
+		 */
+		private boolean fits(int b, TrieNode node)
+		{
+			int last = b + codeOf[node.getChildLabel(node.getNumChildren() - 1)];
+			if (last >= check.length)
+			{
+				allocate(Math.max(last + 1, check.length + (check.length >> 1)));
+			}
+
+			for (int i = 0; i < node.getNumChildren(); i++)
+			{
+				int child = b + codeOf[node.getChildLabel(i)];
+				if (child == ROOT || check[child] != FREE)
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Grow (or create) the arrays so they hold at least the given number of states.
+		 */
+		private void allocate(int capacity)
+		{
+			int oldCapacity = (check == null) ? 0 : check.length;
+
+			base = (base == null) ? new int[capacity] : Arrays.copyOf(base, capacity);
+			check = (check == null) ? new int[capacity] : Arrays.copyOf(check, capacity);
+			frequency = (frequency == null) ? new int[capacity] : Arrays.copyOf(frequency, capacity);
+			rank = (rank == null) ? new int[capacity] : Arrays.copyOf(rank, capacity);
+			maxFrequency = (maxFrequency == null) ? new int[capacity] : Arrays.copyOf(maxFrequency, capacity);
+			terminal = (terminal == null) ? new boolean[capacity] : Arrays.copyOf(terminal, capacity);
+			firstChild = (firstChild == null) ? new int[capacity] : Arrays.copyOf(firstChild, capacity);
+			nextSibling = (nextSibling == null) ? new int[capacity] : Arrays.copyOf(nextSibling, capacity);
+
+			Arrays.fill(check, oldCapacity, capacity, FREE);
+		}
+
+		/**
+		 * Copy the data held by a node into the arrays for a state.
+		 */
+		private void copyData(int state, TrieNode node)
+		{
+			frequency[state] = node.getFrequency();
+			rank[state] = node.getRank();
+			maxFrequency[state] = node.maxFrequency;
+			terminal[state] = node.isTerminal();
+		}
+
+		/**
+		 * Pack the separate arrays into STATE_INTS ints per state.
+		 */
+		int[] pack()
+		{
+			int[] packed = new int[size * STATE_INTS];
+			for (int state = 0; state < size; state++)
+			{
+				int offset = state * STATE_INTS;
+				packed[offset + BASE] = base[state];
+				packed[offset + CHECK] = check[state];
+				packed[offset + FREQUENCY] = frequency[state];
+				packed[offset + RANK] = rank[state];
+				packed[offset + MAX_FREQUENCY] = maxFrequency[state];
+				packed[offset + TERMINAL] = terminal[state] ? 1 : 0;
+				packed[offset + FIRST_CHILD] = firstChild[state];
+				packed[offset + NEXT_SIBLING] = nextSibling[state];
+			}
+			return packed;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+import java.util.*;
+
+/**
+ * Finds the most frequent words whose start is within a few edits of a
+ * (possibly mistyped) prefix.
+ * <p>
+ * A word matches if some prefix of it is within maxEdits insertions,
+ * deletions or substitutions of the typed prefix. The trie is walked while
+ * keeping one row of the Levenshtein table per node: the row for a node says
+ * how many edits it takes to turn each prefix of the typed text into the
+ * string for that node, and the row for a child is worked out from its
+ * parent's in O(length of the prefix) time. Two things keep the walk small:
+ * <ul>
+ * <li>a branch is dropped as soon as every entry in its row is more than
+ * maxEdits, since adding more characters can't bring the distance down;</li>
+ * <li>nodes are visited in order of maxFrequency, highest first, so once k
+ * words have been found, the search can stop at the first node whose
+ * maxFrequency is lower than the k-th best word.</li>
+ * </ul>
+ */
+class FuzzySearch
+{
+	/**
+	 * A node waiting to be visited. The word is only built if the node turns
+	 * out to be a result, by following the parents back up.
+	 */
+	private static class Candidate
+	{
+		final TrieNode node;
+		final Candidate parent;
+		final char label;
+		final int depth;
+		// the Levenshtein row for this node, or null once the node already matches
+		final int[] row;
+
+		Candidate(TrieNode node, Candidate parent, char label, int[] row)
+		{
+			this.node = node;
+			this.parent = parent;
+			this.label = label;
+			this.depth = (parent == null) ? 0 : parent.depth + 1;
+			this.row = row;
+		}
+
+		String word()
+		{
+			char[] chars = new char[depth];
+			for (Candidate c = this; c.parent != null; c = c.parent)
+			{
+				chars[c.depth - 1] = c.label;
+			}
+			return new String(chars);
+		}
+	}
+
+	/**
+	 * A word that has been found, with its frequency.
+	 */
+	private record Result(String word, int frequency)
+	{
+	}
+
+	// most frequent first, then alphabetical
+	private static final Comparator<Result> BEST_FIRST = Comparator.comparingInt((Result r) -> -r.frequency).thenComparing(Result::word);
+
+	/**
+	 * Find up to k of the most frequent words that start within maxEdits edits
+	 * of a prefix. See {@link Trie#getMostFrequentWordsWithinDistance(String, int, int)}.
+	 *
+	 * @param root     The root of the trie
+	 * @param prefix   The prefix that was typed
+	 * @param maxEdits The most edits allowed between the prefix and the start of a word
+	 * @param k        The maximum number of words to return
+	 * @return The matching words, most frequent first
+	 * @throws IllegalArgumentException if k is negative
+	 */
+	static List<String> search(TrieNode root, String prefix, int maxEdits, int k)
+	{
+		if (k < 0)
+		{
+			throw new IllegalArgumentException("k can't be negative: " + k);
+		}
+		if (k == 0)
+		{
+			// nothing to find, and the pruning below needs a k-th best word to compare with
+			return new ArrayList<>();
+		}
+
+		int length = prefix.length();
+
+		// the row for the root: it takes i deletions to turn the first i characters of the prefix into ""
+		int[] firstRow = new int[length + 1];
+		for (int i = 0; i <= length; i++)
+		{
+			firstRow[i] = i;
+		}
+
+		PriorityQueue<Candidate> toVisit = new PriorityQueue<>(Comparator.comparingInt((Candidate c) -> -c.node.maxFrequency));
+		toVisit.add(new Candidate(root, null, '\0', (length <= maxEdits) ? null : firstRow));
+
+		// the best k words found so far, worst first so it is easy to drop
+		PriorityQueue<Result> results = new PriorityQueue<>(BEST_FIRST.reversed());
+
+		while (!toVisit.isEmpty())
+		{
+			Candidate candidate = toVisit.poll();
+			TrieNode node = candidate.node;
+
+			// nothing below this node can beat the words already found
+			if (results.size() == k && node.maxFrequency < results.peek().frequency)
+			{
+				break;
+			}
+
+			boolean matches = candidate.row == null;
+			if (matches && node.isTerminal() && node.hasData())
+			{
+				results.add(new Result(candidate.word(), node.getFrequency()));
+				if (results.size() > k)
+				{
+					results.poll();
+				}
+			}
+
+			for (int i = 0; i < node.getNumChildren(); i++)
+			{
+				char label = node.getChildLabel(i);
+				if (matches)
+				{
+					toVisit.add(new Candidate(node.getChildAt(i), candidate, label, null));
+					continue;
+				}
+
+				int[] row = nextRow(candidate.row, prefix, label);
+				if (row[length] <= maxEdits)
+				{
+					// the child's string is close enough to the whole prefix, so every word below it matches
+					toVisit.add(new Candidate(node.getChildAt(i), candidate, label, null));
+				}
+				else if (min(row) <= maxEdits)
+				{
+					toVisit.add(new Candidate(node.getChildAt(i), candidate, label, row));
+				}
+			}
+		}
+
+		List<Result> best = new ArrayList<>(results);
+		best.sort(BEST_FIRST);
+
+		List<String> words = new ArrayList<>(best.size());
+		for (Result result : best)
+		{
+			words.add(result.word());
+		}
+		return words;
+	}
+
+	/**
+	 * Work out the Levenshtein row for a child from its parent's row.
+	 *
+	 * @param row    The parent's row
+	 * @param prefix The prefix that was typed
+	 * @param label  The label of the child
+	 * @return The child's row
+	 */
+	private static int[] nextRow(int[] row, String prefix, char label)
+	{
+		int[] next = new int[row.length];
+		next[0] = row[0] + 1;
+
+		for (int i = 1; i < row.length; i++)
+		{
+			int substitute = row[i - 1] + ((prefix.charAt(i - 1) == label) ? 0 : 1);
+			int insert = row[i] + 1;
+			int delete = next[i - 1] + 1;
+			next[i] = Math.min(substitute, Math.min(insert, delete));
+		}
+
+		return next;
+	}
+
+	private static int min(int[] row)
+	{
+		int min = row[0];
+		for (int value : row)
+		{
+			min = Math.min(min, value);
+		}
+		return min;
+	}
+}
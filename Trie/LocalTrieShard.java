@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A shard that is a {@link Trie} in the same JVM.
+ */
+public class LocalTrieShard implements TrieShard
+{
+	private final Trie trie;
+
+	public LocalTrieShard(Trie trie)
+	{
+		this.trie = trie;
+	}
+
+	@Override
+	public Completion getMostFrequentWordWithPrefix(String prefix)
+	{
+		TrieNode node = trie.getNode(prefix);
+		if (node == null)
+		{
+			return null;
+		}
+
+		StringBuilder word = new StringBuilder(prefix);
+		node = Trie.appendMostFrequentWordBelow(node, word);
+		return node.isTerminal() ? new Completion(word.toString(), node.getFrequency()) : null;
+	}
+
+	@Override
+	public List<Completion> getTopKWordsWithPrefix(String prefix, int k)
+	{
+		List<Completion> completions = new ArrayList<>();
+		for (String word : trie.getTopKWordsWithPrefix(prefix, k))
+		{
+			completions.add(new Completion(word, trie.get(word).getFrequency()));
+		}
+		return completions;
+	}
+
+	@Override
+	public List<String> getAlphabeticalListWithPrefix(String prefix, int limit)
+	{
+		return trie.streamWithPrefix(prefix).limit(limit).collect(Collectors.toList());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LocalTrieShard";
+	}
+}
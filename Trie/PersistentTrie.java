@@ -0,0 +1,422 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * An immutable version of a trie. Changing it doesn't change it; instead
+ * {@link #apply(Batch)} makes a new version, which only copies the nodes
+ * along the paths of the words that changed, and shares every other node
+ * with the version it came from. Nodes are never changed once they are
+ * made, so a version can be read from any number of threads without locking,
+ * while newer versions are being made.
+ * <p>
+ * Old versions don't need to be freed: once nothing refers to a version any
+ * more, the nodes that only it used are garbage collected, and the ones it
+ * shared live on in the newer versions. See {@link VersionedTrie} for
+ * publishing new versions to readers.
+ * <p>
+ * The queries give the same answers as the same queries on a {@link Trie}
+ * holding the same words.
+ */
+public final class PersistentTrie
+{
+	/**
+	 * The version with no words in it.
+	 */
+	public static final PersistentTrie EMPTY = new PersistentTrie(PersistentTrieNode.EMPTY, 0, 0);
+
+	private final PersistentTrieNode root;
+	private final int size;
+	private final long version;
+
+	private PersistentTrie(PersistentTrieNode root, int size, long version)
+	{
+		this.root = root;
+		this.size = size;
+		this.version = version;
+	}
+
+	/**
+	 * A set of changes to make to a trie in one go. A batch is only used by
+	 * one thread, and can be applied to any number of versions.
+	 */
+	public static class Batch
+	{
+		private final List<Change> changes = new ArrayList<>();
+
+		/**
+		 * Insert a word, or replace its data if it is already there.
+		 */
+		public Batch put(String word, int frequency, int rank)
+		{
+			changes.add(new Change(word, frequency, rank, false));
+			return this;
+		}
+
+		/**
+		 * Remove a word, if it is there.
+		 */
+		public Batch remove(String word)
+		{
+			changes.add(new Change(word, -1, -1, true));
+			return this;
+		}
+
+		public int size()
+		{
+			return changes.size();
+		}
+
+		/**
+		 * Read every word in a dictionary file into a batch. Each line is
+		 * "rank word frequency [anything else]", the same as for
+		 * {@link Trie#readInDictionary(String)}.
+		 *
+		 * @throws IOException           if the file can't be read
+		 * @throws NumberFormatException if a line isn't in the right format
+		 */
+		public static Batch readInDictionary(String fileName) throws IOException
+		{
+			Batch batch = new Batch();
+			try (Scanner fileScanner = new Scanner(Path.of(fileName)))
+			{
+				while (fileScanner.hasNextLine())
+				{
+					String[] splitLine = fileScanner.nextLine().split(" ");
+					batch.put(splitLine[1], Integer.parseInt(splitLine[2]), Integer.parseInt(splitLine[0]));
+				}
+			}
+			return batch;
+		}
+
+		/**
+		 * Get the changes sorted by word, keeping only the last change for
+		 * each word, like inserting them in order would.
+		 */
+		Change[] sorted()
+		{
+			Change[] sorted = changes.toArray(new Change[0]);
+			// the sort is stable, so the changes for each word stay in the order they were made
+			Arrays.sort(sorted, Comparator.comparing(Change::word));
+
+			int count = 0;
+			for (int i = 0; i < sorted.length; i++)
+			{
+				if (i + 1 < sorted.length && sorted[i + 1].word().equals(sorted[i].word()))
+				{
+					continue;
+				}
+				sorted[count++] = sorted[i];
+			}
+			return Arrays.copyOf(sorted, count);
+		}
+	}
+
+	/**
+	 * One change to one word.
+	 */
+	record Change(String word, int frequency, int rank, boolean remove)
+	{
+	}
+
+	/**
+	 * Make a new version with a batch of changes made to this one. This
+	 * version isn't changed. Every node that is copied is only copied once,
+	 * however many of the changes go through it.
+	 *
+	 * @param batch The changes to make
+	 * @return The new version, which is this one if nothing actually changed
+	 */
+	public PersistentTrie apply(Batch batch)
+	{
+		return merge(batch, false);
+	}
+
+	/**
+	 * Make a new version holding exactly the words put in a batch, such as a
+	 * dictionary that has been read in again. Removals in the batch are
+	 * ignored. Every part of this version that is the same in the new one is
+	 * shared with it rather than copied, so the only extra memory needed is
+	 * for what changed.
+	 *
+	 * @param batch The words the new version should hold
+	 * @return The new version, which is this one if nothing actually changed
+	 */
+	public PersistentTrie replaceWith(Batch batch)
+	{
+		return merge(batch, true);
+	}
+
+	private PersistentTrie merge(Batch batch, boolean replace)
+	{
+		Change[] changes = batch.sorted();
+		if (replace)
+		{
+			changes = Arrays.stream(changes).filter(change -> !change.remove()).toArray(Change[]::new);
+		}
+
+		int[] sizeChange = {0};
+		PersistentTrieNode newRoot = merge(root, changes, 0, changes.length, 0, replace, sizeChange);
+		if (newRoot == null)
+		{
+			newRoot = PersistentTrieNode.EMPTY;
+		}
+		if (newRoot == root)
+		{
+			return this;
+		}
+
+		return new PersistentTrie(newRoot, replace ? changes.length : size + sizeChange[0], version + 1);
+	}
+
+	/**
+	 * Make the new version of a node, with some changes made below it.
+	 *
+	 * @param old        The node in the old version, or null if there wasn't one
+	 * @param changes    All the changes, sorted by word
+	 * @param from       The first change for words going through this node
+	 * @param to         One past the last change for words going through this node
+	 * @param depth      The length of the node's prefix
+	 * @param replace    Whether to drop the words the changes don't mention
+	 * @param sizeChange The number of words added, less the number removed, so far
+	 * @return The new node, which is old if nothing changed, or null if there are no words left at or below it
+	 */
+	private static PersistentTrieNode merge(PersistentTrieNode old, Change[] changes, int from, int to, int depth, boolean replace,
+			int[] sizeChange)
+	{
+		// the change for the word ending here, if there is one, sorts before all the longer words
+		Change own = (from < to && changes[from].word().length() == depth) ? changes[from] : null;
+		int next = (own == null) ? from : from + 1;
+
+		boolean wasTerminal = (old != null) && old.isTerminal();
+		boolean terminal;
+		int frequency;
+		int rank;
+		if (own != null)
+		{
+			terminal = !own.remove();
+			frequency = own.frequency();
+			rank = own.rank();
+			sizeChange[0] += (terminal ? 1 : 0) - (wasTerminal ? 1 : 0);
+		}
+		else
+		{
+			terminal = wasTerminal && !replace;
+			frequency = wasTerminal ? old.getFrequency() : -1;
+			rank = wasTerminal ? old.getRank() : -1;
+		}
+
+		// go through the old children and the groups of changes together, in label order
+		int oldCount = (old == null) ? 0 : old.getNumChildren();
+		char[] labels = new char[oldCount + (to - next)];
+		PersistentTrieNode[] children = new PersistentTrieNode[labels.length];
+		int count = 0;
+		boolean childrenChanged = false;
+		int oldIndex = 0;
+		while (next < to || oldIndex < oldCount)
+		{
+			int changeLabel = (next < to) ? changes[next].word().charAt(depth) : Integer.MAX_VALUE;
+			int oldLabel = (oldIndex < oldCount) ? old.getChildLabel(oldIndex) : Integer.MAX_VALUE;
+
+			int label;
+			PersistentTrieNode oldChild;
+			PersistentTrieNode child;
+			if (oldLabel < changeLabel)
+			{
+				// nothing changes below this child
+				label = oldLabel;
+				oldChild = old.getChildAt(oldIndex++);
+				child = replace ? null : oldChild;
+			}
+			else
+			{
+				int end = next;
+				while (end < to && changes[end].word().charAt(depth) == changeLabel)
+				{
+					end++;
+				}
+				label = changeLabel;
+				oldChild = (oldLabel == changeLabel) ? old.getChildAt(oldIndex++) : null;
+				child = merge(oldChild, changes, next, end, depth + 1, replace, sizeChange);
+				next = end;
+			}
+
+			childrenChanged |= (child != oldChild);
+			if (child != null)
+			{
+				labels[count] = (char) label;
+				children[count] = child;
+				count++;
+			}
+		}
+
+		if (!terminal && count == 0)
+		{
+			return null;
+		}
+		if (old != null && !childrenChanged && terminal == wasTerminal
+				&& (!terminal || (frequency == old.getFrequency() && rank == old.getRank())))
+		{
+			return old;
+		}
+
+		// every change in the range goes through this node, so any of them gives its word
+		String word = terminal ? ((own != null) ? own.word() : changes[from].word().substring(0, depth)) : null;
+		return new PersistentTrieNode(terminal, frequency, rank, word, Arrays.copyOf(labels, count), Arrays.copyOf(children, count));
+	}
+
+	/**
+	 * Get the number of words in this version.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the number of batches that have been applied to make this version,
+	 * starting from 0 for {@link #EMPTY}.
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	PersistentTrieNode getRoot()
+	{
+		return root;
+	}
+
+	/**
+	 * Search for a prefix, and return the node at the end of it.
+	 *
+	 * @return The node, or null if the prefix is not found
+	 */
+	public PersistentTrieNode getNode(String prefix)
+	{
+		PersistentTrieNode node = root;
+		for (int i = 0; i < prefix.length() && node != null; i++)
+		{
+			node = node.getChild(prefix.charAt(i));
+		}
+		return node;
+	}
+
+	/**
+	 * Searches for a whole word.
+	 *
+	 * @return The node at the end of the word, or null if the word is not found
+	 */
+	public PersistentTrieNode get(String word)
+	{
+		PersistentTrieNode node = getNode(word);
+		return (node != null && node.isTerminal()) ? node : null;
+	}
+
+	/**
+	 * Finds the most frequent word that begins with a prefix. See
+	 * {@link Trie#getMostFrequentWordWithPrefix(String)}.
+	 */
+	public String getMostFrequentWordWithPrefix(String prefix)
+	{
+		PersistentTrieNode node = getNode(prefix);
+		if (node == null)
+		{
+			return prefix;
+		}
+
+		StringBuilder word = new StringBuilder(prefix);
+		while (node.getNumChildren() > 0)
+		{
+			// the same choice as Trie.getMostFrequentChild
+			int best = -1;
+			for (int i = 0; i < node.getNumChildren(); i++)
+			{
+				if (node.getChildAt(i).maxFrequency >= node.maxFrequency)
+				{
+					best = i;
+				}
+			}
+			if (best < 0)
+			{
+				break;
+			}
+			word.append(node.getChildLabel(best));
+			node = node.getChildAt(best);
+		}
+		return word.toString();
+	}
+
+	/**
+	 * Finds up to k of the most frequent words that begin with a prefix, most
+	 * frequent first. See {@link Trie#getTopKWordsWithPrefix(String, int)}.
+	 */
+	public List<String> getTopKWordsWithPrefix(String prefix, int k)
+	{
+		if (k < 0)
+		{
+			throw new IllegalArgumentException("k can't be negative: " + k);
+		}
+
+		PersistentTrieNode node = getNode(prefix);
+		List<String> words = new ArrayList<>();
+		if (node == null)
+		{
+			return words;
+		}
+		if (k <= TrieNode.TOP_K_CAPACITY)
+		{
+			for (int i = 0; i < Math.min(k, node.getTopCount()); i++)
+			{
+				words.add(node.getTopWord(i));
+			}
+			return words;
+		}
+
+		// too many for the list kept in the node, so look at every word below it
+		words = getAlphabeticalListWithPrefix(prefix);
+		Map<String, Integer> frequencies = new HashMap<>();
+		for (String word : words)
+		{
+			frequencies.put(word, get(word).getFrequency());
+		}
+		words.sort(Comparator.comparing((String word) -> -frequencies.get(word)).thenComparing(Comparator.naturalOrder()));
+		return words.subList(0, Math.min(k, words.size()));
+	}
+
+	/**
+	 * Retrieve an alphabetically sorted list of all words beginning with a prefix.
+	 *
+	 * @return The words, or an empty list if the prefix is not found
+	 */
+	public List<String> getAlphabeticalListWithPrefix(String prefix)
+	{
+		List<String> words = new ArrayList<>();
+		PersistentTrieNode node = getNode(prefix);
+		if (node != null)
+		{
+			addWords(node, new StringBuilder(prefix), words);
+		}
+		return words;
+	}
+
+	private static void addWords(PersistentTrieNode node, StringBuilder word, List<String> words)
+	{
+		if (node.isTerminal())
+		{
+			words.add(word.toString());
+		}
+		for (int i = 0; i < node.getNumChildren(); i++)
+		{
+			word.append(node.getChildLabel(i));
+			addWords(node.getChildAt(i), word, words);
+			word.setLength(word.length() - 1);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PersistentTrie; version=" + version + ", #words=" + size;
+	}
+}
@@ -0,0 +1,186 @@
+import java.util.Arrays;
+
+/**
+ * A node of a {@link PersistentTrie}. Nodes never change once they are made,
+ * so a node can belong to any number of versions of the trie at once, and
+ * can be read from any number of threads without locking.
+ * <p>
+ * Like {@link TrieNode}, the children are kept in arrays sorted by label,
+ * and each node keeps the highest frequency at or below it and a list of its
+ * most frequent words.
+ */
+public final class PersistentTrieNode
+{
+	static final PersistentTrieNode EMPTY = new PersistentTrieNode(false, -1, -1, null, new char[0], new PersistentTrieNode[0]);
+
+	private final char[] labels;
+	private final PersistentTrieNode[] children;
+
+	private final boolean terminal;
+	private final int frequency;
+	private final int rank;
+
+	// the highest frequency of the words at or below this node, including its own
+	final int maxFrequency;
+
+	// the most frequent words at or below this node, most frequent first. The
+	// arrays never change, so a node with no word of its own and a single
+	// child shares the child's arrays instead of keeping a copy of them
+	private final String[] topWords;
+	private final int[] topFrequencies;
+
+	/**
+	 * Make a node, working out its maxFrequency and list of most frequent
+	 * words from its own word and its children.
+	 *
+	 * @param terminal  Whether a word ends at this node
+	 * @param frequency The frequency of the word, if there is one
+	 * @param rank      The rank of the word, if there is one
+	 * @param word      The word, which is only needed if there is one
+	 * @param labels    The labels of the children, in order, which the node takes over
+	 * @param children  The children, in the same order, which the node takes over
+	 */
+	PersistentTrieNode(boolean terminal, int frequency, int rank, String word, char[] labels, PersistentTrieNode[] children)
+	{
+		this.labels = labels;
+		this.children = children;
+		this.terminal = terminal;
+		this.frequency = terminal ? frequency : -1;
+		this.rank = terminal ? rank : -1;
+
+		int max = this.frequency;
+		for (PersistentTrieNode child : children)
+		{
+			max = Math.max(max, child.maxFrequency);
+		}
+		maxFrequency = max;
+
+		if (!terminal && children.length == 1)
+		{
+			topWords = children[0].topWords;
+			topFrequencies = children[0].topFrequencies;
+			return;
+		}
+
+		// merge the children's lists, which are already in order, with the node's own word
+		String[] words = new String[TrieNode.TOP_K_CAPACITY];
+		int[] frequencies = new int[TrieNode.TOP_K_CAPACITY];
+		int[] next = new int[children.length];
+		boolean ownWordUsed = !terminal;
+		int count = 0;
+		while (count < TrieNode.TOP_K_CAPACITY)
+		{
+			String bestWord = ownWordUsed ? null : word;
+			int bestFrequency = this.frequency;
+			int bestChild = -1;
+			for (int i = 0; i < children.length; i++)
+			{
+				PersistentTrieNode child = children[i];
+				if (next[i] < child.topWords.length
+						&& (bestWord == null || isBefore(child.topWords[next[i]], child.topFrequencies[next[i]], bestWord, bestFrequency)))
+				{
+					bestWord = child.topWords[next[i]];
+					bestFrequency = child.topFrequencies[next[i]];
+					bestChild = i;
+				}
+			}
+
+			if (bestWord == null)
+			{
+				break;
+			}
+			if (bestChild < 0)
+			{
+				ownWordUsed = true;
+			}
+			else
+			{
+				next[bestChild]++;
+			}
+			words[count] = bestWord;
+			frequencies[count] = bestFrequency;
+			count++;
+		}
+		topWords = Arrays.copyOf(words, count);
+		topFrequencies = Arrays.copyOf(frequencies, count);
+	}
+
+	/**
+	 * Whether one word should come before another in the list of most frequent words.
+	 */
+	private static boolean isBefore(String word, int frequency, String otherWord, int otherFrequency)
+	{
+		return (frequency > otherFrequency) || (frequency == otherFrequency && word.compareTo(otherWord) < 0);
+	}
+
+	/**
+	 * Lookup the child associated with a label.
+	 *
+	 * @return The child, or null if there isn't one
+	 */
+	public PersistentTrieNode getChild(char label)
+	{
+		int index = Arrays.binarySearch(labels, label);
+		return (index >= 0) ? children[index] : null;
+	}
+
+	public int getNumChildren()
+	{
+		return children.length;
+	}
+
+	public char getChildLabel(int index)
+	{
+		return labels[index];
+	}
+
+	public PersistentTrieNode getChildAt(int index)
+	{
+		return children[index];
+	}
+
+	public boolean isTerminal()
+	{
+		return terminal;
+	}
+
+	/**
+	 * Get the frequency of the word ending at this node, or -1 if there isn't one.
+	 */
+	public int getFrequency()
+	{
+		return frequency;
+	}
+
+	/**
+	 * Get the rank of the word ending at this node, or -1 if there isn't one.
+	 */
+	public int getRank()
+	{
+		return rank;
+	}
+
+	public int getMaxFrequency()
+	{
+		return maxFrequency;
+	}
+
+	/**
+	 * Get the number of words in this node's list of most frequent words.
+	 */
+	int getTopCount()
+	{
+		return topWords.length;
+	}
+
+	String getTopWord(int index)
+	{
+		return topWords[index];
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PersistentTrieNode; isTerminal=" + terminal + ", data=" + (terminal ? String.valueOf(frequency) : "null") + ", #children=" + children.length;
+	}
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A shard that is a {@link CompletionServer} running somewhere else, usually
+ * in another process on the same machine, so the shards' heaps are separate.
+ * <p>
+ * Every call is a blocking HTTP request, so a {@link ShardedTrie} with remote
+ * shards should be given an executor that can run a lot of blocked tasks,
+ * such as one with a virtual thread per task. Every query throws an
+ * UncheckedIOException if the server can't be reached or gives an error.
+ */
+public class RemoteTrieShard implements TrieShard
+{
+	private final HttpClient client;
+	private final String url;
+
+	/**
+	 * @param client The client to send the requests with, which can be shared by all the shards
+	 * @param url    The server's address, such as "http://localhost:8080"
+	 */
+	public RemoteTrieShard(HttpClient client, String url)
+	{
+		this.client = client;
+		this.url = url;
+	}
+
+	@Override
+	public Completion getMostFrequentWordWithPrefix(String prefix)
+	{
+		List<Completion> completions = parseCompletions(get("/complete?frequencies=true&prefix=" + encode(prefix)));
+		return completions.isEmpty() ? null : completions.get(0);
+	}
+
+	@Override
+	public List<Completion> getTopKWordsWithPrefix(String prefix, int k)
+	{
+		return parseCompletions(get("/top?frequencies=true&prefix=" + encode(prefix) + "&k=" + k));
+	}
+
+	@Override
+	public List<String> getAlphabeticalListWithPrefix(String prefix, int limit)
+	{
+		return get("/list?prefix=" + encode(prefix) + "&limit=" + limit);
+	}
+
+	/**
+	 * Send a request and get the lines of the answer.
+	 */
+	private List<String> get(String pathAndQuery)
+	{
+		HttpRequest request = HttpRequest.newBuilder(URI.create(url + pathAndQuery)).GET().build();
+		try
+		{
+			HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() != 200)
+			{
+				throw new UncheckedIOException(new IOException(url + pathAndQuery + " gave " + response.statusCode() + ": " + response.body().strip()));
+			}
+			return response.body().lines().toList();
+		}
+		catch (IOException ex)
+		{
+			throw new UncheckedIOException(ex);
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for " + url));
+		}
+	}
+
+	private static List<Completion> parseCompletions(List<String> lines)
+	{
+		List<Completion> completions = new ArrayList<>();
+		for (String line : lines)
+		{
+			int tab = line.lastIndexOf('\t');
+			completions.add(new Completion(line.substring(0, tab), Integer.parseInt(line.substring(tab + 1))));
+		}
+		return completions;
+	}
+
+	private static String encode(String value)
+	{
+		return URLEncoder.encode(value, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "RemoteTrieShard; url=" + url;
+	}
+}
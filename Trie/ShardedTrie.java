@@ -0,0 +1,324 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A dictionary split across several independent shards, for dictionaries too
+ * big for one trie on one heap. Each shard holds the words in one range, so
+ * the words starting with a prefix are nearly always all in one shard, and
+ * most queries only go to that shard.
+ * <p>
+ * A query that spans more than one shard is sent to all of them at once
+ * (on the executor) and the answers are merged: the most frequent word is
+ * the most frequent of the shards' answers, the top-k lists are merged k
+ * ways, and the alphabetical lists are simply joined, since the shards'
+ * ranges are already in order.
+ * <p>
+ * The shards can be tries in the same JVM ({@link LocalTrieShard}) or
+ * {@link CompletionServer}s in other processes ({@link RemoteTrieShard}).
+ * See {@link ShardedTrieHarness} for running them as separate processes.
+ */
+public class ShardedTrie
+{
+	// the shorter the boundaries, the fewer prefixes span two shards; two characters still split evenly enough
+	static final int BOUNDARY_LENGTH = 2;
+
+	// shard i holds the words w with boundaries[i - 1] <= w < boundaries[i]
+	private final String[] boundaries;
+	private final List<TrieShard> shards;
+	private final Executor executor;
+
+	/**
+	 * @param boundaries The first word of every shard after the first, in order
+	 * @param shards     The shards, one more than there are boundaries
+	 * @param executor   Runs the queries when a query goes to more than one shard
+	 */
+	public ShardedTrie(String[] boundaries, List<TrieShard> shards, Executor executor)
+	{
+		if (shards.size() != boundaries.length + 1)
+		{
+			throw new IllegalArgumentException(shards.size() + " shards need " + (shards.size() - 1) + " boundaries, not " + boundaries.length);
+		}
+		for (int i = 1; i < boundaries.length; i++)
+		{
+			if (boundaries[i - 1].compareTo(boundaries[i]) >= 0)
+			{
+				throw new IllegalArgumentException("The boundaries aren't in order: " + boundaries[i - 1] + ", " + boundaries[i]);
+			}
+		}
+
+		this.boundaries = boundaries.clone();
+		this.shards = List.copyOf(shards);
+		this.executor = executor;
+	}
+
+	/**
+	 * Choose the boundaries that split some words into shards of about the same
+	 * size. Each boundary is only the first {@code BOUNDARY_LENGTH} characters
+	 * of a word, so a prefix at least that long always falls in one shard. If
+	 * that leaves two boundaries the same, there are fewer shards.
+	 *
+	 * @param sortedWords The words, sorted
+	 * @param shards      The number of shards wanted
+	 * @return The boundaries, one fewer than the number of shards
+	 */
+	public static String[] chooseBoundaries(List<String> sortedWords, int shards)
+	{
+		if (sortedWords.isEmpty())
+		{
+			// there is nothing to split, so everything goes in one shard
+			return new String[0];
+		}
+
+		List<String> boundaries = new ArrayList<>();
+		String previous = sortedWords.get(0);
+		for (int i = 1; i < shards; i++)
+		{
+			String word = sortedWords.get((int) ((long) i * sortedWords.size() / shards));
+			String boundary = word.substring(0, Math.min(BOUNDARY_LENGTH, word.length()));
+			if (boundary.compareTo(previous) > 0)
+			{
+				boundaries.add(boundary);
+				previous = boundary;
+			}
+		}
+		return boundaries.toArray(new String[0]);
+	}
+
+	/**
+	 * Read a dictionary file into shards in this JVM, building the shards in
+	 * parallel. Each line is "rank word frequency [anything else]", the same as
+	 * for {@link Trie#readInDictionary(String)}.
+	 *
+	 * @param fileName The dictionary file
+	 * @param shards   The number of shards wanted
+	 * @throws IOException if the file can't be read, or a line isn't in the right format
+	 */
+	public static ShardedTrie readInDictionary(String fileName, int shards) throws IOException
+	{
+		List<String> words = new ArrayList<>();
+		List<int[]> data = new ArrayList<>();
+		try (Scanner fileScanner = new Scanner(Path.of(fileName)))
+		{
+			int lineNumber = 0;
+			while (fileScanner.hasNextLine())
+			{
+				String line = fileScanner.nextLine();
+				lineNumber++;
+				String[] splitLine = line.split(" ");
+				int rank;
+				int frequency;
+				try
+				{
+					rank = Integer.parseInt(splitLine[0]);
+					frequency = Integer.parseInt(splitLine[2]);
+				}
+				catch (ArrayIndexOutOfBoundsException | NumberFormatException ex)
+				{
+					throw new IOException("Line " + lineNumber + " of \"" + fileName + "\" isn't \"rank word frequency\": " + line, ex);
+				}
+				words.add(splitLine[1]);
+				data.add(new int[]{frequency, rank});
+			}
+		}
+
+		String[] boundaries = chooseBoundaries(words.stream().sorted().collect(Collectors.toList()), shards);
+
+		// split the words up, keeping them in file order so duplicates end up with the same data as in one trie
+		List<List<Integer>> parts = new ArrayList<>();
+		for (int i = 0; i <= boundaries.length; i++)
+		{
+			parts.add(new ArrayList<>());
+		}
+		for (int i = 0; i < words.size(); i++)
+		{
+			parts.get(shardOf(boundaries, words.get(i))).add(i);
+		}
+
+		List<TrieShard> tries = parts.parallelStream().map(part -> {
+			Trie trie = new Trie();
+			for (int i : part)
+			{
+				trie.insert(words.get(i), data.get(i)[0], data.get(i)[1]);
+			}
+			return (TrieShard) new LocalTrieShard(trie);
+		}).collect(Collectors.toList());
+
+		return new ShardedTrie(boundaries, tries, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Get the number of shards.
+	 */
+	public int getShardCount()
+	{
+		return shards.size();
+	}
+
+	/**
+	 * Get the shard a word belongs in.
+	 */
+	public int shardOf(String word)
+	{
+		return shardOf(boundaries, word);
+	}
+
+	static int shardOf(String[] boundaries, String word)
+	{
+		// the number of boundaries at or before the word
+		int index = Arrays.binarySearch(boundaries, word);
+		return (index >= 0) ? index + 1 : -(index + 1);
+	}
+
+	/**
+	 * Find the shards that can hold words starting with a prefix.
+	 *
+	 * @return The first and last shard
+	 */
+	private int[] shardsFor(String prefix)
+	{
+		int first = shardOf(prefix);
+		// any boundary after the prefix that starts with it splits the prefix's words between shards
+		int last = first;
+		while (last < boundaries.length && boundaries[last].startsWith(prefix))
+		{
+			last++;
+		}
+		return new int[]{first, last};
+	}
+
+	/**
+	 * Finds the most frequent word that begins with a prefix, giving the same
+	 * answer as {@link Trie#getMostFrequentWordWithPrefix(String)} on one trie
+	 * holding every word: of the words with the highest frequency, the last in
+	 * alphabetical order.
+	 *
+	 * @return The most frequent word that starts with prefix, or the prefix
+	 * itself if there isn't one
+	 */
+	public String getMostFrequentWordWithPrefix(String prefix)
+	{
+		TrieShard.Completion best = null;
+		for (TrieShard.Completion completion : scatter(prefix, shard -> shard.getMostFrequentWordWithPrefix(prefix)))
+		{
+			if (completion != null && (best == null || completion.frequency() > best.frequency()
+					|| (completion.frequency() == best.frequency() && completion.word().compareTo(best.word()) > 0)))
+			{
+				best = completion;
+			}
+		}
+		return (best == null) ? prefix : best.word();
+	}
+
+	/**
+	 * Finds up to k of the most frequent words that begin with a prefix, most
+	 * frequent first, merging the shards' own top-k lists. See
+	 * {@link Trie#getTopKWordsWithPrefix(String, int)}.
+	 */
+	public List<String> getTopKWordsWithPrefix(String prefix, int k)
+	{
+		List<List<TrieShard.Completion>> lists = scatter(prefix, shard -> shard.getTopKWordsWithPrefix(prefix, k));
+		if (lists.size() == 1)
+		{
+			return lists.get(0).stream().map(TrieShard.Completion::word).collect(Collectors.toList());
+		}
+
+		// the next word of each list, most frequent first, breaking ties alphabetically
+		PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator
+				.comparingInt((int[] head) -> -lists.get(head[0]).get(head[1]).frequency())
+				.thenComparing(head -> lists.get(head[0]).get(head[1]).word()));
+		for (int i = 0; i < lists.size(); i++)
+		{
+			if (!lists.get(i).isEmpty())
+			{
+				heads.add(new int[]{i, 0});
+			}
+		}
+
+		List<String> words = new ArrayList<>();
+		while (words.size() < k && !heads.isEmpty())
+		{
+			int[] head = heads.poll();
+			List<TrieShard.Completion> list = lists.get(head[0]);
+			words.add(list.get(head[1]).word());
+			if (++head[1] < list.size())
+			{
+				heads.add(head);
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Retrieve an alphabetically sorted list of all words beginning with a prefix.
+	 */
+	public List<String> getAlphabeticalListWithPrefix(String prefix)
+	{
+		return getAlphabeticalListWithPrefix(prefix, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Retrieve an alphabetically sorted list of the first words beginning with a prefix.
+	 *
+	 * @param limit The most words to list
+	 */
+	public List<String> getAlphabeticalListWithPrefix(String prefix, int limit)
+	{
+		// the shards' ranges are in order, so joining their lists keeps the words in order
+		List<String> words = new ArrayList<>();
+		for (List<String> part : scatter(prefix, shard -> shard.getAlphabeticalListWithPrefix(prefix, limit)))
+		{
+			words.addAll(part.subList(0, Math.min(part.size(), limit - words.size())));
+			if (words.size() == limit)
+			{
+				break;
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Ask every shard that can hold words starting with a prefix. One shard
+	 * is asked on the calling thread; more are asked at once on the executor.
+	 *
+	 * @return The answers, in shard order
+	 */
+	private <T> List<T> scatter(String prefix, Function<TrieShard, T> query)
+	{
+		int[] range = shardsFor(prefix);
+		if (range[0] == range[1])
+		{
+			return Collections.singletonList(query.apply(shards.get(range[0])));
+		}
+
+		List<CompletableFuture<T>> futures = IntStream.rangeClosed(range[0], range[1])
+				.mapToObj(i -> CompletableFuture.supplyAsync(() -> query.apply(shards.get(i)), executor))
+				.collect(Collectors.toList());
+		try
+		{
+			return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+		}
+		catch (CompletionException ex)
+		{
+			// throw what the shard threw, not the wrapper
+			if (ex.getCause() instanceof RuntimeException cause)
+			{
+				throw cause;
+			}
+			throw ex;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ShardedTrie; #shards=" + shards.size() + ", boundaries=" + Arrays.toString(boundaries);
+	}
+}
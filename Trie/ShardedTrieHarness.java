@@ -0,0 +1,260 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a {@link ShardedTrie} with each shard in its own process, to see how
+ * loading scales with the number of shards and to check the sharded answers
+ * against a single trie.
+ * <p>
+ * The dictionary is made bigger by adding copies of every word with a
+ * letter suffix, each copy less frequent than the one before, so the shards
+ * have enough to do. For each shard count the words are split into one file
+ * per shard, a {@link CompletionServer} is started on each file in a new JVM,
+ * and the harness waits until they all say they are serving. It reports how
+ * long that took and how long the slowest shard took to read its file, then
+ * asks the shards through {@link RemoteTrieShard}s and compares every answer
+ * with a trie holding every word, before stopping the servers.
+ * <p>
+ * The shards can only load in parallel if there are cores for them, so the
+ * speedup is at most the number of cores.
+ * <p>
+ * Usage: {@code java ShardedTrieHarness [dictionary] [copies] [shard counts, such as 1,2,4]}
+ */
+public class ShardedTrieHarness
+{
+	private static final Pattern SERVING = Pattern.compile("Serving completions on (http://localhost:\\d+)/");
+	private static final Pattern READ_IN = Pattern.compile("Read in \\d+ words in ([0-9.]+) ms");
+	private static final int QUERIES = 20000;
+	// how long to wait for a shard to exit once it has closed its output
+	private static final int EXIT_WAIT_SECONDS = 10;
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		String fileName = (args.length > 0) ? args[0] : "Trie/data/word-freq.expanded.trim.txt";
+		int copies = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+		int[] shardCounts = Arrays.stream(((args.length > 2) ? args[2] : "1,2,4").split(",")).mapToInt(Integer::parseInt).toArray();
+
+		List<String> words = new ArrayList<>();
+		List<TrieData> data = new ArrayList<>();
+		if (!TrieBenchmark.readEntries(fileName, words, data))
+		{
+			System.out.println("Can't read " + fileName);
+			return;
+		}
+		expand(words, data, copies);
+		List<String> sorted = words.stream().sorted().distinct().collect(Collectors.toList());
+
+		Trie expected = new Trie();
+		for (int i = 0; i < words.size(); i++)
+		{
+			expected.insert(words.get(i), data.get(i));
+		}
+		// the empty prefix goes to every shard, so it is always asked as well as the sampled ones
+		List<String> prefixList = new ArrayList<>();
+		prefixList.add("");
+		prefixList.addAll(Arrays.asList(TrieBenchmark.samplePrefixes(words, data, new Random(42))));
+		String[] prefixes = prefixList.toArray(new String[0]);
+
+		System.out.println(words.size() + " words, " + Runtime.getRuntime().availableProcessors() + " cores");
+		System.out.printf("%-7s %-12s %-12s %-12s %-8s %s%n", "shards", "words/shard", "ready ms", "slowest ms", "speedup", "mismatches");
+
+		Path directory = Files.createTempDirectory("shards");
+		double oneShardMillis = 0;
+		for (int shardCount : shardCounts)
+		{
+			String[] boundaries = ShardedTrie.chooseBoundaries(sorted, shardCount);
+			List<Path> files = writeShards(directory, boundaries, words, data);
+
+			List<Process> processes = new ArrayList<>();
+			try
+			{
+				long start = System.nanoTime();
+				for (Path file : files)
+				{
+					processes.add(startServer(file));
+				}
+
+				List<String> urls = new ArrayList<>();
+				double slowestMillis = 0;
+				for (Process process : processes)
+				{
+					String[] ready = awaitServing(process);
+					urls.add(ready[0]);
+					slowestMillis = Math.max(slowestMillis, Double.parseDouble(ready[1]));
+				}
+				double readyMillis = (System.nanoTime() - start) / 1e6;
+				if (oneShardMillis == 0)
+				{
+					oneShardMillis = readyMillis;
+				}
+
+				int mismatches;
+				try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+				{
+					HttpClient client = HttpClient.newHttpClient();
+					List<TrieShard> shards = urls.stream().map(url -> (TrieShard) new RemoteTrieShard(client, url)).collect(Collectors.toList());
+					mismatches = compare(new ShardedTrie(boundaries, shards, executor), expected, prefixes);
+				}
+
+				System.out.printf("%-7d %-12d %-12.0f %-12.0f %-8.2f %d%n", files.size(), words.size() / files.size(),
+						readyMillis, slowestMillis, oneShardMillis / readyMillis, mismatches);
+			}
+			finally
+			{
+				for (Process process : processes)
+				{
+					process.destroy();
+				}
+				for (Process process : processes)
+				{
+					process.waitFor();
+				}
+				for (Path file : files)
+				{
+					Files.delete(file);
+				}
+			}
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * Add copies of every word, each with a different letter suffix and less
+	 * frequent than the last, ranked after all the words before them.
+	 */
+	static void expand(List<String> words, List<TrieData> data, int copies)
+	{
+		int size = words.size();
+		for (int copy = 1; copy < copies; copy++)
+		{
+			String suffix = suffix(copy);
+			for (int i = 0; i < size; i++)
+			{
+				words.add(words.get(i) + suffix);
+				data.add(new TrieData(data.get(i).getFrequency() / (copy + 1), copy * size + data.get(i).getRank()));
+			}
+		}
+	}
+
+	private static String suffix(int copy)
+	{
+		StringBuilder suffix = new StringBuilder();
+		for (int n = copy; n > 0; n /= 26)
+		{
+			suffix.append((char) ('a' + n % 26));
+		}
+		return suffix.toString();
+	}
+
+	/**
+	 * Write the words for each shard to a dictionary file of its own, in the same order as they were read.
+	 */
+	private static List<Path> writeShards(Path directory, String[] boundaries, List<String> words, List<TrieData> data) throws IOException
+	{
+		List<Path> files = new ArrayList<>();
+		List<PrintWriter> writers = new ArrayList<>();
+		try
+		{
+			for (int i = 0; i <= boundaries.length; i++)
+			{
+				files.add(directory.resolve("shard" + i + ".txt"));
+				writers.add(new PrintWriter(Files.newBufferedWriter(files.get(i))));
+			}
+			for (int i = 0; i < words.size(); i++)
+			{
+				writers.get(ShardedTrie.shardOf(boundaries, words.get(i)))
+						.println(data.get(i).getRank() + " " + words.get(i) + " " + data.get(i).getFrequency());
+			}
+		}
+		finally
+		{
+			for (PrintWriter writer : writers)
+			{
+				writer.close();
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Start a CompletionServer for a dictionary file on a free port, in a new JVM
+	 * running the same java with the same class path as this one.
+	 */
+	private static Process startServer(Path file) throws IOException
+	{
+		String java = ProcessHandle.current().info().command().orElse("java");
+		return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "CompletionServer", file.toString(), "0")
+				.redirectErrorStream(true)
+				.start();
+	}
+
+	/**
+	 * Read what a server prints until it says it is serving.
+	 *
+	 * @return The server's url, and how many milliseconds it took to read its file
+	 * @throws IOException if the server stops without serving
+	 */
+	private static String[] awaitServing(Process process) throws IOException, InterruptedException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		String millis = "0";
+		String lastLine = "";
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			lastLine = line;
+			Matcher readIn = READ_IN.matcher(line);
+			if (readIn.find())
+			{
+				millis = readIn.group(1);
+			}
+			Matcher serving = SERVING.matcher(line);
+			if (serving.find())
+			{
+				// keep reading what it prints so it never blocks on a full pipe
+				Thread.ofVirtual().start(() -> reader.lines().forEach(ignored -> { }));
+				return new String[]{serving.group(1), millis};
+			}
+		}
+
+		// the output can close a little before the process has finished exiting
+		if (!process.waitFor(EXIT_WAIT_SECONDS, TimeUnit.SECONDS))
+		{
+			throw new IOException("A shard closed its output without serving, and is still running: " + lastLine);
+		}
+		throw new IOException("A shard stopped before it started serving, exit code " + process.exitValue() + ": " + lastLine);
+	}
+
+	/**
+	 * Ask the sharded trie and the single trie the same questions.
+	 *
+	 * @return The number of prefixes they gave different answers for
+	 */
+	private static int compare(ShardedTrie sharded, Trie expected, String[] prefixes)
+	{
+		int mismatches = 0;
+		for (int i = 0; i < Math.min(QUERIES, prefixes.length); i++)
+		{
+			String prefix = prefixes[i];
+			if (!sharded.getMostFrequentWordWithPrefix(prefix).equals(expected.getMostFrequentWordWithPrefix(prefix))
+					|| !sharded.getTopKWordsWithPrefix(prefix, 10).equals(expected.getTopKWordsWithPrefix(prefix, 10))
+					|| !sharded.getAlphabeticalListWithPrefix(prefix, 50).equals(expected.streamWithPrefix(prefix).limit(50).collect(Collectors.toList())))
+			{
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+}
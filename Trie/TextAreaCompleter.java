@@ -0,0 +1,224 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+import java.awt.event.ActionEvent;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Completes words as they are typed into a text area, using the most frequent
+ * word in a trie that starts with what has been typed so far. The completion
+ * is inserted after the caret and selected, so typing carries on over it and
+ * pressing enter accepts it.
+ * <p>
+ * Only following the keystroke happens on the event dispatch thread: the
+ * {@link CompletionCursor} moves one node in the trie and the node and word
+ * are handed to a background executor. The lookup waits for a short debounce
+ * first, and gives up if another keystroke has come in by then, so fast
+ * typing only looks up the last word. Every keystroke starts a new
+ * generation, and a lookup that finishes after a newer keystroke is dropped.
+ * A completion is only inserted if the same generation is still current and
+ * the text before the caret is still the word it was found for.
+ */
+public final class TextAreaCompleter implements DocumentListener
+{
+	private static final String COMMIT_ACTION = "commit";
+
+	private enum Mode
+	{
+		INSERT, COMPLETION
+	}
+
+	private final JTextArea textArea;
+	private final Executor executor;
+	private final long debounceMillis;
+
+	// only used on the event dispatch thread
+	private final CompletionCursor cursor;
+	private Mode mode = Mode.INSERT;
+
+	// goes up with every keystroke, so older lookups can tell they are out of date
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * Start completing words in a text area. Must be called on the event
+	 * dispatch thread.
+	 *
+	 * @param textArea       The text area to complete words in
+	 * @param trie           The words to complete with, which mustn't change while the completer is in use
+	 * @param executor       Where to look up completions, such as
+	 *                       {@code Executors.newVirtualThreadPerTaskExecutor()}
+	 * @param debounceMillis How long to wait after a keystroke before looking up a completion
+	 */
+	public TextAreaCompleter(JTextArea textArea, Trie trie, Executor executor, long debounceMillis)
+	{
+		this.textArea = textArea;
+		this.executor = executor;
+		this.debounceMillis = debounceMillis;
+		cursor = new CompletionCursor(trie);
+
+		textArea.getDocument().addDocumentListener(this);
+
+		InputMap im = textArea.getInputMap();
+		ActionMap am = textArea.getActionMap();
+		im.put(KeyStroke.getKeyStroke("ENTER"), COMMIT_ACTION);
+		am.put(COMMIT_ACTION, new CommitAction());
+	}
+
+	// Listener methods
+	public void changedUpdate(DocumentEvent ev)
+	{
+	}
+
+	public void removeUpdate(DocumentEvent ev)
+	{
+		generation.incrementAndGet();
+		cursor.remove(ev.getOffset(), ev.getLength());
+	}
+
+	public void insertUpdate(DocumentEvent ev)
+	{
+		long current = generation.incrementAndGet();
+		Document document = ev.getDocument();
+		int pos = ev.getOffset();
+		int end = pos + ev.getLength();
+		try
+		{
+			if (!cursor.insert(pos, document.getText(pos, ev.getLength())))
+			{
+				// the text went somewhere other than the end of the word,
+				// so read back to the start of the word it is in now
+				Segment content = new Segment();
+				document.getText(0, end, content);
+				cursor.resync(content, end);
+			}
+		}
+		catch (BadLocationException e)
+		{
+			e.printStackTrace();
+			return;
+		}
+
+		if (ev.getLength() != 1)
+		{
+			return;
+		}
+		mode = Mode.INSERT;
+		if (cursor.getWordLength() < 2 || cursor.getNode() == null)
+		{
+			// too few chars, or nothing to find
+			return;
+		}
+
+		TrieNode node = cursor.getNode();
+		String word = cursor.getWord();
+		executor.execute(() -> lookup(current, node, word, end));
+	}
+
+	/**
+	 * Look up the completion for a word, off the event dispatch thread, and
+	 * hand it back to be inserted if no other keystroke has come in.
+	 *
+	 * @param lookupGeneration The generation of the keystroke that asked for the lookup
+	 * @param node             The trie node for the word
+	 * @param word             The word that was typed
+	 * @param position         The position in the document just after the word
+	 */
+	private void lookup(long lookupGeneration, TrieNode node, String word, int position)
+	{
+		if (debounceMillis > 0)
+		{
+			try
+			{
+				Thread.sleep(debounceMillis);
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+		}
+		if (generation.get() != lookupGeneration)
+		{
+			// typing carried on while waiting, so this word is out of date
+			return;
+		}
+
+		String match = Trie.getMostFrequentWordBelow(node, word);
+		if (match.length() > word.length() && generation.get() == lookupGeneration)
+		{
+			// We cannot modify Document from within the lookup,
+			// so we submit a task that does the change on the event dispatch thread
+			SwingUtilities.invokeLater(new CompletionTask(match.substring(word.length()), position, lookupGeneration, word));
+		}
+	}
+
+	private class CompletionTask implements Runnable
+	{
+		String completion;
+		int position;
+		long taskGeneration;
+		String word;
+
+		CompletionTask(String completion, int position, long taskGeneration, String word)
+		{
+			this.completion = completion;
+			this.position = position;
+			this.taskGeneration = taskGeneration;
+			this.word = word;
+		}
+
+		public void run()
+		{
+			if (generation.get() != taskGeneration || !stillMatches())
+			{
+				// the text has changed since the completion was looked up
+				return;
+			}
+
+			textArea.insert(completion, position);
+			textArea.setCaretPosition(position + completion.length());
+			textArea.moveCaretPosition(position);
+			mode = Mode.COMPLETION;
+		}
+
+		/**
+		 * Check the caret is still just after the word the completion was found for.
+		 */
+		private boolean stillMatches()
+		{
+			if (textArea.getCaretPosition() != position || position < word.length())
+			{
+				return false;
+			}
+			try
+			{
+				return textArea.getText(position - word.length(), word.length()).equalsIgnoreCase(word);
+			}
+			catch (BadLocationException e)
+			{
+				return false;
+			}
+		}
+	}
+
+	private class CommitAction extends AbstractAction
+	{
+		public void actionPerformed(ActionEvent ev)
+		{
+			if (mode == Mode.COMPLETION)
+			{
+				int pos = textArea.getSelectionEnd();
+				textArea.insert(" ", pos);
+				textArea.setCaretPosition(pos + 1);
+				mode = Mode.INSERT;
+			}
+			else
+			{
+				textArea.replaceSelection("\n");
+			}
+		}
+	}
+}
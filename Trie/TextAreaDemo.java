@@ -30,44 +30,33 @@
  */
 
 /*
- * TextAreaDemo.java requires no other files.
+ * TextAreaDemo.java requires TextAreaCompleter.java and the Trie classes.
  */
 import javax.swing.*;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
-import java.awt.event.ActionEvent;
-import javax.swing.text.BadLocationException;
 import javax.swing.GroupLayout.*;
+import java.util.concurrent.Executors;
 
-public class TextAreaDemo extends JFrame
-        implements DocumentListener {
+public class TextAreaDemo extends JFrame {
 
     private JLabel jLabel1;
     private JScrollPane jScrollPane1;
     private JTextArea textArea;
-    private static final String COMMIT_ACTION = "commit";
+    // how long to wait after a keystroke before looking up a completion
+    private static final long DEBOUNCE_MILLIS = 30;
 
-    private static enum Mode {
-        INSERT, COMPLETION
-    };
-
-    //    private final List<String> words;
-    private Mode mode = Mode.INSERT;
     private final String fileName = "Trie/data/word-freq.expanded.trim.txt";
     private Trie dictionaryTrie = null;
+    // a JFrame is Serializable, but the completer and its executor are only for this window
+    private transient TextAreaCompleter completer = null;
 
     public TextAreaDemo() {
         super("TextAreaDemo");
         initComponents();
 
-        textArea.getDocument().addDocumentListener(this);
-
-        InputMap im = textArea.getInputMap();
-        ActionMap am = textArea.getActionMap();
-        im.put(KeyStroke.getKeyStroke("ENTER"), COMMIT_ACTION);
-        am.put(COMMIT_ACTION, new CommitAction());
-
         dictionaryTrie = Trie.readInDictionary(fileName);
+        // completions are looked up on virtual threads, so typing never waits for the trie
+        completer = new TextAreaCompleter(textArea, dictionaryTrie,
+                Executors.newVirtualThreadPerTaskExecutor(), DEBOUNCE_MILLIS);
     }
 
     private void initComponents() {
@@ -124,87 +113,6 @@ public class TextAreaDemo extends JFrame
 
     }
 
-    // Listener methods
-    public void changedUpdate(DocumentEvent ev) {
-    }
-
-    public void removeUpdate(DocumentEvent ev) {
-    }
-
-    public void insertUpdate(DocumentEvent ev) {
-        if (ev.getLength() != 1) {
-            return;
-        }
-
-        int pos = ev.getOffset();
-        String content = null;
-        try {
-            content = textArea.getText(0, pos + 1);
-        } catch (BadLocationException e) {
-            e.printStackTrace();
-        }
-
-        // Find where the word starts
-        int w;
-        for (w = pos; w >= 0; w--) {
-            if (!Character.isLetter(content.charAt(w))) {
-                break;
-            }
-        }
-        if (pos - w < 2) {
-            // Too few chars
-            return;
-        }
-
-        String prefix = content.substring(w + 1).toLowerCase();
-        String match = dictionaryTrie.getMostFrequentWordWithPrefix(prefix);
-        if (match != null) {
-            if (!match.equals(prefix) && match.startsWith(prefix)) {
-                // A completion is found
-                String completion = match.substring(pos - w);
-                // We cannot modify Document from within notification,
-                // so we submit a task that does the change later
-                SwingUtilities.invokeLater(
-                        new CompletionTask(completion, pos + 1));
-            }
-        } else {
-            // Nothing found
-            mode = Mode.INSERT;
-        }
-    }
-
-    private class CompletionTask implements Runnable {
-
-        String completion;
-        int position;
-
-        CompletionTask(String completion, int position) {
-            this.completion = completion;
-            this.position = position;
-        }
-
-        public void run() {
-            textArea.insert(completion, position);
-            textArea.setCaretPosition(position + completion.length());
-            textArea.moveCaretPosition(position);
-            mode = Mode.COMPLETION;
-        }
-    }
-
-    private class CommitAction extends AbstractAction {
-
-        public void actionPerformed(ActionEvent ev) {
-            if (mode == Mode.COMPLETION) {
-                int pos = textArea.getSelectionEnd();
-                textArea.insert(" ", pos);
-                textArea.setCaretPosition(pos + 1);
-                mode = Mode.INSERT;
-            } else {
-                textArea.replaceSelection("\n");
-            }
-        }
-    }
-
     public static void main(String args[]) {
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
@@ -1,9 +1,19 @@
 import java.io.*;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Trie
 {
 	private final TrieNode root = new TrieNode();
+	// the frequency and rank of every word, which the terminal nodes point into
+	private final TrieDataTable table = new TrieDataTable();
+
+	// only timed when Metrics.ENABLED is set; see Metrics
+	private static final OperationMetrics INSERT_METRICS = Metrics.operation("Trie", "insert");
+	private static final OperationMetrics MOST_FREQUENT_METRICS = Metrics.operation("Trie", "getMostFrequentWordWithPrefix");
 
 	/**
 	 * Inserts a string into the trie and returns the last node that was
@@ -15,24 +25,87 @@ public class Trie
 	 */
 	public TrieNode insert(String str, TrieData data)
 	{
-		char[] chars = str.toCharArray();
-		TrieNode currentNode = root;
+		return insert(str, data.getFrequency(), data.getRank());
+	}
+
+	/**
+	 * Inserts a string into the trie and returns the last node that was
+	 * inserted, without needing a TrieData for it.
+	 *
+	 * @param str       The string to insert into the trie
+	 * @param frequency The frequency of the string
+	 * @param rank      The rank of the string, or -1 if it doesn't have one
+	 * @return The last node that was inserted into the trie
+	 */
+	public TrieNode insert(String str, int frequency, int rank)
+	{
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		TrieNode node = insert(root, str, table, table.add(frequency, rank));
+		if (Metrics.ENABLED)
+		{
+			INSERT_METRICS.recordSince(start);
+		}
+		return node;
+	}
+
+	/**
+	 * Inserts part of a character sequence into the trie, such as a word in a
+	 * text area's document, and returns the last node that was inserted.
+	 * <p>
+	 * Unlike {@link #getNode(CharSequence, int, int)} and
+	 * {@link #getMostFrequentWordWithPrefix(CharSequence, int, int, StringBuilder)},
+	 * this always allocates: the word is copied into a new String, since the
+	 * lists of most frequent words keep a reference to it, on top of the row
+	 * and any new nodes the word needs.
+	 *
+	 * @param str    The characters containing the word to insert
+	 * @param offset The index of the first character of the word
+	 * @param length The number of characters in the word
+	 * @param data   The data associated with the word
+	 * @return The last node that was inserted into the trie
+	 */
+	public TrieNode insert(CharSequence str, int offset, int length, TrieData data)
+	{
+		Objects.checkFromIndexSize(offset, length, str.length());
+		return insert(str.subSequence(offset, offset + length).toString(), data);
+	}
+
+	/**
+	 * Inserts a string below a particular node, as if that node was the root
+	 * of the trie, and returns the last node that was inserted.
+	 *
+	 * @param start   The node to insert the string below
+	 * @param str     The string to insert
+	 * @param table   The table holding the data for the string
+	 * @param ordinal The row of the table holding the data for the string
+	 * @return The last node that was inserted
+	 */
+	static TrieNode insert(TrieNode start, String str, TrieDataTable table, int ordinal)
+	{
+		int frequency = table.getFrequency(ordinal);
+		TrieNode currentNode = start;
+		if (start.maxFrequency < frequency)
+		{
+			start.maxFrequency = frequency;
+		}
 
 		boolean add = false;
-		for(char c : chars)
+		for (int i = 0; i < str.length(); i++)
 		{
+			char c = str.charAt(i);
+			TrieNode next;
 			if (!add)
 			{
 				if (currentNode.getChild(c) != null)
 				{
 					// search through the tree as long as the current string already exists
-					currentNode = currentNode.getChild(c);
+					next = currentNode.getChild(c);
 				}
 				else
 				{
 					// when a missing char is found, add that letter and switch add to true so it skips searching
 					currentNode.addChild(c);
-					currentNode = currentNode.getChild(c);
+					next = currentNode.getChild(c);
 					add = true;
 				}
 			}
@@ -40,25 +113,268 @@ public class Trie
 			{
 				// add all remaining
 				currentNode.addChild(c);
-				currentNode = currentNode.getChild(c);
+				next = currentNode.getChild(c);
 			}
 
+			// let every node on the way down know about the word, for top-K completions, once its child for the word is there
+			currentNode.offerTopWord(str, i, frequency);
+			currentNode = next;
+
 			// ...
-			if (currentNode.maxFrequency < data.getFrequency())
+			if (currentNode.maxFrequency < frequency)
 			{
-				currentNode.maxFrequency = data.getFrequency();
+				currentNode.maxFrequency = frequency;
 			}
 		}
 
-		// add the data for the current string to the last node
-		currentNode.addData(data);
+		// remember how frequent the word was, if it is already in the trie
+		int oldFrequency = currentNode.isTerminal() ? currentNode.getFrequency() : -1;
+
+		// point the last node at the data for the current string
+		currentNode.setData(table, ordinal);
 
 		// set the current node to be terminal
 		currentNode.setTerminal(true);
 
+		currentNode.offerTopWord(str, str.length(), frequency);
+
+		if (oldFrequency > frequency)
+		{
+			// the word has become less frequent, so maxFrequency and the top-K lists along the path may be too high
+			repairPath(start, str);
+		}
+
 		return currentNode;
 	}
 
+	/**
+	 * Fix maxFrequency and the lists of most frequent words on every node
+	 * along the path of a word, after the word has become less frequent.
+	 * <p>
+	 * The nodes are fixed from the bottom up, so each node can be worked out
+	 * from its own word and its children, which have already been fixed.
+	 *
+	 * @param start The node the word's path starts from
+	 * @param str   The word whose path needs fixing
+	 */
+	private static void repairPath(TrieNode start, String str)
+	{
+		repairPath(getPath(start, str), str, str.length());
+	}
+
+	/**
+	 * Fix maxFrequency and the lists of most frequent words on the first
+	 * nodes of a path, from the bottom up. See {@link #repairPath(TrieNode, String)}.
+	 *
+	 * @param path  The nodes along the path of str, with the start node first
+	 * @param str   The word the path is for
+	 * @param depth The number of characters of str whose nodes need fixing
+	 */
+	private static void repairPath(TrieNode[] path, String str, int depth)
+	{
+		for (int i = depth; i >= 0; i--)
+		{
+			path[i].recomputeMaxFrequency();
+			path[i].rebuildTopWords(str.substring(0, i));
+		}
+	}
+
+	/**
+	 * Find every node along the path of a string.
+	 *
+	 * @param start The node the path starts from
+	 * @param str   The string to follow
+	 * @return The nodes along the path, with the start node first, or null if the string isn't in the trie
+	 */
+	private static TrieNode[] getPath(TrieNode start, String str)
+	{
+		TrieNode[] path = new TrieNode[str.length() + 1];
+		path[0] = start;
+		for (int i = 0; i < str.length(); i++)
+		{
+			path[i + 1] = path[i].getChild(str.charAt(i));
+			if (path[i + 1] == null)
+			{
+				return null;
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * Change the frequency of a word that is already in the trie, keeping its
+	 * rank. maxFrequency and the lists of most frequent words are kept right
+	 * on every node along the word's path, whether the frequency goes up or
+	 * down, so this can be used to feed live usage counts into the trie.
+	 * <p>
+	 * Raising a frequency only touches the path, in O(length) time. Lowering
+	 * one has to look at the children of each node on the path, so it takes
+	 * O(length * fanout) time.
+	 *
+	 * @param word      The word to change
+	 * @param frequency The new frequency of the word
+	 * @return The node at the end of the word, or null if the word isn't in the trie
+	 */
+	public TrieNode setFrequency(String word, int frequency)
+	{
+		TrieNode[] path = getPath(root, word);
+		if (path == null || !path[word.length()].isTerminal())
+		{
+			return null;
+		}
+
+		TrieNode node = path[word.length()];
+		int oldFrequency = node.getFrequency();
+		if (node.hasData())
+		{
+			node.setFrequency(frequency);
+		}
+		else
+		{
+			node.setData(table, table.add(frequency, -1));
+		}
+
+		if (frequency > oldFrequency)
+		{
+			// the same as inserting the word again
+			for (int i = 0; i < path.length; i++)
+			{
+				if (path[i].maxFrequency < frequency)
+				{
+					path[i].maxFrequency = frequency;
+				}
+				path[i].offerTopWord(word, i, frequency);
+			}
+		}
+		else if (frequency < oldFrequency)
+		{
+			repairPath(root, word);
+		}
+
+		return node;
+	}
+
+	/**
+	 * Add to (or, with a negative delta, take away from) the frequency of a
+	 * word that is already in the trie. See {@link #setFrequency(String, int)}.
+	 *
+	 * @param word  The word to change
+	 * @param delta The amount to change the frequency by
+	 * @return The node at the end of the word, or null if the word isn't in the trie
+	 * @throws ArithmeticException if the new frequency doesn't fit in an int, in which case the word is left alone
+	 */
+	public TrieNode incrementFrequency(String word, int delta)
+	{
+		TrieNode node = get(word);
+		if (node == null)
+		{
+			return null;
+		}
+
+		int frequency = node.hasData() ? node.getFrequency() : 0;
+		return setFrequency(word, Math.addExact(frequency, delta));
+	}
+
+	/**
+	 * Remove a word from the trie. The nodes that were only there for the
+	 * word are removed too, and maxFrequency and the lists of most frequent
+	 * words are fixed on the rest of its path, so the trie ends up the same
+	 * as if the word had never been inserted. This takes O(length * fanout)
+	 * time, like lowering a frequency.
+	 * <p>
+	 * The freed space in the nodes' child arrays, and the word's row in the
+	 * data table, aren't given back until {@link #compact()} is called.
+	 *
+	 * @param word The word to remove
+	 * @return true if the word was in the trie
+	 */
+	public boolean remove(String word)
+	{
+		TrieNode[] path = getPath(root, word);
+		if (path == null || !path[word.length()].isTerminal())
+		{
+			return false;
+		}
+
+		TrieNode node = path[word.length()];
+		node.setTerminal(false);
+		node.setData(null, -1);
+
+		// cut off the branch the word was the only reason for, from the bottom up
+		int depth = word.length();
+		while (depth > 0 && !path[depth].isTerminal() && path[depth].getNumChildren() == 0)
+		{
+			path[depth - 1].removeChild(word.charAt(depth - 1));
+			depth--;
+		}
+
+		repairPath(path, word, depth);
+		return true;
+	}
+
+	/**
+	 * Shrink every node's arrays to fit what is in them, and throw away the
+	 * rows of the data table that no node uses any more. Inserting leaves room
+	 * to grow, removing words leaves gaps, and inserting a word again leaves
+	 * its old row behind, so after a lot of churn this can give back a fair
+	 * amount of memory. See {@link TrieNode#compact()}.
+	 */
+	public void compact()
+	{
+		BitSet live = new BitSet(table.size());
+		compactNodes(root, live);
+
+		int[] moved = table.compact(live);
+		renumberRows(root, moved);
+	}
+
+	/**
+	 * Compact every node at or below a node, and mark the rows they use.
+	 */
+	private void compactNodes(TrieNode node, BitSet live)
+	{
+		node.compact();
+		if (node.getTable() == table)
+		{
+			live.set(node.getOrdinal());
+		}
+		for (int i = 0; i < node.getNumChildren(); i++)
+		{
+			compactNodes(node.getChildAt(i), live);
+		}
+	}
+
+	/**
+	 * Point every node at or below a node at its row's new ordinal.
+	 */
+	private void renumberRows(TrieNode node, int[] moved)
+	{
+		if (node.getTable() == table)
+		{
+			node.setData(table, moved[node.getOrdinal()]);
+		}
+		for (int i = 0; i < node.getNumChildren(); i++)
+		{
+			renumberRows(node.getChildAt(i), moved);
+		}
+	}
+
+	/**
+	 * Get the root node, which doesn't stand for any character.
+	 */
+	TrieNode getRoot()
+	{
+		return root;
+	}
+
+	/**
+	 * Get the table holding the frequency and rank of every word.
+	 */
+	TrieDataTable getDataTable()
+	{
+		return table;
+	}
+
 	/**
 	 * Search for a particular prefix in the trie, and return the final node in
 	 * the path from root to the end of the string, i.e. the node corresponding
@@ -77,17 +393,31 @@ public class Trie
 	 */
 	public TrieNode getNode(String str)
 	{
-		char[] chars = str.toCharArray();
+		return getNode(str, 0, str.length());
+	}
+
+	/**
+	 * Search for part of a character sequence as a prefix, without copying it,
+	 * so for example a word can be looked up straight from a text area's
+	 * document through a {@link javax.swing.text.Segment}. See
+	 * {@link #getNode(String)}.
+	 *
+	 * @param str    The characters containing the prefix
+	 * @param offset The index of the first character of the prefix
+	 * @param length The number of characters in the prefix
+	 * @return the final node in the path from root to the end of the prefix, or
+	 * null if prefix is not found
+	 */
+	public TrieNode getNode(CharSequence str, int offset, int length)
+	{
+		Objects.checkFromIndexSize(offset, length, str.length());
 		TrieNode currentNode = root;
 
-		for(char c : chars)
+		for (int i = offset; i < offset + length; i++)
 		{
-			if (currentNode.getChild(c) != null)
-			{
-				// search through the tree as long as the current string already exists
-				currentNode = currentNode.getChild(c);
-			}
-			else
+			// search through the tree as long as the current string already exists
+			currentNode = currentNode.getChild(str.charAt(i));
+			if (currentNode == null)
 			{
 				// when a missing char is found, the string doesn't exist, so return null
 				return null;
@@ -137,52 +467,43 @@ public class Trie
 	 */
 	public List<String> getAlphabeticalListWithPrefix(String prefix)
 	{
-		// get a list of all words following the prefix
-		List<String> words = getWordsFromNode(getNode(prefix), prefix);
+		List<String> words = new ArrayList<>();
 
-		//sort the list alphabetically
-		Collections.sort(words);
-		// because we are using Hashmaps to store child nodes, this can't be done during traversal
+		// the children are kept in alphabetical order, so the words come out already sorted
+		iteratorWithPrefix(prefix).forEachRemaining(words::add);
 
-		//return the list
 		return words;
 	}
 
 	/**
-	 * Recursively search the trie, starting at a given node, to find every word that follows the given prefix.
+	 * Iterate over all words beginning with a particular prefix, in
+	 * alphabetical order. The words are found as the iterator is advanced, so
+	 * stopping early costs nothing for the words that aren't reached.
 	 *
-	 * @param node The node to begin searching from.
-	 * @param prefix The prefix with which all words start. Typically, the string required to reach the starting node.
-	 * @return The list of words following the node, or an empty list if none are found.
+	 * @param prefix The prefix with which all words start.
+	 * @return An iterator over the words beginning with the prefix, which is
+	 * empty if the prefix was not found.
 	 */
-	private List<String> getWordsFromNode(TrieNode node, String prefix)
+	public Iterator<String> iteratorWithPrefix(String prefix)
 	{
-		// create an empty list, which will be added to with each recursion.
-		List<String> words = new ArrayList<>();
-
-		// exit early if the current node is null
-		if (node != null)
-		{
-			// if the current node is terminal, add the prefix required to reach it to the list of words.
-			if (node.isTerminal())
-			{
-				words.add(prefix);
-			}
-
-			// recurse through all the children of the current node
-			for (char child : node.getChildren().keySet() )
-			{
-				// add any words found by the children to the list of words
-				words.addAll(getWordsFromNode(node.getChild(child), prefix + child));
-				// `prefix: prefix + child` adds the key to the character to the current prefix, building the word one
-				//  letter at a time with each recursion.
-			}
-		}
-
-		// return the list of words
-		return words;
+		return new TrieWordIterator(getNode(prefix), prefix);
 	}
 
+	/**
+	 * Stream all words beginning with a particular prefix, in alphabetical
+	 * order. The stream is lazy, so for example {@code limit(n)} only visits as
+	 * much of the trie as it needs to find n words.
+	 *
+	 * @param prefix The prefix with which all words start.
+	 * @return A sorted stream of the words beginning with the prefix, which is
+	 * empty if the prefix was not found.
+	 */
+	public Stream<String> streamWithPrefix(String prefix)
+	{
+		Spliterator<String> words = Spliterators.spliteratorUnknownSize(iteratorWithPrefix(prefix),
+				Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL);
+		return StreamSupport.stream(words, false);
+	}
 
 	/**
 	 * NOTE: TO BE IMPLEMENTED IN ASSIGNMENT 1 Finds the most frequently
@@ -194,46 +515,236 @@ public class Trie
 	 */
 	public String getMostFrequentWordWithPrefix(String prefix)
 	{
-		TrieNode node = getNode(prefix);
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		String word = getMostFrequentWordBelow(getNode(prefix), prefix);
+		if (Metrics.ENABLED)
+		{
+			MOST_FREQUENT_METRICS.recordSince(start);
+		}
+		return word;
+	}
+
+	/**
+	 * Finds the most frequent word that begins with part of a character
+	 * sequence, and appends it to a StringBuilder, so a caller that reuses the
+	 * StringBuilder can look up completions without allocating anything. The
+	 * word appended is the same as {@link #getMostFrequentWordWithPrefix(String)}
+	 * returns, including the prefix.
+	 *
+	 * @param prefix The characters containing the prefix
+	 * @param offset The index of the first character of the prefix
+	 * @param length The number of characters in the prefix
+	 * @param word   The StringBuilder to append the word to
+	 * @return The node at the end of the word, or null if the prefix is not found
+	 * (in which case just the prefix is appended)
+	 */
+	public TrieNode getMostFrequentWordWithPrefix(CharSequence prefix, int offset, int length, StringBuilder word)
+	{
+		long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		TrieNode node = getNode(prefix, offset, length);
+		word.append(prefix, offset, offset + length);
+		if (node != null)
+		{
+			node = appendMostFrequentWordBelow(node, word);
+		}
+		if (Metrics.ENABLED)
+		{
+			MOST_FREQUENT_METRICS.recordSince(start);
+		}
+		return node;
+	}
+
+	/**
+	 * Finds the most frequent word at or below a node, by following the
+	 * children with the highest maxFrequency down from it.
+	 *
+	 * @param node   The node to start from, or null if the prefix wasn't found
+	 * @param prefix The string for the node
+	 * @return The most frequent word that starts with prefix
+	 */
+	static String getMostFrequentWordBelow(TrieNode node, String prefix)
+	{
+		if ((node == null) || (getMostFrequentChild(node) < 0))
+		{
+			// the prefix is the answer, so don't copy it
+			return prefix;
+		}
 
+		StringBuilder word = new StringBuilder(prefix);
+		appendMostFrequentWordBelow(node, word);
+		return word.toString();
+	}
+
+	/**
+	 * Follows the children with the highest maxFrequency down from a node,
+	 * appending their labels.
+	 *
+	 * @param node The node to start from
+	 * @param word The StringBuilder holding the string for the node, which the rest of the word is appended to
+	 * @return The node at the end of the most frequent word
+	 */
+	static TrieNode appendMostFrequentWordBelow(TrieNode node, StringBuilder word)
+	{
 		// keep searching until the end of the chain, or the next node has a lower frequency than the current
-		while ((node != null) && (node.getNumChildren() > 0))
+		while (node.getNumChildren() > 0)
 		{
-			// store which child has the highest frequency
-			String childName = null;
-			// this is a string for two reasons:
-			//   1. it allows it to be null, for the purpose of checking if it has been modified later
-			//   2. to make it easier to change if we allow strings as child names later
+			int child = getMostFrequentChild(node);
 
-			// find the child with the highest frequency
-			for(char child : node.getChildren().keySet())
+			if (child < 0)
 			{
-				// ignore children with lower frequency than the current node
-				if (node.getChild(child).maxFrequency >= node.maxFrequency)
-				{
-					// store the child
-					childName = String.valueOf(child);
-				}
+				// there are no words further along the chain with a higher frequency, so stop here
+				break;
 			}
 
-			if (childName == null)
+			// add the new suffix to the prefix, then carry on from the child
+			word.append(node.getChildLabel(child));
+			node = node.getChildAt(child);
+		}
+		// theoretically, this implementation should find the most frequency word in O(n+1) time, where n is the length of the most frequent word
+
+		return node;
+	}
+
+	/**
+	 * Find the child of a node that leads to its most frequent word.
+	 *
+	 * @param node The node to look at
+	 * @return The index of the child, or -1 if no child has a maxFrequency as
+	 * high as the node's
+	 */
+	static int getMostFrequentChild(TrieNode node)
+	{
+		int child = -1;
+
+		for (int i = 0; i < node.getNumChildren(); i++)
+		{
+			// ignore children with lower frequency than the current node
+			if (node.getChildAt(i).maxFrequency >= node.maxFrequency)
 			{
-				// if childName is still ' ' then there are no words further along the chain with a higher frequency
-				// so return immediately
-				return prefix;
+				child = i;
 			}
-			else
-			{
-				// add the new suffix to the prefix
-				prefix = prefix + childName;
+		}
 
-				// set the current node to the child, then restart the loop
-				node = node.getChild(childName.charAt(0));
-			}
+		return child;
+	}
+
+	/**
+	 * Finds the most frequent word for every prefix in a batch. Gives the same
+	 * answers as calling {@link #getMostFrequentWordWithPrefix(String)} on each
+	 * prefix, but is quicker for large batches: each prefix only walks down
+	 * the part of the trie it doesn't share with the one before it, repeated
+	 * prefixes reuse the answer found the first time, and big batches are
+	 * split across the available cores. See {@link BatchCompleter}.
+	 *
+	 * @param prefixes The prefixes to search for
+	 * @return The most frequent word for each prefix, in the same order as prefixes
+	 */
+	public List<String> completeAll(List<String> prefixes)
+	{
+		return BatchCompleter.completeAll(root, prefixes);
+	}
+
+	/**
+	 * Finds up to k of the most frequently occurring words that begin with the
+	 * provided prefix, most frequent first. Words with the same frequency are
+	 * in alphabetical order.
+	 * <p>
+	 * Each node where the trie branches remembers its
+	 * {@code TrieNode.TOP_K_CAPACITY} most frequent words, so for k up to that
+	 * size this is a lookup, a walk down any chain of single children, and a
+	 * copy. Larger values of k are found by a best-first search below the
+	 * prefix, in order of maxFrequency, which stops once the best k words are
+	 * known but is much slower than the lookup.
+	 *
+	 * @param prefix The prefix to search for
+	 * @param k      The maximum number of words to return
+	 * @return The most frequent words that start with prefix, or an empty list
+	 * if the prefix was not found
+	 * @throws IllegalArgumentException if k is negative
+	 */
+	public List<String> getTopKWordsWithPrefix(String prefix, int k)
+	{
+		if (k < 0)
+		{
+			throw new IllegalArgumentException("k can't be negative: " + k);
 		}
-		// theoretically, this implementation should find the most frequency word in O(n+1) time, where n is the length of the most frequent word
 
-		return prefix;
+		if (k > TrieNode.TOP_K_CAPACITY)
+		{
+			// too many for the kept lists; a search allowing no edits only finds words starting with the prefix
+			return FuzzySearch.search(root, prefix, 0, k);
+		}
+
+		TrieNode node = getNode(prefix);
+
+		if (node == null)
+		{
+			return new ArrayList<>();
+		}
+		return node.getTopWords(prefix, k);
+	}
+
+	/**
+	 * Finds up to k of the most frequently occurring words that begin with
+	 * something close to the provided prefix, most frequent first. A word
+	 * matches if some prefix of it is no more than maxEdits insertions,
+	 * deletions or substitutions away from the given prefix, so this still
+	 * finds completions when the prefix has a typo in it.
+	 * <p>
+	 * The search walks the trie with a Levenshtein row per node, dropping
+	 * branches that are already too far away and visiting nodes in order of
+	 * maxFrequency so it can stop as soon as the best k words are known. See
+	 * {@link FuzzySearch}.
+	 *
+	 * @param prefix   The prefix to search for, which may be mistyped
+	 * @param maxEdits The most edits allowed between the prefix and the start of a word
+	 * @param k        The maximum number of words to return
+	 * @return The most frequent matching words, or an empty list if there are none
+	 * @throws IllegalArgumentException if k is negative
+	 */
+	public List<String> getMostFrequentWordsWithinDistance(String prefix, int maxEdits, int k)
+	{
+		return FuzzySearch.search(root, prefix, maxEdits, k);
+	}
+
+	/**
+	 * Compile the trie into a read-only {@link FrozenTrie}, which answers the
+	 * same queries using a few flat int arrays instead of a graph of TrieNodes.
+	 * Use this once all the words have been inserted; words inserted into this
+	 * trie afterwards will not show up in the frozen copy.
+	 *
+	 * @return a frozen copy of the trie
+	 */
+	public FrozenTrie freeze()
+	{
+		return new FrozenTrie(root);
+	}
+
+	/**
+	 * Save a frozen copy of the trie to a binary file, which can be mapped back
+	 * in with {@link #mapFrom(Path)} much faster than the dictionary can be
+	 * read in again.
+	 *
+	 * @param path The file to write, which is replaced if it already exists
+	 * @throws IOException if the file can't be written
+	 */
+	public void save(Path path) throws IOException
+	{
+		freeze().save(path);
+	}
+
+	/**
+	 * Memory map a trie saved with {@link #save(Path)}. The file is queried in
+	 * place rather than being read into TrieNodes, so the returned trie is
+	 * read-only.
+	 *
+	 * @param path The file to map
+	 * @return a frozen trie backed by the file
+	 * @throws IOException if the file can't be read, or isn't a saved trie
+	 */
+	public static FrozenTrie mapFrom(Path path) throws IOException
+	{
+		return FrozenTrie.map(path);
 	}
 
 	/**
@@ -272,19 +783,70 @@ public class Trie
 			String word = splitLine[1];
 			int freq = Integer.parseInt(splitLine[2]);
 
-			String other = "";
-			// add whatever else to the "other" field
-			for (int i = 3; i < splitLine.length; i++)
-			{
-				other = other + splitLine[i] + " ";
-			}
-			// not currently using it, but could later
+			// anything after the frequency is read from the file again if it is asked for, see TrieDataTable
 
-			trie.insert(word, new TrieData(freq, rank));
+			trie.insert(word, freq, rank);
 			wordCount++;
 		}
+		trie.table.setSource(Path.of(fileName));
 
-		System.out.println("Read in " + wordCount + " words in " + ((System.nanoTime() - startTime) / 1000000.0) + " ms.");
+		long buildNanos = System.nanoTime() - startTime;
+		System.out.println("Read in " + wordCount + " words in " + (buildNanos / 1000000.0) + " ms.");
+		Metrics.structure("Trie", fileName, trie, t -> countNodes(t.root), buildNanos);
 		return trie;
 	}
+
+	/**
+	 * Reads in a dictionary from file using every core, and places all words
+	 * into the trie. The resulting trie is the same as the one built by
+	 * {@link #readInDictionary(String)}, but big files are read much faster.
+	 * <p>
+	 * The file is read in large chunks, the chunks are parsed in parallel, and
+	 * then a separate sub-trie is built in parallel for each first character
+	 * before they are all attached to the root. See {@link DictionaryLoader}.
+	 *
+	 * @param fileName the file to read from
+	 * @return the trie containing all the words
+	 */
+	public static Trie readInDictionaryParallel(String fileName)
+	{
+		Trie trie = new Trie();
+		long startTime = System.nanoTime();
+
+		int wordCount;
+		try
+		{
+			wordCount = DictionaryLoader.load(Path.of(fileName), trie.root, trie.table);
+			trie.table.setSource(Path.of(fileName));
+		}
+		catch (FileNotFoundException | NoSuchFileException ex)
+		{
+			System.out.println(" could not find the file \"" + fileName + "\" in the data directory!");
+			return null;
+		}
+		catch (IOException ex)
+		{
+			System.out.println(" could not read the file \"" + fileName + "\": " + ex.getMessage());
+			return null;
+		}
+
+		long buildNanos = System.nanoTime() - startTime;
+		double millis = buildNanos / 1000000.0;
+		System.out.println("Read in " + wordCount + " words in " + millis + " ms (" + Math.round(wordCount / (millis / 1000.0)) + " words/sec).");
+		Metrics.structure("Trie", fileName, trie, t -> countNodes(t.root), buildNanos);
+		return trie;
+	}
+
+	/**
+	 * Count the nodes at or below a node.
+	 */
+	static long countNodes(TrieNode node)
+	{
+		long count = 1;
+		for (int i = 0; i < node.getNumChildren(); i++)
+		{
+			count += countNodes(node.getChildAt(i));
+		}
+		return count;
+	}
 }
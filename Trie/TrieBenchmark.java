@@ -0,0 +1,318 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Benchmarks the main Trie operations on the bundled dictionaries, and writes
+ * the results to a CSV file so runs can be compared over time.
+ * <p>
+ * Each benchmark is warmed up, then measured over several iterations, and
+ * reports the mean time per operation with a 99% confidence interval and the
+ * number of bytes allocated per operation (the same figure as JMH's
+ * {@code gc.alloc.rate.norm}). The queries are prefixes of words picked at
+ * random in proportion to their frequency, so common words are looked up
+ * more often, the way they would be by someone typing.
+ * <p>
+ * Usage: {@code java TrieBenchmark [results.csv] [dictionary files...]}
+ * <p>
+ * Results are written one line per benchmark as
+ * {@code benchmark,dictionary,ns_per_op,error_ns,bytes_per_op,ops}. If a
+ * lookup that shouldn't allocate anything does, the results are still
+ * written, but the run exits with status 1.
+ */
+public class TrieBenchmark
+{
+	private static final int WARMUP_ITERATIONS = 5;
+	// keep warming up for at least this long, so operations that are only run a few times per iteration still get compiled
+	private static final long MIN_WARMUP_NANOS = 2_000_000_000L;
+	private static final int MEASURED_ITERATIONS = 10;
+	private static final int QUERIES = 20000;
+	private static final int BATCH_SIZE = 5000;
+	private static final int CACHED_PREFIXES = 1000;
+
+	// the lookups through the CharSequence overloads, which are meant not to allocate at all; the run fails if they do
+	private static final Set<String> ALLOCATION_FREE = Set.of("getNode(CharSequence)", "getMostFrequentWordWithPrefix(StringBuilder)");
+
+	// 99% two-sided Student's t value for MEASURED_ITERATIONS - 1 degrees of freedom
+	private static final double T_99 = 3.25;
+
+	// results are added into this, so the JIT can't throw the work away
+	static volatile int sink;
+
+	/**
+	 * One operation to be measured, called with the index of the query to run.
+	 */
+	interface Operation
+	{
+		int run(int index);
+	}
+
+	/**
+	 * The measured cost of one benchmark.
+	 */
+	record Result(String benchmark, String dictionary, double nsPerOp, double errorNs, double bytesPerOp, long ops)
+	{
+		String toCsv()
+		{
+			return String.format(Locale.ROOT, "%s,%s,%.1f,%.1f,%.1f,%d", benchmark, dictionary, nsPerOp, errorNs, bytesPerOp, ops);
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(Locale.ROOT, "%-46s %-32s %12.1f +/- %8.1f ns/op %12.1f B/op", benchmark, dictionary, nsPerOp, errorNs, bytesPerOp);
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		Path resultsFile = Path.of((args.length > 0) ? args[0] : "trie-benchmark-results.csv");
+		List<String> dictionaries = (args.length > 1)
+				? Arrays.asList(args).subList(1, args.length)
+				: List.of("Trie/data/word-freq.expanded.trim.txt", "Trie/data/word-freq.expanded.txt");
+
+		List<Result> results = new ArrayList<>();
+		for (String dictionary : dictionaries)
+		{
+			results.addAll(benchmarkDictionary(dictionary));
+		}
+
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(resultsFile)))
+		{
+			out.println("benchmark,dictionary,ns_per_op,error_ns,bytes_per_op,ops");
+			for (Result result : results)
+			{
+				out.println(result.toCsv());
+			}
+		}
+		System.out.println("Results written to " + resultsFile.toAbsolutePath());
+
+		List<Result> allocating = results.stream()
+				.filter(result -> ALLOCATION_FREE.contains(result.benchmark()) && result.bytesPerOp() > 0)
+				.toList();
+		if (!allocating.isEmpty())
+		{
+			System.out.println("These benchmarks allocated, but shouldn't have:");
+			allocating.forEach(System.out::println);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Run every benchmark against one dictionary.
+	 */
+	static List<Result> benchmarkDictionary(String fileName) throws IOException
+	{
+		List<Result> results = new ArrayList<>();
+		String name = Path.of(fileName).getFileName().toString();
+
+		List<String> words = new ArrayList<>();
+		List<TrieData> data = new ArrayList<>();
+		if (!readEntries(fileName, words, data))
+		{
+			System.out.println("Skipping " + fileName + ", which can't be read");
+			return results;
+		}
+
+		Trie trie = new Trie();
+		for (int i = 0; i < words.size(); i++)
+		{
+			trie.insert(words.get(i), data.get(i));
+		}
+
+		String[] prefixes = samplePrefixes(words, data, new Random(42));
+		String[] fullWords = sampleWords(words, data, new Random(43));
+
+		// each iteration of the insert benchmark builds a whole new trie
+		Trie[] building = {new Trie()};
+		results.add(measure("insert", name, words.size(), i -> {
+			if (i == 0)
+			{
+				building[0] = new Trie();
+			}
+			return building[0].insert(words.get(i), data.get(i)).getNumChildren();
+		}));
+
+		results.add(measure("getNode", name, prefixes.length, i -> {
+			TrieNode node = trie.getNode(prefixes[i]);
+			return (node == null) ? 0 : node.maxFrequency;
+		}));
+		// the same lookups through the CharSequence overloads, reusing one StringBuilder, which mustn't allocate at all (see ALLOCATION_FREE)
+		results.add(measure("getNode(CharSequence)", name, prefixes.length, i -> {
+			TrieNode node = trie.getNode(prefixes[i], 0, prefixes[i].length());
+			return (node == null) ? 0 : node.maxFrequency;
+		}));
+		StringBuilder answer = new StringBuilder();
+		results.add(measure("getMostFrequentWordWithPrefix(StringBuilder)", name, prefixes.length, i -> {
+			answer.setLength(0);
+			trie.getMostFrequentWordWithPrefix(prefixes[i], 0, prefixes[i].length(), answer);
+			return answer.length();
+		}));
+		results.add(measure("get", name, fullWords.length, i -> {
+			TrieNode node = trie.get(fullWords[i]);
+			return (node == null) ? 0 : 1;
+		}));
+		Result single = measure("getMostFrequentWordWithPrefix", name, prefixes.length,
+				i -> trie.getMostFrequentWordWithPrefix(prefixes[i]).length());
+		results.add(single);
+
+		// the same queries, answered a batch at a time; the time is still per prefix
+		List<List<String>> batches = new ArrayList<>();
+		for (int from = 0; from < prefixes.length; from += BATCH_SIZE)
+		{
+			batches.add(Arrays.asList(prefixes).subList(from, Math.min(from + BATCH_SIZE, prefixes.length)));
+		}
+		Result batched = measure("completeAll", name, batches.size(), BATCH_SIZE,
+				i -> trie.completeAll(batches.get(i)).size());
+		results.add(batched);
+		System.out.printf(Locale.ROOT, "completeAll answers %.2fx as many prefixes per second as a getMostFrequentWordWithPrefix loop%n",
+				single.nsPerOp() / batched.nsPerOp());
+
+		// the same queries through the cache, which is warmed up along with the benchmark
+		CachedTrie cached = new CachedTrie(trie, CACHED_PREFIXES);
+		results.add(measure("CachedTrie.getMostFrequentWordWithPrefix", name, prefixes.length,
+				i -> cached.getMostFrequentWordWithPrefix(prefixes[i]).length()));
+		System.out.printf(Locale.ROOT, "CachedTrie hit rate %.3f with %d prefixes cached%n", cached.getHitRate(), cached.size());
+
+		// listing every word below a one letter prefix is slow, so only use the longer prefixes
+		String[] longPrefixes = Arrays.stream(prefixes).filter(p -> p.length() >= 3).toArray(String[]::new);
+		results.add(measure("getAlphabeticalListWithPrefix", name, longPrefixes.length,
+				i -> trie.getAlphabeticalListWithPrefix(longPrefixes[i]).size()));
+
+		return results;
+	}
+
+	/**
+	 * Read the words and data from a dictionary, the same way as
+	 * {@link Trie#readInDictionary(String)} but keeping them in a list so
+	 * inserting can be timed on its own.
+	 *
+	 * @return false if the file can't be read
+	 */
+	static boolean readEntries(String fileName, List<String> words, List<TrieData> data)
+	{
+		try (Scanner scanner = new Scanner(Path.of(fileName)))
+		{
+			while (scanner.hasNextLine())
+			{
+				String[] splitLine = scanner.nextLine().split(" ");
+				try
+				{
+					int rank = Integer.parseInt(splitLine[0]);
+					int frequency = Integer.parseInt(splitLine[2]);
+					if (!splitLine[1].isEmpty())
+					{
+						words.add(splitLine[1]);
+						data.add(new TrieData(frequency, rank));
+					}
+				}
+				catch (NumberFormatException | ArrayIndexOutOfBoundsException ex)
+				{
+					// skip the odd malformed line rather than giving up on the whole file
+				}
+			}
+			return true;
+		}
+		catch (IOException ex)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Pick words at random, weighted by their frequency.
+	 */
+	static String[] sampleWords(List<String> words, List<TrieData> data, Random random)
+	{
+		long[] cumulative = new long[words.size()];
+		long total = 0;
+		for (int i = 0; i < words.size(); i++)
+		{
+			total += Math.max(data.get(i).getFrequency(), 1);
+			cumulative[i] = total;
+		}
+
+		String[] sample = new String[QUERIES];
+		for (int i = 0; i < QUERIES; i++)
+		{
+			long target = (long) (random.nextDouble() * total);
+			int index = Arrays.binarySearch(cumulative, target + 1);
+			sample[i] = words.get((index >= 0) ? index : -(index + 1));
+		}
+		return sample;
+	}
+
+	/**
+	 * Pick prefixes of words picked at random, weighted by their frequency,
+	 * with between 1 and all of the word's characters.
+	 */
+	static String[] samplePrefixes(List<String> words, List<TrieData> data, Random random)
+	{
+		String[] sample = sampleWords(words, data, random);
+		for (int i = 0; i < sample.length; i++)
+		{
+			sample[i] = sample[i].substring(0, 1 + random.nextInt(sample[i].length()));
+		}
+		return sample;
+	}
+
+	/**
+	 * Time an operation, running it once for each index from 0 to ops - 1 in
+	 * each iteration.
+	 */
+	static Result measure(String benchmark, String dictionary, int ops, Operation operation)
+	{
+		return measure(benchmark, dictionary, ops, 1, operation);
+	}
+
+	/**
+	 * Time an operation that does opSize pieces of work each time it is run,
+	 * such as answering a whole batch of queries, and report the cost of one
+	 * piece.
+	 */
+	static Result measure(String benchmark, String dictionary, int ops, int opSize, Operation operation)
+	{
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().threadId();
+
+		long warmupStart = System.nanoTime();
+		for (int iteration = 0; iteration < WARMUP_ITERATIONS || System.nanoTime() - warmupStart < MIN_WARMUP_NANOS; iteration++)
+		{
+			runAll(ops, operation);
+		}
+
+		double[] nsPerOp = new double[MEASURED_ITERATIONS];
+		long allocated = 0;
+		for (int iteration = 0; iteration < MEASURED_ITERATIONS; iteration++)
+		{
+			long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+			long start = System.nanoTime();
+			runAll(ops, operation);
+			long elapsed = System.nanoTime() - start;
+			allocated += threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+			nsPerOp[iteration] = (double) elapsed / ((long) ops * opSize);
+		}
+
+		double mean = Arrays.stream(nsPerOp).average().orElse(0);
+		double variance = Arrays.stream(nsPerOp).map(x -> (x - mean) * (x - mean)).sum() / (MEASURED_ITERATIONS - 1);
+		double error = T_99 * Math.sqrt(variance / MEASURED_ITERATIONS);
+
+		long totalOps = (long) ops * opSize * MEASURED_ITERATIONS;
+		Result result = new Result(benchmark, dictionary, mean, error, (double) allocated / totalOps, totalOps);
+		System.out.println(result);
+		return result;
+	}
+
+	private static void runAll(int ops, Operation operation)
+	{
+		int total = 0;
+		for (int i = 0; i < ops; i++)
+		{
+			total += operation.run(i);
+		}
+		sink += total;
+	}
+}
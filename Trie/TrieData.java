@@ -44,6 +44,18 @@ public class TrieData
 		return rank;
 	}
 
+	@Override
+	public boolean equals(Object other)
+	{
+		return (other instanceof TrieData data) && frequency == data.frequency && rank == data.rank;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * frequency + rank;
+	}
+
 	@Override
 	public String toString()
 	{
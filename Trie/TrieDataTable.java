@@ -0,0 +1,349 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * The data for every word in a trie, kept in one row per word instead of in
+ * a {@link TrieData} object per word. The frequencies and ranks are columns
+ * of plain ints, and each terminal {@link TrieNode} only keeps the number of
+ * its row (its ordinal).
+ * <p>
+ * A dictionary line can have more columns after the frequency, like
+ * "77 okay 63509 (see also ok)". Nothing is kept for them while the
+ * dictionary is loaded. Instead the table remembers which file its first rows
+ * came from, and the first time {@link #getMetadata(int)} is called it reads
+ * the file again and packs the extra columns of every line into one char
+ * array, with the start of each row's text kept in an int array.
+ * <p>
+ * A row is added every time a word is inserted, even if the word is already
+ * in the trie, so that the rows loaded from a file line up with its lines.
+ * Changing a frequency changes the row in place. Rows that are no longer
+ * used are only thrown away by {@link #compact(BitSet)}, which renumbers the
+ * rest but remembers which line each one came from.
+ * <p>
+ * Rows can be read from any number of threads once they have been added, but
+ * adding and changing rows must only be done by one thread at a time.
+ */
+public class TrieDataTable
+{
+	private int size = 0;
+	private int[] frequencies;
+	private int[] ranks;
+
+	// where the rows came from: row i is line i of the source, for the first sourceLines rows
+	private Path source = null;
+	private int sourceLines = 0;
+	// once the table has been compacted, the line of the source each row came from, or -1 for none
+	private int[] lines = null;
+
+	// the text after the frequency on each line of the source, read the first time it is asked for
+	private volatile Metadata metadata = null;
+
+	/**
+	 * The extra columns of every line of the source, one after the other.
+	 * The text for row i is text[starts[i]] up to text[starts[i + 1]].
+	 */
+	private record Metadata(char[] text, int[] starts)
+	{
+	}
+
+	public TrieDataTable()
+	{
+		this(16);
+	}
+
+	/**
+	 * Create a table with room for some rows before it has to grow.
+	 *
+	 * @param capacity The number of rows to make room for, at least 1
+	 */
+	public TrieDataTable(int capacity)
+	{
+		frequencies = new int[Math.max(capacity, 1)];
+		ranks = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Add a row for a word. The row doesn't come from the source file, so it has no metadata.
+	 *
+	 * @param frequency The frequency of the word
+	 * @param rank      The rank of the word, or -1 if it doesn't have one
+	 * @return The ordinal of the new row
+	 */
+	public int add(int frequency, int rank)
+	{
+		if (size == frequencies.length)
+		{
+			frequencies = Arrays.copyOf(frequencies, size * 2);
+			ranks = Arrays.copyOf(ranks, size * 2);
+		}
+		frequencies[size] = frequency;
+		ranks[size] = rank;
+		if (lines != null)
+		{
+			if (size == lines.length)
+			{
+				lines = Arrays.copyOf(lines, frequencies.length);
+			}
+			lines[size] = -1;
+		}
+		return size++;
+	}
+
+	/**
+	 * Add a row for each of the first count entries of two arrays.
+	 *
+	 * @return The ordinal of the first new row; the rest follow on from it
+	 */
+	int addAll(int[] newFrequencies, int[] newRanks, int count)
+	{
+		if (lines != null)
+		{
+			throw new IllegalStateException("Rows can't be added in bulk once the table has been compacted");
+		}
+
+		int first = size;
+		if (size + count > frequencies.length)
+		{
+			int capacity = Math.max(frequencies.length * 2, size + count);
+			frequencies = Arrays.copyOf(frequencies, capacity);
+			ranks = Arrays.copyOf(ranks, capacity);
+		}
+		System.arraycopy(newFrequencies, 0, frequencies, size, count);
+		System.arraycopy(newRanks, 0, ranks, size, count);
+		size += count;
+		return first;
+	}
+
+	/**
+	 * Get the number of rows.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public int getFrequency(int ordinal)
+	{
+		return frequencies[Objects.checkIndex(ordinal, size)];
+	}
+
+	public int getRank(int ordinal)
+	{
+		return ranks[Objects.checkIndex(ordinal, size)];
+	}
+
+	public void setFrequency(int ordinal, int frequency)
+	{
+		frequencies[Objects.checkIndex(ordinal, size)] = frequency;
+	}
+
+	/**
+	 * Get a row as a TrieData, which is a new copy every time.
+	 */
+	public TrieData getData(int ordinal)
+	{
+		return new TrieData(getFrequency(ordinal), getRank(ordinal));
+	}
+
+	/**
+	 * Record that every row so far was read, in order, from the lines of a
+	 * dictionary file, so their metadata can be read from it later.
+	 *
+	 * @param file The dictionary file, which mustn't change while the table is in use
+	 */
+	void setSource(Path file)
+	{
+		source = file;
+		sourceLines = size;
+		lines = null;
+		metadata = null;
+	}
+
+	/**
+	 * Throw away the rows that aren't used any more, and move the rest down to
+	 * fill the gaps, keeping them in the same order.
+	 *
+	 * @param live The ordinals of the rows that are still used
+	 * @return The new ordinal of each old row, or -1 for the rows that were thrown away
+	 */
+	int[] compact(BitSet live)
+	{
+		int[] moved = new int[size];
+		int[] newLines = new int[live.cardinality()];
+		int count = 0;
+		for (int row = 0; row < size; row++)
+		{
+			if (!live.get(row))
+			{
+				moved[row] = -1;
+				continue;
+			}
+			frequencies[count] = frequencies[row];
+			ranks[count] = ranks[row];
+			newLines[count] = lineOf(row);
+			moved[row] = count++;
+		}
+
+		size = count;
+		frequencies = Arrays.copyOf(frequencies, Math.max(count, 16));
+		ranks = Arrays.copyOf(ranks, frequencies.length);
+		lines = Arrays.copyOf(newLines, frequencies.length);
+		return moved;
+	}
+
+	/**
+	 * Add the estimated size of the table to some stats: the columns, and the
+	 * metadata if it has been read. See {@link TrieStats}.
+	 */
+	void addSizes(StructureStats stats)
+	{
+		stats.add("data table", 1, StructureStats.shallowSize(TrieDataTable.class)
+				+ StructureStats.arraySize(int.class, frequencies.length)
+				+ StructureStats.arraySize(int.class, ranks.length)
+				+ ((lines == null) ? 0 : StructureStats.arraySize(int.class, lines.length)));
+		stats.count("data table rows", size);
+
+		Metadata current = metadata;
+		if (current != null)
+		{
+			stats.add("metadata", 1, StructureStats.shallowSize(Metadata.class)
+					+ StructureStats.arraySize(char.class, current.text().length)
+					+ StructureStats.arraySize(int.class, current.starts().length));
+		}
+	}
+
+	/**
+	 * Get the line of the source a row came from, or -1 if it didn't come from the source.
+	 */
+	private int lineOf(int ordinal)
+	{
+		if (lines != null)
+		{
+			return lines[ordinal];
+		}
+		return (ordinal < sourceLines) ? ordinal : -1;
+	}
+
+	/**
+	 * Get the text after the frequency on the line a row was read from, such
+	 * as "(see also ok)". The whole source file is read the first time this is
+	 * called.
+	 *
+	 * @param ordinal The row
+	 * @return The rest of the line, or "" if there wasn't anything after the
+	 * frequency or the row wasn't read from a file
+	 * @throws UncheckedIOException  if the source file can't be read
+	 * @throws IllegalStateException if the source file has changed since it was loaded
+	 */
+	public String getMetadata(int ordinal)
+	{
+		int line = lineOf(Objects.checkIndex(ordinal, size));
+		if (line < 0)
+		{
+			return "";
+		}
+
+		Metadata loaded = metadata;
+		if (loaded == null)
+		{
+			synchronized (this)
+			{
+				loaded = metadata;
+				if (loaded == null)
+				{
+					loaded = readMetadata();
+					metadata = loaded;
+				}
+			}
+		}
+
+		int start = loaded.starts[line];
+		int end = loaded.starts[line + 1];
+		return (start == end) ? "" : new String(loaded.text, start, end - start);
+	}
+
+	/**
+	 * Read the source file again, keeping only the text after the frequency
+	 * on each line. Each line's rank is checked against its row, if it still
+	 * has one, so a file that has been changed since isn't silently matched up
+	 * with the wrong words.
+	 */
+	private Metadata readMetadata()
+	{
+		char[] text = new char[1024];
+		int length = 0;
+		int[] starts = new int[sourceLines + 1];
+
+		// the rank each line should have, or MIN_VALUE if its row has gone
+		int[] lineRanks = new int[sourceLines];
+		Arrays.fill(lineRanks, Integer.MIN_VALUE);
+		for (int row = 0; row < size; row++)
+		{
+			int line = lineOf(row);
+			if (line >= 0)
+			{
+				lineRanks[line] = ranks[row];
+			}
+		}
+
+		try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8))
+		{
+			for (int number = 0; number < sourceLines; number++)
+			{
+				String line = reader.readLine();
+				int rankEnd = (line == null) ? -1 : line.indexOf(' ');
+				if (rankEnd < 0 || (lineRanks[number] != Integer.MIN_VALUE && !sameRank(line.substring(0, rankEnd), lineRanks[number])))
+				{
+					throw new IllegalStateException(source + " has changed since it was loaded, at line " + (number + 1));
+				}
+
+				// skip the rank, word and frequency, just like line.split(" ")
+				int wordEnd = line.indexOf(' ', rankEnd + 1);
+				int frequencyEnd = (wordEnd < 0) ? -1 : line.indexOf(' ', wordEnd + 1);
+				starts[number] = length;
+				if (frequencyEnd >= 0)
+				{
+					String rest = line.substring(frequencyEnd + 1).strip();
+					if (length + rest.length() > text.length)
+					{
+						text = Arrays.copyOf(text, Math.max(text.length * 2, length + rest.length()));
+					}
+					rest.getChars(0, rest.length(), text, length);
+					length += rest.length();
+				}
+			}
+		}
+		catch (IOException ex)
+		{
+			throw new UncheckedIOException("Could not read the metadata from " + source, ex);
+		}
+
+		starts[sourceLines] = length;
+		return new Metadata(Arrays.copyOf(text, length), starts);
+	}
+
+	private static boolean sameRank(String field, int rank)
+	{
+		try
+		{
+			return Integer.parseInt(field) == rank;
+		}
+		catch (NumberFormatException ex)
+		{
+			return false;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "TrieDataTable; #rows=" + size + ", source=" + source;
+	}
+}
@@ -1,4 +1,41 @@
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -28,6 +65,60 @@ public class TrieDriver {
             case 5:
                 test5(in);
                 break;
+            case 6:
+                test6(in);
+                break;
+            case 7:
+                test7(in);
+                break;
+            case 8:
+                test8(in);
+                break;
+            case 9:
+                test9(in);
+                break;
+            case 10:
+                test10(in);
+                break;
+            case 11:
+                test11(in);
+                break;
+            case 12:
+                test12(in);
+                break;
+            case 13:
+                test13(in);
+                break;
+            case 14:
+                test14(in);
+                break;
+            case 15:
+                test15(in);
+                break;
+            case 16:
+                test16(in);
+                break;
+            case 17:
+                test17(in);
+                break;
+            case 18:
+                test18(in);
+                break;
+            case 19:
+                test19(in);
+                break;
+            case 20:
+                test20(in);
+                break;
+            case 21:
+                test21(in);
+                break;
+            case 22:
+                test22(in);
+                break;
+            case 23:
+                test23(in);
+                break;
         }
 
     }
@@ -212,4 +303,1986 @@ public class TrieDriver {
         }
     }
 
+    /**
+     * Check a FrozenTrie against the Trie it was frozen from. Expects a file
+     * name that is the dictionary, for example
+     *
+     * <code>6 Trie/data/word-freq.expanded.trim.txt</code>
+     *
+     * For every prefix of every word, and some prefixes that aren't in the
+     * dictionary, it checks that the frozen copy finds the same node with the
+     * same data and maxFrequency, and gives the same most frequent word and
+     * alphabetical list. Then it prints how long getMostFrequentWordWithPrefix
+     * takes over all the prefixes on each.
+     *
+     * @param in
+     */
+    public static void test6(Scanner in) {
+
+        String fileName = in.next();
+
+        Trie trie = Trie.readInDictionary(fileName);
+        FrozenTrie frozen = trie.freeze();
+        List<String> words = trie.getAlphabeticalListWithPrefix("");
+
+        Set<String> prefixes = new TreeSet<>();
+        prefixes.add("");
+        for (String word : words) {
+            for (int i = 1; i <= word.length(); i++) {
+                prefixes.add(word.substring(0, i));
+            }
+            prefixes.add(word + "qz");
+        }
+
+        List<String> failures = new ArrayList<>();
+        for (String prefix : prefixes) {
+            TrieNode node = trie.getNode(prefix);
+            int state = frozen.getNode(prefix);
+            if ((node == null) != (state < 0)) {
+                failures.add("found in only one: \"" + prefix + "\"");
+                continue;
+            }
+            if (node != null && (frozen.isTerminal(state) != node.isTerminal() || frozen.getFrequency(state) != node.getFrequency()
+                    || frozen.getRank(state) != node.getRank()
+                    || frozen.getMaxFrequency(state) != node.maxFrequency)) {
+                failures.add("data differs: \"" + prefix + "\"");
+            }
+            if (!frozen.getMostFrequentWordWithPrefix(prefix).equals(trie.getMostFrequentWordWithPrefix(prefix))
+                    || !frozen.getAlphabeticalListWithPrefix(prefix).equals(trie.getAlphabeticalListWithPrefix(prefix))) {
+                failures.add("answers differ: \"" + prefix + "\"");
+            }
+        }
+        System.out.println("Compared " + prefixes.size() + " prefixes, " + frozen.size() + " states for " + countNodes(trie.getNode("")) + " nodes");
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (String prefix : prefixes) {
+                trie.getMostFrequentWordWithPrefix(prefix);
+            }
+            long trieNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (String prefix : prefixes) {
+                frozen.getMostFrequentWordWithPrefix(prefix);
+            }
+            long frozenNanos = System.nanoTime() - start;
+            System.out.printf("getMostFrequentWordWithPrefix over every prefix: Trie %.1f ms, FrozenTrie %.1f ms%n",
+                    trieNanos / 1e6, frozenNanos / 1e6);
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Check getTopKWordsWithPrefix against sorting the words by hand. Expects a
+     * file name that is the dictionary, and the values of k to try, for example
+     *
+     * <code>7 Trie/data/word-freq.expanded.trim.txt 0 1 3 10 11 50</code>
+     *
+     * For every prefix of every word, and some prefixes that aren't in the
+     * dictionary, it sorts the words starting with the prefix by frequency and
+     * then alphabetically, and checks the first k against the trie's answer.
+     * It also prints how many nodes keep a list of most frequent words.
+     *
+     * @param in
+     */
+    public static void test7(Scanner in) {
+
+        String fileName = in.next();
+        List<Integer> ks = new ArrayList<>();
+        while (in.hasNextInt()) {
+            ks.add(in.nextInt());
+        }
+
+        Trie trie = Trie.readInDictionary(fileName);
+        List<String> words = trie.getAlphabeticalListWithPrefix("");
+
+        Set<String> prefixes = new TreeSet<>();
+        prefixes.add("");
+        for (String word : words) {
+            for (int i = 1; i <= word.length(); i++) {
+                prefixes.add(word.substring(0, i));
+            }
+            prefixes.add(word + "qz");
+        }
+
+        List<String> failures = new ArrayList<>();
+        for (String prefix : prefixes) {
+            // the words starting with the prefix are together in the sorted list
+            int from = Collections.binarySearch(words, prefix);
+            from = (from >= 0) ? from : -(from + 1);
+            int to = from;
+            while (to < words.size() && words.get(to).startsWith(prefix)) {
+                to++;
+            }
+            List<String> expected = new ArrayList<>(words.subList(from, to));
+            expected.sort(Comparator.comparing((String word) -> -trie.get(word).getFrequency())
+                    .thenComparing(Comparator.naturalOrder()));
+
+            for (int k : ks) {
+                List<String> actual = trie.getTopKWordsWithPrefix(prefix, k);
+                if (!actual.equals(expected.subList(0, Math.min(k, expected.size())))) {
+                    failures.add("top " + k + " of \"" + prefix + "\" gave " + actual);
+                }
+            }
+        }
+
+        int nodes = countNodes(trie.getNode(""));
+        int listed = countListed(trie.getNode(""));
+        System.out.println("Compared the top-K lists of " + prefixes.size() + " prefixes for k = " + ks);
+        System.out.printf("%d of %d nodes (%.1f%%) keep a list of most frequent words%n", listed, nodes, 100.0 * listed / nodes);
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Save a dictionary with Trie.save, map it back in with Trie.mapFrom, and
+     * check the mapped copy against the Trie. Expects a file name that is the
+     * dictionary, and how many corrupt copies of the saved file to try. For
+     * example
+     *
+     * <code>8 Trie/data/word-freq.expanded.trim.txt 20</code>
+     *
+     * Then it checks that corrupt copies of the file either fail to map with an
+     * IOException or can still be queried without throwing: one cut short, one
+     * with every state int set to -5, and the rest with random ints written
+     * over random state ints.
+     *
+     * @param in
+     */
+    public static void test8(Scanner in) {
+
+        String fileName = in.next();
+        int corruptCopies = in.nextInt();
+
+        Trie trie = Trie.readInDictionary(fileName);
+        List<String> words = trie.getAlphabeticalListWithPrefix("");
+
+        List<String> prefixes = new ArrayList<>();
+        prefixes.add("");
+        prefixes.add("qzx");
+        Random random = new Random(12);
+        for (int i = 0; i < 2000; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            prefixes.add(word.substring(0, 1 + random.nextInt(word.length())));
+        }
+
+        List<String> failures = new ArrayList<>();
+        Path saved;
+        byte[] bytes;
+        try {
+            saved = Files.createTempFile("trie", ".bin");
+            saved.toFile().deleteOnExit();
+            trie.save(saved);
+            bytes = Files.readAllBytes(saved);
+
+            FrozenTrie mapped = Trie.mapFrom(saved);
+            for (String prefix : prefixes) {
+                TrieNode node = trie.get(prefix);
+                int state = mapped.get(prefix);
+                if ((node == null) != (state < 0)
+                        || (node != null && (mapped.getFrequency(state) != node.getFrequency() || mapped.getRank(state) != node.getRank()))
+                        || !mapped.getMostFrequentWordWithPrefix(prefix).equals(trie.getMostFrequentWordWithPrefix(prefix))
+                        || !mapped.getAlphabeticalListWithPrefix(prefix).equals(trie.getAlphabeticalListWithPrefix(prefix))) {
+                    failures.add("mapped copy differs: \"" + prefix + "\"");
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("Couldn't save and map the dictionary: " + ex.getMessage());
+            return;
+        }
+        System.out.println("Saved " + bytes.length + " bytes, and the mapped copy was checked on " + prefixes.size() + " prefixes");
+
+        // the states start after the magic, version, alphabet length, alphabet and number of states
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int statesStart = 4 * (4 + header.getInt(8));
+        int stateInts = (bytes.length - statesStart) / 4;
+
+        int refused = 0;
+        int queried = 0;
+        for (int copy = -1; copy < corruptCopies; copy++) {
+            byte[] corrupt;
+            if (copy == -1) {
+                corrupt = Arrays.copyOf(bytes, bytes.length - 6);
+            } else {
+                corrupt = bytes.clone();
+                ByteBuffer states = ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN);
+                if (copy == 0) {
+                    for (int i = 0; i < stateInts; i++) {
+                        states.putInt(statesStart + 4 * i, -5);
+                    }
+                } else {
+                    for (int i = 0; i < 50; i++) {
+                        int value = random.nextBoolean() ? random.nextInt() : random.nextInt(40) - 20;
+                        states.putInt(statesStart + 4 * random.nextInt(stateInts), value);
+                    }
+                }
+            }
+
+            try {
+                Files.write(saved, corrupt);
+                FrozenTrie mapped = Trie.mapFrom(saved);
+                for (String prefix : prefixes) {
+                    mapped.get(prefix);
+                    mapped.getMostFrequentWordWithPrefix(prefix);
+                    mapped.getAlphabeticalListWithPrefix(prefix);
+                }
+                queried++;
+            } catch (IOException ex) {
+                refused++;
+            } catch (RuntimeException ex) {
+                failures.add("corrupt copy " + copy + " threw " + ex);
+            }
+        }
+        System.out.println((corruptCopies + 1) + " corrupt copies: " + refused + " refused with an IOException, "
+                + queried + " queried without throwing");
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Check readInDictionaryParallel against readInDictionary. Expects a file
+     * name that is the dictionary, for example
+     *
+     * <code>9 Trie/data/word-freq.expanded.trim.txt</code>
+     *
+     * It reads the dictionary both ways and checks that the two tries have the
+     * same nodes, data, maxFrequency and lists of most frequent words, the same
+     * words with the same metadata, and the same top-K lists for every prefix
+     * of every word for a few values of k, including ones bigger than the lists
+     * kept on the nodes.
+     *
+     * @param in
+     */
+    public static void test9(Scanner in) {
+
+        String fileName = in.next();
+
+        Trie single = Trie.readInDictionary(fileName);
+        Trie parallel = Trie.readInDictionaryParallel(fileName);
+        if (single == null || parallel == null) {
+            return;
+        }
+
+        List<String> failures = new ArrayList<>();
+        checkSameTrie(single.getNode(""), parallel.getNode(""), "", failures);
+
+        List<String> words = single.getAlphabeticalListWithPrefix("");
+        if (!parallel.getAlphabeticalListWithPrefix("").equals(words)) {
+            failures.add("the words differ");
+        }
+        for (String word : words) {
+            TrieNode node = parallel.get(word);
+            if (node == null || !node.getMetadata().equals(single.get(word).getMetadata())) {
+                failures.add("metadata differs: " + word);
+            }
+        }
+
+        Set<String> prefixes = new TreeSet<>();
+        prefixes.add("");
+        for (String word : words) {
+            for (int i = 1; i <= word.length(); i++) {
+                prefixes.add(word.substring(0, i));
+            }
+        }
+        int[] ks = {1, 5, TrieNode.TOP_K_CAPACITY, TrieNode.TOP_K_CAPACITY + 5};
+        for (String prefix : prefixes) {
+            for (int k : ks) {
+                if (!parallel.getTopKWordsWithPrefix(prefix, k).equals(single.getTopKWordsWithPrefix(prefix, k))) {
+                    failures.add("top " + k + " differs: \"" + prefix + "\"");
+                }
+            }
+        }
+
+        System.out.println("Compared " + words.size() + " words and the top-K lists of " + prefixes.size() + " prefixes");
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Stress test the ConcurrentTrie. Expects a file name that is the
+     * dictionary, the number of writer threads and the number of reader
+     * threads. For example
+     *
+     * <code>10 Trie/data/word-freq.expanded.trim.txt 4 4</code>
+     *
+     * First it checks on its own that inserting a word again with a lower
+     * frequency lowers maxFrequency. Then the writers insert the dictionary's
+     * words between them while the readers search the trie, and then every
+     * writer inserts the 100 most frequent words again a few times, with
+     * lower frequencies than before, all racing on the same words. The
+     * readers check that every word a writer has finished inserting can be
+     * found, and that the most frequent word for a prefix is a real word
+     * starting with that prefix. At the end every raced word must have one of
+     * the frequencies it was given, and the whole trie is checked against a
+     * single-threaded Trie with the same frequencies, with every maxFrequency
+     * checked to be exactly right.
+     *
+     * @param in
+     */
+    public static void test10(Scanner in) {
+
+        String fileName = in.next();
+        int numWriters = in.nextInt();
+        int numReaders = in.nextInt();
+
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+
+        // "a" was the most frequent word below "a", until it was inserted again with a lower frequency
+        ConcurrentTrie small = new ConcurrentTrie();
+        small.insert("a", new TrieData(100, 1));
+        small.insert("ab", new TrieData(50, 2));
+        small.insert("a", new TrieData(10, 1));
+        if (!small.getMostFrequentWordWithPrefix("a").equals("ab") || !small.getMostFrequentWordWithPrefix("").equals("ab")
+                || small.getNode("").getMaxFrequency() != 50 || small.getNode("a").getMaxFrequency() != 50) {
+            failures.add("lowering the frequency of \"a\" left maxFrequency at " + small.getNode("a").getMaxFrequency());
+        }
+
+        System.out.print("Reading in trie...");
+        Trie dt = Trie.readInDictionary(fileName);
+        System.out.println("done");
+
+        // each word is inserted once, with the data it ended up with in the single-threaded trie
+        List<String> words = dt.getAlphabeticalListWithPrefix("");
+        ConcurrentTrie ct = new ConcurrentTrie();
+
+        // then the most frequent words are inserted again by every writer, each time less frequent than before
+        List<String> raced = dt.getTopKWordsWithPrefix("", 100);
+        int rounds = 5;
+
+        // how far through its share of the words each writer has got
+        AtomicIntegerArray progress = new AtomicIntegerArray(numWriters);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < numWriters; w++) {
+            int writer = w;
+            writers.add(new Thread(() -> {
+                int done = 0;
+                for (int i = writer; i < words.size(); i += numWriters) {
+                    ct.insert(words.get(i), dt.get(words.get(i)).getData());
+                    progress.set(writer, ++done);
+                }
+                for (int round = 0; round < rounds; round++) {
+                    for (String word : raced) {
+                        ct.insert(word, racedData(dt.get(word), round, writer, numWriters));
+                    }
+                }
+            }));
+        }
+
+        List<Thread> readers = new ArrayList<>();
+        long[] queries = new long[numReaders];
+        for (int r = 0; r < numReaders; r++) {
+            int reader = r;
+            readers.add(new Thread(() -> {
+                Random random = new Random(reader);
+                while (writing.get()) {
+                    // pick a word that has definitely been inserted, and check it can be found
+                    int writer = random.nextInt(numWriters);
+                    int done = progress.get(writer);
+                    if (done > 0) {
+                        String word = words.get(writer + random.nextInt(done) * numWriters);
+                        if (ct.get(word) == null) {
+                            failures.add("inserted word not found: " + word);
+                        }
+
+                        String prefix = word.substring(0, random.nextInt(word.length() + 1));
+                        String best = ct.getMostFrequentWordWithPrefix(prefix);
+                        if (!best.startsWith(prefix) || ct.get(best) == null) {
+                            failures.add("most frequent word for " + prefix + " is not a word: " + best);
+                        }
+                    }
+                    queries[reader]++;
+                }
+            }));
+        }
+
+        long startTime = System.nanoTime();
+        readers.forEach(Thread::start);
+        writers.forEach(Thread::start);
+        try {
+            for (Thread t : writers) {
+                t.join();
+            }
+            writing.set(false);
+            for (Thread t : readers) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long totalQueries = 0;
+        for (long q : queries) {
+            totalQueries += q;
+        }
+        System.out.println("Inserted " + words.size() + " words and " + raced.size() + " words " + (rounds * numWriters)
+                + " more times with " + numWriters + " writers and ran " + totalQueries + " queries with " + numReaders
+                + " readers in " + ((System.nanoTime() - startTime) / 1000000.0) + " ms.");
+
+        // every raced word ends up with one of the frequencies a writer gave it, which the expected trie is given too
+        Trie expected = Trie.readInDictionary(fileName);
+        for (String word : raced) {
+            TrieData data = ct.get(word).getData();
+            boolean given = false;
+            for (int round = 0; round < rounds; round++) {
+                for (int writer = 0; writer < numWriters; writer++) {
+                    given |= data.equals(racedData(dt.get(word), round, writer, numWriters));
+                }
+            }
+            if (!given) {
+                failures.add("raced word has data no writer gave it: " + word + " " + data);
+            }
+            expected.setFrequency(word, data.getFrequency());
+        }
+
+        // the finished trie should have the same words as the single-threaded one, with exact maxFrequency values
+        checkSameTrie(expected.getNode(""), ct.getNode(""), "", failures);
+        if (!ct.getMostFrequentWordWithPrefix("").equals(expected.getMostFrequentWordWithPrefix(""))) {
+            failures.add("the most frequent word is " + ct.getMostFrequentWordWithPrefix("") + " instead of "
+                    + expected.getMostFrequentWordWithPrefix(""));
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().distinct().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Check that setFrequency and incrementFrequency keep maxFrequency and the
+     * lists of most frequent words right. Expects a file name that is the
+     * dictionary, and the number of changes to make, for example
+     *
+     * <code>11 Trie/data/word-freq.expanded.trim.txt 20000</code>
+     *
+     * It raises and lowers the frequencies of random words, half the time
+     * picking from the most frequent words so the top-K lists change too, and
+     * every so often checks the trie against one built from scratch with the
+     * frequencies so far. It also checks that words that aren't in the trie,
+     * and increments that would overflow, are refused.
+     *
+     * @param in
+     */
+    public static void test11(Scanner in) {
+
+        String fileName = in.next();
+        int changes = in.nextInt();
+
+        Trie dt = Trie.readInDictionary(fileName);
+        List<String> words = dt.getAlphabeticalListWithPrefix("");
+        int[] frequencies = new int[words.size()];
+        int[] ranks = new int[words.size()];
+        for (int i = 0; i < words.size(); i++) {
+            frequencies[i] = dt.get(words.get(i)).getFrequency();
+            ranks[i] = dt.get(words.get(i)).getRank();
+        }
+        Integer[] byFrequency = new Integer[words.size()];
+        for (int i = 0; i < byFrequency.length; i++) {
+            byFrequency[i] = i;
+        }
+        Arrays.sort(byFrequency, Comparator.comparingInt((Integer i) -> -frequencies[i]));
+
+        List<String> failures = new ArrayList<>();
+        Random random = new Random(16);
+        int raised = 0;
+        int lowered = 0;
+        int checks = 0;
+        long nanos = 0;
+        for (int change = 1; change <= changes; change++) {
+            int i = random.nextBoolean() ? byFrequency[random.nextInt(Math.min(200, words.size()))] : random.nextInt(words.size());
+            int old = frequencies[i];
+            TrieNode node;
+            long start = System.nanoTime();
+            if (random.nextBoolean()) {
+                frequencies[i] = random.nextInt(2 * old + 2);
+                node = dt.setFrequency(words.get(i), frequencies[i]);
+            } else {
+                int delta = random.nextInt(old + 1) - old / 2;
+                frequencies[i] = old + delta;
+                node = dt.incrementFrequency(words.get(i), delta);
+            }
+            nanos += System.nanoTime() - start;
+            if (frequencies[i] > old) {
+                raised++;
+            } else if (frequencies[i] < old) {
+                lowered++;
+            }
+
+            if (node == null || node.getFrequency() != frequencies[i] || node.getRank() != ranks[i]) {
+                failures.add("change " + change + ": " + words.get(i) + " didn't get frequency " + frequencies[i]);
+            }
+
+            if (change % Math.max(1, changes / 5) == 0 || change == changes) {
+                Trie expected = new Trie();
+                for (int w = 0; w < words.size(); w++) {
+                    expected.insert(words.get(w), frequencies[w], ranks[w]);
+                }
+                checkSameTrie(expected.getNode(""), dt.getNode(""), "", failures);
+                checks++;
+            }
+        }
+
+        if (dt.setFrequency("qzxqzx", 5) != null || dt.incrementFrequency("qzxqzx", 5) != null || dt.get("qzxqzx") != null) {
+            failures.add("a word that isn't in the trie wasn't refused");
+        }
+
+        // a change that would overflow is refused, rather than storing a negative frequency
+        String word = words.get(0);
+        int before = dt.get(word).getFrequency();
+        try {
+            dt.incrementFrequency(word, Integer.MAX_VALUE);
+            failures.add("an increment that overflows wasn't refused");
+        } catch (ArithmeticException ex) {
+            if (dt.get(word).getFrequency() != before) {
+                failures.add("an increment that overflows changed the frequency of " + word);
+            }
+        }
+
+        System.out.printf("%d changes (%d raised, %d lowered) took %.2f us each on average, checked against a new trie %d times%n",
+                changes, raised, lowered, nanos / 1e3 / Math.max(1, changes), checks);
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().distinct().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Check getMostFrequentWordsWithinDistance against a plain search of every
+     * word. Expects a file name that is the dictionary, the most edits allowed,
+     * and some prefixes, which can be mistyped. For example
+     *
+     * <code>12 Trie/data/word-freq.expanded.trim.txt 1 thw hapy qzx a</code>
+     *
+     * For each prefix it prints the best 5 words and whether every k from 0 to
+     * 20 gives the same words as the plain search. It also checks that a
+     * negative k is refused.
+     *
+     * @param in
+     */
+    public static void test12(Scanner in) {
+
+        String fileName = in.next();
+        int maxEdits = in.nextInt();
+
+        Trie trie = Trie.readInDictionary(fileName);
+        List<String> words = trie.getAlphabeticalListWithPrefix("");
+
+        while (in.hasNext()) {
+            String prefix = in.next();
+
+            // every word that starts close enough to the prefix, most frequent first
+            List<String> expected = new ArrayList<>();
+            for (String word : words) {
+                if (prefixDistance(prefix, word) <= maxEdits) {
+                    expected.add(word);
+                }
+            }
+            expected.sort(Comparator.comparing((String word) -> -trie.get(word).getFrequency())
+                    .thenComparing(Comparator.naturalOrder()));
+
+            boolean same = true;
+            for (int k = 0; k <= 20; k++) {
+                List<String> actual = trie.getMostFrequentWordsWithinDistance(prefix, maxEdits, k);
+                if (!actual.equals(expected.subList(0, Math.min(k, expected.size())))) {
+                    System.out.println("k = " + k + " gave " + actual);
+                    same = false;
+                }
+            }
+
+            System.out.println(prefix + ": " + trie.getMostFrequentWordsWithinDistance(prefix, maxEdits, 5)
+                    + (same ? " (same as a plain search for every k)" : " (different from a plain search)"));
+        }
+
+        try {
+            trie.getMostFrequentWordsWithinDistance("a", maxEdits, -1);
+            System.out.println("A negative k wasn't refused");
+        } catch (IllegalArgumentException ex) {
+            System.out.println("A negative k was refused: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Compare a Trie with the minimal DAWG built from it. Expects a file name
+     * that is the dictionary and then some words to look up in both. For example
+     *
+     * <code>13 Trie/data/word-freq.expanded.trim.txt the running happiness zzz</code>
+     *
+     * Prints the number of nodes in each, and how much heap each one takes
+     * (measured as the heap in use after a garbage collection, so it is only
+     * approximate), then the frequency of each word according to both.
+     *
+     * @param in
+     */
+    public static void test13(Scanner in) {
+
+        String fileName = in.next();
+
+        long beforeTrie = usedHeap();
+        Trie dt = Trie.readInDictionary(fileName);
+        long trieBytes = usedHeap() - beforeTrie;
+
+        long beforeDawg = usedHeap();
+        Dawg dawg = Dawg.fromTrie(dt);
+        long dawgBytes = usedHeap() - beforeDawg;
+
+        int trieNodes = countNodes(dt.getNode(""));
+        System.out.println("Trie: " + trieNodes + " nodes, about " + trieBytes / 1024 + " KB");
+        System.out.println("DAWG: " + dawg.getNodeCount() + " nodes, about " + dawgBytes / 1024 + " KB");
+        System.out.printf("The DAWG has %.1f%% of the nodes and %.1f%% of the heap of the Trie%n",
+                100.0 * dawg.getNodeCount() / trieNodes, 100.0 * dawgBytes / trieBytes);
+
+        String[] ss2 = in.nextLine().trim().split(" ");
+        for (String s : ss2) {
+            TrieNode node = dt.get(s);
+            System.out.println(s + ": trie=" + ((node == null) ? "null" : node.getData()) + ", dawg=" + dawg.getFrequency(s)
+                    + " (ordinal " + dawg.getOrdinal(s) + ")");
+        }
+    }
+
+    /**
+     * Replay typing into a text area with a TextAreaCompleter, without showing
+     * a window, and check what ends up in it. Expects a file name that is the
+     * dictionary, the debounce and the pause between keystrokes in
+     * milliseconds, and then the text to type. For example
+     *
+     * <code>14 Trie/data/word-freq.expanded.trim.txt 30 5 the quick brown fox jumps over the lazy dog and qu</code>
+     *
+     * The text is typed three times: once looking up completions right on the
+     * event dispatch thread, the way TextAreaDemo used to, once looking them
+     * up on virtual threads after the debounce, and once on virtual threads
+     * with no debounce or pause, so lookups keep finishing after the next
+     * keystroke. Every time, every completion that goes into the text has to
+     * be the one for the word typed so far, the text has to end up as the
+     * typed text with the last word's completion selected after it, and in
+     * the background no lookup may run on the event dispatch thread. It also
+     * prints how long each keystroke blocks the event dispatch thread.
+     *
+     * @param in
+     */
+    public static void test14(Scanner in) {
+
+        String fileName = in.next();
+        long debounceMillis = in.nextLong();
+        long pauseMillis = in.nextLong();
+        String text = in.nextLine().trim();
+
+        Trie dt = Trie.readInDictionary(fileName);
+        List<String> failures = new ArrayList<>();
+
+        try (ExecutorService background = Executors.newVirtualThreadPerTaskExecutor()) {
+            // the first time through loads and compiles everything, so only the second time is printed
+            for (boolean print : new boolean[]{false, true}) {
+                replayTyping("On the event dispatch thread", dt, Runnable::run, false, 0, pauseMillis, text, print, failures);
+                replayTyping("In the background", dt, background, true, debounceMillis, pauseMillis, text, print, failures);
+                replayTyping("In the background, without a debounce or a pause", dt, background, true, 0, 0, text, print, failures);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (InvocationTargetException e) {
+            e.getCause().printStackTrace();
+            return;
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().distinct().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Check that a CachedTrie never gives a stale answer, and that it counts
+     * its hits and misses right. Expects a file name that is the dictionary,
+     * the most prefixes to cache, and the number of steps, for example
+     *
+     * <code>15 Trie/data/word-freq.expanded.trim.txt 100 20000</code>
+     *
+     * Each step either asks the cache about one of a few hundred common
+     * prefixes, or changes a word that is among the most frequent for one of
+     * them (inserting, removing, or raising or lowering its frequency) through
+     * the cache. Every change is made to a Trie without a cache too, and every
+     * answer is checked against it. A query asked again straight away must be
+     * a hit, and the first query for a prefix of a word just changed must be a
+     * miss.
+     *
+     * @param in
+     */
+    public static void test15(Scanner in) {
+
+        String fileName = in.next();
+        int maxPrefixes = in.nextInt();
+        int steps = in.nextInt();
+
+        Trie plain = Trie.readInDictionary(fileName);
+        CachedTrie cached = new CachedTrie(Trie.readInDictionary(fileName), maxPrefixes);
+        List<String> words = plain.getAlphabeticalListWithPrefix("");
+
+        List<String> hot = new ArrayList<>();
+        Random random = new Random(17);
+        hot.add("");
+        for (int i = 0; i < 300; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            hot.add(word.substring(0, Math.min(word.length(), 1 + random.nextInt(3))));
+        }
+
+        List<String> failures = new ArrayList<>();
+        int queries = 0;
+        int[] changes = new int[4];
+        for (int step = 0; step < steps; step++) {
+            String prefix = hot.get(random.nextInt(hot.size()));
+
+            if (random.nextInt(5) > 0) {
+                int k = random.nextInt(TrieNode.TOP_K_CAPACITY + 6);
+                for (int repeat = 0; repeat < 2; repeat++) {
+                    long hits = cached.getHits();
+                    boolean same = (k == 0)
+                            ? cached.getMostFrequentWordWithPrefix(prefix).equals(plain.getMostFrequentWordWithPrefix(prefix))
+                            : cached.getTopKWordsWithPrefix(prefix, k).equals(plain.getTopKWordsWithPrefix(prefix, k));
+                    queries++;
+                    if (!same) {
+                        failures.add("step " + step + ": stale answer for \"" + prefix + "\", k = " + k);
+                    }
+                    if (repeat == 1 && cached.getHits() != hits + 1) {
+                        failures.add("step " + step + ": asking again for \"" + prefix + "\" wasn't a hit");
+                    }
+                }
+                continue;
+            }
+
+            // change a word that is in the answers for the prefix, or add one that will be
+            List<String> top = plain.getTopKWordsWithPrefix(prefix, TrieNode.TOP_K_CAPACITY);
+            String word = top.isEmpty() ? prefix + "qz" : top.get(random.nextInt(top.size()));
+            TrieNode node = plain.get(word);
+            int frequency = (node == null) ? 1 : node.getFrequency();
+            int change = (node == null) ? 0 : random.nextInt(4);
+            switch (change) {
+                case 0:
+                    word = prefix + (char) ('a' + random.nextInt(26)) + (char) ('a' + random.nextInt(26));
+                    frequency = random.nextInt(2 * frequency + 2);
+                    plain.insert(word, new TrieData(frequency, 1));
+                    cached.insert(word, new TrieData(frequency, 1));
+                    break;
+                case 1:
+                    if (plain.remove(word) != cached.remove(word)) {
+                        failures.add("step " + step + ": removing " + word + " gave a different result");
+                    }
+                    break;
+                case 2:
+                    frequency = random.nextInt(2 * frequency + 2);
+                    plain.setFrequency(word, frequency);
+                    cached.setFrequency(word, frequency);
+                    break;
+                default:
+                    int delta = random.nextInt(frequency + 1) - frequency / 2;
+                    plain.incrementFrequency(word, delta);
+                    cached.incrementFrequency(word, delta);
+                    break;
+            }
+            changes[change]++;
+
+            // the cached answers for the prefix have been dropped, so the next query has to go to the trie
+            long misses = cached.getMisses();
+            if (!cached.getMostFrequentWordWithPrefix(prefix).equals(plain.getMostFrequentWordWithPrefix(prefix))) {
+                failures.add("step " + step + ": stale answer for \"" + prefix + "\" after changing " + word);
+            }
+            queries++;
+            if (cached.getMisses() != misses + 1) {
+                failures.add("step " + step + ": the first query for \"" + prefix + "\" after changing " + word + " wasn't a miss");
+            }
+        }
+
+        if (cached.getHits() + cached.getMisses() != queries) {
+            failures.add(queries + " queries, but " + cached.getHits() + " hits and " + cached.getMisses() + " misses");
+        }
+        if (cached.size() > maxPrefixes) {
+            failures.add("the cache holds " + cached.size() + " prefixes, more than " + maxPrefixes);
+        }
+
+        System.out.printf("%d queries and %d changes (%d inserted, %d removed, %d set, %d incremented): hit rate %.3f, %d evictions%n",
+                queries, changes[0] + changes[1] + changes[2] + changes[3], changes[0], changes[1], changes[2], changes[3],
+                cached.getHitRate(), cached.getEvictions());
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().distinct().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Churn a Trie by removing and inserting words, and check that it always
+     * ends up the same as a Trie built from scratch with the same words.
+     * Expects a file name that is the dictionary and the number of cycles.
+     * For example
+     *
+     * <code>16 Trie/data/word-freq.expanded.trim.txt 5</code>
+     *
+     * Each cycle removes a random half of the words, checks that the trie
+     * matches one built from only the other half (nodes, data, maxFrequency
+     * and the lists of most frequent words), then puts the words back and
+     * checks it against the whole dictionary again. At the end it prints how
+     * many array slots and data table rows the churned trie has before and
+     * after compact(), next to a trie built from scratch, and checks that
+     * compacting left it no bigger than the one built from scratch.
+     *
+     * @param in
+     */
+    public static void test16(Scanner in) {
+
+        String fileName = in.next();
+        int cycles = in.nextInt();
+
+        Trie fresh = Trie.readInDictionary(fileName);
+        List<String> words = fresh.getAlphabeticalListWithPrefix("");
+        List<TrieData> data = new ArrayList<>();
+        for (String word : words) {
+            data.add(fresh.get(word).getData());
+        }
+
+        Trie dt = build(words, data, words.size());
+        List<String> failures = new ArrayList<>();
+        Random random = new Random(9);
+
+        Integer[] order = new Integer[words.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            Collections.shuffle(Arrays.asList(order), random);
+            int half = order.length / 2;
+
+            for (int i = 0; i < half; i++) {
+                String word = words.get(order[i]);
+                if (!dt.remove(word) || dt.remove(word) || dt.get(word) != null) {
+                    failures.add("cycle " + cycle + ": removing " + word + " didn't work");
+                }
+            }
+
+            // the words that are left, in the order they will be inserted into the expected trie
+            List<String> kept = new ArrayList<>();
+            List<TrieData> keptData = new ArrayList<>();
+            for (int i = half; i < order.length; i++) {
+                kept.add(words.get(order[i]));
+                keptData.add(data.get(order[i]));
+            }
+            checkSameTrie(build(kept, keptData, kept.size()).getNode(""), dt.getNode(""), "", failures);
+
+            for (int i = 0; i < half; i++) {
+                dt.insert(words.get(order[i]), data.get(order[i]));
+            }
+            checkSameTrie(build(words, data, words.size()).getNode(""), dt.getNode(""), "", failures);
+        }
+
+        long churnedSlots = countSlots(dt.getNode(""));
+        int churnedRows = dt.getDataTable().size();
+        dt.compact();
+        long compactedSlots = countSlots(dt.getNode(""));
+        int compactedRows = dt.getDataTable().size();
+
+        Trie rebuilt = build(words, data, words.size());
+        checkSameTrie(rebuilt.getNode(""), dt.getNode(""), "", failures);
+        long rebuiltSlots = countSlots(rebuilt.getNode(""));
+        if (compactedSlots > rebuiltSlots || compactedRows > words.size()) {
+            failures.add("the compacted trie is bigger than one built from scratch");
+        }
+
+        System.out.println("After " + cycles + " cycles of removing and inserting half of " + words.size() + " words:");
+        System.out.println("churned trie: " + churnedSlots + " array slots, " + churnedRows + " data rows");
+        System.out.println("compacted: " + compactedSlots + " array slots, " + compactedRows + " data rows");
+        System.out.println("built from scratch: " + rebuiltSlots + " array slots, " + rebuilt.getDataTable().size() + " data rows");
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().distinct().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Hot reload a VersionedTrie while readers are using it. Expects a file
+     * name that is the dictionary, the number of reader threads and the
+     * number of reloads. For example
+     *
+     * <code>17 Trie/data/word-freq.expanded.trim.txt 4 20</code>
+     *
+     * The trie is switched back and forth between the dictionary and a changed
+     * copy of it (every tenth word more frequent, every fiftieth word gone).
+     * Each reader keeps taking a snapshot and checking that a batch of
+     * completions from it all match the answers a Trie gives for whichever of
+     * the two dictionaries the snapshot holds. At the end it prints how long
+     * the reloads took, how many nodes each reload shared with the version
+     * before, and how long the queries took.
+     *
+     * @param in
+     */
+    public static void test17(Scanner in) {
+
+        String fileName = in.next();
+        int numReaders = in.nextInt();
+        int reloads = in.nextInt();
+
+        Trie original = Trie.readInDictionary(fileName);
+        List<String> words = original.getAlphabeticalListWithPrefix("");
+
+        // the two dictionaries, and a Trie for each to check the answers against
+        PersistentTrie.Batch[] contents = {new PersistentTrie.Batch(), new PersistentTrie.Batch()};
+        Trie changed = new Trie();
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            TrieNode node = original.get(word);
+            contents[0].put(word, node.getFrequency(), node.getRank());
+            if (i % 50 != 0) {
+                int frequency = (i % 10 == 0) ? node.getFrequency() * 3 + 1 : node.getFrequency();
+                contents[1].put(word, frequency, node.getRank());
+                changed.insert(word, frequency, node.getRank());
+            }
+        }
+        Trie[] expectedTries = {original, changed};
+
+        List<String> prefixes = new ArrayList<>();
+        prefixes.add("");
+        Random random = new Random(10);
+        for (int i = 0; i < 2000; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            prefixes.add(word.substring(0, 1 + random.nextInt(word.length())));
+        }
+        String[][] expected = new String[2][prefixes.size()];
+        for (int c = 0; c < 2; c++) {
+            for (int i = 0; i < prefixes.size(); i++) {
+                expected[c][i] = expectedTries[c].getMostFrequentWordWithPrefix(prefixes.get(i));
+            }
+        }
+
+        // version 1 holds the dictionary, version 2 the changed copy, and so on
+        VersionedTrie vt = new VersionedTrie();
+        vt.replaceWith(contents[0]);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        LatencyHistogram latency = new LatencyHistogram();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < numReaders; r++) {
+            int reader = r;
+            readers.add(new Thread(() -> {
+                Random readerRandom = new Random(reader);
+                while (running.get()) {
+                    PersistentTrie snapshot = vt.snapshot();
+                    String[] answers = expected[(int) ((snapshot.getVersion() + 1) % 2)];
+                    for (int q = 0; q < 20; q++) {
+                        int i = readerRandom.nextInt(prefixes.size());
+                        long start = System.nanoTime();
+                        String answer = snapshot.getMostFrequentWordWithPrefix(prefixes.get(i));
+                        latency.record(System.nanoTime() - start);
+                        if (!answer.equals(answers[i])) {
+                            failures.add("version " + snapshot.getVersion() + ": " + prefixes.get(i) + " gave " + answer
+                                    + " instead of " + answers[i]);
+                        }
+                    }
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+
+        long reloadNanos = 0;
+        long sharedNodes = 0;
+        long newNodes = 0;
+        try {
+            for (int i = 0; i < reloads; i++) {
+                PersistentTrie before = vt.snapshot();
+                long start = System.nanoTime();
+                PersistentTrie after = vt.replaceWith(contents[(i + 1) % 2]);
+                reloadNanos += System.nanoTime() - start;
+
+                Set<PersistentTrieNode> old = Collections.newSetFromMap(new IdentityHashMap<>());
+                addNodes(before.getRoot(), old);
+                Set<PersistentTrieNode> now = Collections.newSetFromMap(new IdentityHashMap<>());
+                addNodes(after.getRoot(), now);
+                for (PersistentTrieNode node : now) {
+                    if (old.contains(node)) {
+                        sharedNodes++;
+                    } else {
+                        newNodes++;
+                    }
+                }
+                Thread.sleep(20);
+            }
+            running.set(false);
+            for (Thread t : readers) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        System.out.printf("%d reloads took %.1f ms each on average, and shared %.1f%% of their nodes with the version before%n",
+                reloads, reloadNanos / 1e6 / reloads, 100.0 * sharedNodes / (sharedNodes + newNodes));
+        System.out.printf("%d readers ran %d queries: p50 %.1f us, p99.9 %.1f us, max %.1f us%n", numReaders, latency.getCount(),
+                latency.getPercentile(0.5) / 1e3, latency.getPercentile(0.999) / 1e3, latency.getMax() / 1e3);
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().distinct().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Check iteratorWithPrefix and streamWithPrefix against the words read
+     * straight from the dictionary file. Expects a file name that is the
+     * dictionary, for example
+     *
+     * <code>18 Trie/data/word-freq.expanded.trim.txt</code>
+     *
+     * For every prefix of every word, and some prefixes that aren't in the
+     * trie, it checks that the iterator, the stream and
+     * getAlphabeticalListWithPrefix all give the words that start with the
+     * prefix in alphabetical order, that a finished iterator throws
+     * NoSuchElementException, and that limit(n) only takes n words from the
+     * walk.
+     *
+     * @param in
+     */
+    public static void test18(Scanner in) {
+
+        String fileName = in.next();
+
+        Trie trie = Trie.readInDictionary(fileName);
+        if (trie == null) {
+            return;
+        }
+
+        // the words as the file has them, sorted without the trie's help
+        TreeSet<String> sorted = new TreeSet<>();
+        try {
+            for (String line : Files.readAllLines(Path.of(fileName))) {
+                String[] columns = line.trim().split("\\s+");
+                if (columns.length >= 2) {
+                    sorted.add(columns[1]);
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("Couldn't read \"" + fileName + "\": " + ex.getMessage());
+            return;
+        }
+
+        Set<String> prefixes = new TreeSet<>();
+        prefixes.add("");
+        for (String word : sorted) {
+            for (int i = 1; i <= word.length(); i++) {
+                prefixes.add(word.substring(0, i));
+            }
+            prefixes.add(word + "qz");
+        }
+        prefixes.add("qzxqzx");
+
+        List<String> failures = new ArrayList<>();
+        int missing = 0;
+        for (String prefix : prefixes) {
+            List<String> expected = new ArrayList<>(sorted.subSet(prefix, prefix + Character.MAX_VALUE));
+            if (expected.isEmpty()) {
+                missing++;
+            }
+
+            List<String> iterated = new ArrayList<>();
+            Iterator<String> words = trie.iteratorWithPrefix(prefix);
+            while (words.hasNext()) {
+                iterated.add(words.next());
+            }
+            try {
+                words.next();
+                failures.add("a finished iterator didn't throw: \"" + prefix + "\"");
+            } catch (NoSuchElementException ex) {
+                // expected
+            }
+
+            if (!iterated.equals(expected)) {
+                failures.add("iterator differs: \"" + prefix + "\"");
+            }
+            if (!trie.streamWithPrefix(prefix).collect(Collectors.toList()).equals(expected)) {
+                failures.add("stream differs: \"" + prefix + "\"");
+            }
+            if (!trie.getAlphabeticalListWithPrefix(prefix).equals(expected)) {
+                failures.add("list differs: \"" + prefix + "\"");
+            }
+
+            // limit has to stop the walk, rather than the stream reading every word and then dropping some
+            int limit = 3;
+            int[] taken = {0};
+            List<String> limited = trie.streamWithPrefix(prefix).peek(word -> taken[0]++).limit(limit).collect(Collectors.toList());
+            if (!limited.equals(expected.subList(0, Math.min(limit, expected.size()))) || taken[0] != limited.size()) {
+                failures.add("limit(" + limit + ") took " + taken[0] + " words: \"" + prefix + "\"");
+            }
+        }
+
+        System.out.println("Compared the words of " + prefixes.size() + " prefixes, " + missing + " of them not in the trie");
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Check completeAll against getMostFrequentWordWithPrefix. Expects a file
+     * name that is the dictionary and the number of prefixes in the big
+     * batch, for example
+     *
+     * <code>19 Trie/data/word-freq.expanded.trim.txt 20000</code>
+     *
+     * A small batch has "", repeated prefixes, prefixes that aren't in the
+     * trie (including ones that go on past a missing character, and a known
+     * prefix straight after one), prefixes typed one character at a time and
+     * a prefix longer than any word. The big batch has random prefixes of
+     * random words, with some repeated and some made up. Both are answered
+     * in one run, the way a single core answers them, and cut into a few
+     * runs that are answered in parallel, and every answer is checked in
+     * order. An empty batch must give an empty list.
+     *
+     * @param in
+     */
+    public static void test19(Scanner in) {
+
+        String fileName = in.next();
+        int size = in.nextInt();
+
+        Trie trie = Trie.readInDictionary(fileName);
+        if (trie == null) {
+            return;
+        }
+        List<String> words = trie.getAlphabeticalListWithPrefix("");
+
+        List<String> small = new ArrayList<>(List.of("", "th", "the", "th", "qzx", "qzxa", "the", "t", "th", "the", "then",
+                "thenqz", "thenqzq", "then", "", "abcdefghijklmnopqrstuvwxyz", "a", "a"));
+        String typed = words.get(words.size() / 2);
+        for (int i = 0; i <= typed.length(); i++) {
+            small.add(typed.substring(0, i));
+        }
+
+        Random random = new Random(19);
+        List<String> big = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int kind = random.nextInt(10);
+            if (kind == 0 && !big.isEmpty()) {
+                big.add(big.get(random.nextInt(big.size())));
+            } else {
+                String word = words.get(random.nextInt(words.size()));
+                String prefix = word.substring(0, random.nextInt(word.length() + 1));
+                big.add((kind == 1) ? prefix + "qz" : prefix);
+            }
+        }
+
+        List<String> failures = new ArrayList<>();
+        int[] runs = {1, 2, 3, 7};
+        for (List<String> batch : List.of(small, big)) {
+            List<String> expected = new ArrayList<>();
+            for (String prefix : batch) {
+                expected.add(trie.getMostFrequentWordWithPrefix(prefix));
+            }
+
+            checkCompleted("completeAll", batch, trie.completeAll(batch), expected, failures);
+            for (int r : runs) {
+                checkCompleted(r + " runs", batch, BatchCompleter.completeAll(trie.getNode(""), batch, r), expected, failures);
+            }
+        }
+        if (!trie.completeAll(List.of()).isEmpty()) {
+            failures.add("an empty batch didn't give an empty list");
+        }
+
+        System.out.println("Checked batches of " + small.size() + " and " + big.size() + " prefixes, with completeAll and in " + Arrays.toString(runs) + " runs");
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Check that a CompletionCursor follows a document being edited. Expects
+     * a file name that is the dictionary and the number of edits, for example
+     *
+     * <code>20 Trie/data/word-freq.expanded.trim.txt 200000</code>
+     *
+     * The edits are made to a StringBuilder standing in for the document, and
+     * passed to the cursor the way TextAreaCompleter does: a successful insert
+     * or remove keeps it in step, and an insert it refuses is followed by a
+     * resync. They are mostly words from the dictionary typed a letter at a
+     * time, with random letters, capitals, spaces and punctuation, pastes,
+     * backspaces, caret jumps, and inserts and removals away from the caret.
+     * After every edit that leaves the cursor in step, its word, node and
+     * completion are checked against the letters before the end of the edit,
+     * a fresh getNode of that word and getMostFrequentWordWithPrefix.
+     *
+     * @param in
+     */
+    public static void test20(Scanner in) {
+
+        String fileName = in.next();
+        int edits = in.nextInt();
+
+        Trie trie = Trie.readInDictionary(fileName);
+        if (trie == null) {
+            return;
+        }
+        List<String> words = trie.getAlphabeticalListWithPrefix("");
+
+        CompletionCursor cursor = new CompletionCursor(trie);
+        StringBuilder document = new StringBuilder();
+        int caret = 0;
+        // where the word the cursor follows ends, or -1 while the cursor is out of step
+        int position = -1;
+        String typing = "";
+        Random random = new Random(20);
+        List<String> failures = new ArrayList<>();
+        int checks = 0;
+        int resyncs = 0;
+
+        for (int edit = 0; edit < edits; edit++) {
+            int kind = random.nextInt(20);
+            String text = null;
+            int offset;
+
+            if (document.length() > 2000) {
+                // keep the document small by cutting off its start
+                int length = Math.min(500, caret);
+                document.delete(0, length);
+                caret -= length;
+                position = cursor.remove(0, length) ? 0 : -1;
+            } else if (kind < 12) {
+                // type the next letter of a word, or the space after it, and now and then something else
+                if (typing.isEmpty()) {
+                    typing = words.get(random.nextInt(words.size())) + " ";
+                }
+                text = typing.substring(0, 1);
+                typing = typing.substring(1);
+                if (random.nextInt(20) == 0) {
+                    text = String.valueOf("aeiouzAEZ.,'-9 ".charAt(random.nextInt(15)));
+                }
+            } else if (kind < 13) {
+                // paste some text
+                text = words.get(random.nextInt(words.size())) + (random.nextBoolean() ? " " : "")
+                        + words.get(random.nextInt(words.size()));
+            } else if (kind < 16) {
+                // backspace
+                int length = Math.min(caret, 1 + ((random.nextInt(4) == 0) ? random.nextInt(5) : 0));
+                document.delete(caret - length, caret);
+                caret -= length;
+                position = cursor.remove(caret, length) ? caret : -1;
+            } else if (kind < 18) {
+                // move the caret, which the cursor only finds out about at the next insert
+                caret = random.nextInt(document.length() + 1);
+                typing = "";
+            } else if (kind < 19) {
+                // insert away from the caret
+                offset = random.nextInt(document.length() + 1);
+                String inserted = words.get(random.nextInt(words.size()));
+                if (!insertAt(cursor, document, offset, inserted)) {
+                    resyncs++;
+                }
+                position = offset + inserted.length();
+                if (offset <= caret) {
+                    caret += inserted.length();
+                }
+            } else {
+                // remove away from the caret
+                offset = random.nextInt(document.length() + 1);
+                int length = Math.min(document.length() - offset, random.nextInt(6));
+                document.delete(offset, offset + length);
+                if (offset + length <= caret) {
+                    caret -= length;
+                } else if (offset < caret) {
+                    caret = offset;
+                }
+                position = cursor.remove(offset, length) ? offset : -1;
+            }
+
+            if (text != null) {
+                if (!insertAt(cursor, document, caret, text)) {
+                    resyncs++;
+                }
+                caret += text.length();
+                position = caret;
+            }
+            if (position < 0) {
+                continue;
+            }
+
+            // the word before the cursor's position, found the slow way
+            int start = position;
+            while (start > 0 && Character.isLetter(document.charAt(start - 1))) {
+                start--;
+            }
+            String word = document.substring(start, position).toLowerCase();
+            TrieNode node = trie.getNode(word);
+            String best = (node == null) ? null : trie.getMostFrequentWordWithPrefix(word);
+            String completion = (best != null && best.length() > word.length()) ? best.substring(word.length()) : null;
+
+            if (!cursor.getWord().equals(word) || cursor.getWordLength() != word.length() || cursor.getNode() != node
+                    || !Objects.equals(cursor.getCompletion(), completion)) {
+                failures.add("edit " + edit + ": the cursor has \"" + cursor.getWord() + "\" and completes it with "
+                        + cursor.getCompletion() + ", instead of \"" + word + "\" and " + completion);
+            }
+            checks++;
+        }
+
+        System.out.println(edits + " edits, " + checks + " checked, " + resyncs + " of them after a resync");
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Start a CompletionServer on a free port and check its answers against
+     * the trie. Expects a file name that is the dictionary and the number of
+     * random prefixes to ask about, for example
+     *
+     * <code>21 Trie/data/word-freq.expanded.trim.txt 300</code>
+     *
+     * Every prefix is sent to /complete, to /top with and without k, and to
+     * /list with a limit (and without one when the prefix is at least two
+     * letters, to keep the lists short), and each answer must match
+     * getMostFrequentWordWithPrefix, getTopKWordsWithPrefix and
+     * getAlphabeticalListWithPrefix. The prefixes include "", ones that
+     * aren't in the trie and ones that need encoding. Leaving out the prefix
+     * or giving a k or limit that is negative or not a number must each give
+     * a 400, and a POST must give a 405.
+     *
+     * @param in
+     */
+    public static void test21(Scanner in) {
+
+        String fileName = in.next();
+        int size = in.nextInt();
+
+        Trie trie = Trie.readInDictionary(fileName);
+        if (trie == null) {
+            return;
+        }
+        List<String> words = trie.getAlphabeticalListWithPrefix("");
+
+        List<String> prefixes = new ArrayList<>(List.of("", "t", "th", "the", "qzx", "thenqz", "a b", "th&k=1", "100%", "\u00e9t\u00e9"));
+        Random random = new Random(21);
+        for (int i = 0; i < size; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            prefixes.add(word.substring(0, random.nextInt(word.length() + 1)));
+        }
+
+        List<String> failures = new ArrayList<>();
+        CompletionServer server;
+        try {
+            server = new CompletionServer(trie, 0);
+        } catch (IOException e) {
+            System.out.println("Couldn't start the server: " + e);
+            return;
+        }
+        server.start();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        try {
+            String url = "http://localhost:" + server.getPort();
+            for (String prefix : prefixes) {
+                String encoded = URLEncoder.encode(prefix, StandardCharsets.UTF_8);
+                checkServed(client, url + "/complete?prefix=" + encoded, List.of(trie.getMostFrequentWordWithPrefix(prefix)), failures);
+                checkServed(client, url + "/top?prefix=" + encoded, trie.getTopKWordsWithPrefix(prefix, CompletionServer.DEFAULT_K), failures);
+                for (int k : new int[]{0, 1, 3, 25}) {
+                    checkServed(client, url + "/top?k=" + k + "&prefix=" + encoded, trie.getTopKWordsWithPrefix(prefix, k), failures);
+                }
+
+                List<String> list = trie.getAlphabeticalListWithPrefix(prefix);
+                for (int limit : new int[]{0, 1, 7}) {
+                    checkServed(client, url + "/list?prefix=" + encoded + "&limit=" + limit, list.subList(0, Math.min(limit, list.size())), failures);
+                }
+                if (prefix.length() >= 2) {
+                    checkServed(client, url + "/list?prefix=" + encoded, list, failures);
+                }
+            }
+
+            for (String query : List.of("/complete", "/complete?k=3", "/top?k=3", "/list?limit=3",
+                    "/top?prefix=th&k=-1", "/top?prefix=th&k=three", "/top?prefix=th&k=99999999999",
+                    "/list?prefix=th&limit=-5", "/list?prefix=th&limit=")) {
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + query)).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 400) {
+                    failures.add(query + " gave " + response.statusCode() + " instead of 400: " + response.body());
+                }
+            }
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + "/complete?prefix=th"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 405) {
+                failures.add("POST /complete gave " + response.statusCode() + " instead of 405");
+            }
+        } catch (IOException e) {
+            failures.add("The request failed: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            client.close();
+            server.stop();
+        }
+
+        System.out.println("Asked about " + prefixes.size() + " prefixes");
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Check LatencyHistogram's buckets and percentiles. Expects the number of
+     * random values to record, for example
+     *
+     * <code>22 100000</code>
+     *
+     * Every bucket must start just after the one before it ends, so each
+     * value has exactly one bucket, and above the first 8 buckets no bucket
+     * may be wider than an eighth of its lowest value. Known values (0, 1,
+     * the bucket edges around 8 and 16, a power of two and Long.MAX_VALUE)
+     * must land in the expected buckets. Recording just one of them must
+     * give it back as every percentile, and recording 0 to 7 must give exact
+     * percentiles. With random values of every size, each percentile must be
+     * at least the exact one from the sorted values and no more than the top
+     * of its bucket, which is within an eighth of it.
+     *
+     * @param in
+     */
+    public static void test22(Scanner in) {
+
+        int size = in.nextInt();
+
+        List<String> failures = new ArrayList<>();
+        int buckets = LatencyHistogram.BUCKETS;
+        long lowest = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            long highest = LatencyHistogram.upperBoundOf(bucket);
+            if (highest < lowest) {
+                failures.add("bucket " + bucket + " ends at " + highest + " before it starts at " + lowest);
+            } else if (LatencyHistogram.bucketOf(lowest) != bucket || LatencyHistogram.bucketOf(highest) != bucket) {
+                failures.add("bucket " + bucket + " goes from " + lowest + " to " + highest + ", but they are in buckets "
+                        + LatencyHistogram.bucketOf(lowest) + " and " + LatencyHistogram.bucketOf(highest));
+            } else if (bucket >= 8 && highest - lowest > lowest / 8) {
+                failures.add("bucket " + bucket + " goes from " + lowest + " to " + highest + ", more than an eighth of its lowest value");
+            }
+            lowest = highest + 1;
+        }
+        if (lowest != Long.MIN_VALUE) {
+            failures.add("the last bucket ends at " + (lowest - 1) + " instead of Long.MAX_VALUE");
+        }
+
+        long[][] known = {{0, 0}, {1, 1}, {7, 7}, {8, 8}, {9, 9}, {15, 15}, {16, 16}, {17, 16}, {18, 17}, {31, 23}, {32, 24},
+                {1L << 40, 8 * 38}, {(1L << 40) - 1, 8 * 38 - 1}, {Long.MAX_VALUE, buckets - 1}};
+        for (long[] pair : known) {
+            if (LatencyHistogram.bucketOf(pair[0]) != pair[1]) {
+                failures.add(pair[0] + " is in bucket " + LatencyHistogram.bucketOf(pair[0]) + " instead of " + pair[1]);
+            }
+
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(pair[0]);
+            for (double fraction : new double[]{0, 0.5, 0.99, 1}) {
+                if (histogram.getPercentile(fraction) != pair[0]) {
+                    failures.add("with just " + pair[0] + " recorded, the " + fraction + " percentile is " + histogram.getPercentile(fraction));
+                }
+            }
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        if (histogram.getPercentile(0.5) != 0 || histogram.getMean() != 0 || histogram.getMax() != 0) {
+            failures.add("an empty histogram doesn't give 0");
+        }
+        histogram.record(-5);
+        if (histogram.getCount() != 1 || histogram.getMax() != 0 || histogram.getPercentile(1) != 0) {
+            failures.add("a negative value didn't count as 0");
+        }
+        histogram.reset();
+
+        // values below 8 have a bucket each, so their percentiles are exact
+        for (long value = 0; value < 8; value++) {
+            histogram.record(value);
+        }
+        long[] exactPercentiles = {0, 0, 1, 2, 2, 3, 6, 7, 7};
+        double[] exactFractions = {0, 0.125, 0.25, 0.3, 0.375, 0.5, 0.8, 0.95, 1};
+        for (int i = 0; i < exactFractions.length; i++) {
+            if (histogram.getPercentile(exactFractions[i]) != exactPercentiles[i]) {
+                failures.add("with 0 to 7 recorded, the " + exactFractions[i] + " percentile is "
+                        + histogram.getPercentile(exactFractions[i]) + " instead of " + exactPercentiles[i]);
+            }
+        }
+        histogram.reset();
+
+        Random random = new Random(22);
+        long[] values = new long[size];
+        for (int i = 0; i < size; i++) {
+            // spread the values over every size, from single nanoseconds to Long.MAX_VALUE
+            values[i] = Long.MAX_VALUE >>> random.nextInt(64) & random.nextLong();
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        if (histogram.getCount() != size || size > 0 && histogram.getMax() != values[size - 1]) {
+            failures.add("recorded " + histogram.getCount() + " values with a max of " + histogram.getMax());
+        }
+        for (double fraction : new double[]{0, 0.001, 0.1, 0.5, 0.9, 0.99, 0.999, 0.9999, 1}) {
+            if (size == 0) {
+                break;
+            }
+            long exact = values[(int) Math.max(1, Math.ceil(fraction * size)) - 1];
+            long percentile = histogram.getPercentile(fraction);
+            if (percentile < exact || percentile > LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(exact))) {
+                failures.add("the " + fraction + " percentile is " + percentile + " instead of about " + exact);
+            }
+        }
+
+        System.out.println("Checked " + buckets + " buckets and " + size + " random values");
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Check a ShardedTrie of LocalTrieShards against one Trie. Expects a file
+     * name that is the dictionary, and the numbers of shards to try, for
+     * example
+     *
+     * <code>23 Trie/data/word-freq.expanded.trim.txt 1 2 3 7 50 1000 100000</code>
+     *
+     * Boundaries are only two characters long, so with a lot of shards many
+     * of them come out the same and there are fewer shards than asked for.
+     * For every prefix of every word, and prefixes that aren't in the
+     * dictionary, it checks the most frequent word, the top 10 and the first
+     * 50 words alphabetically. For a sample of those prefixes it also checks
+     * other values of k and the whole alphabetical list. Every word must be
+     * in a shard no earlier than the word before it.
+     *
+     * @param in
+     */
+    public static void test23(Scanner in) {
+
+        String fileName = in.next();
+        List<Integer> shardCounts = new ArrayList<>();
+        while (in.hasNextInt()) {
+            shardCounts.add(in.nextInt());
+        }
+
+        Trie trie = Trie.readInDictionary(fileName);
+        if (trie == null) {
+            return;
+        }
+        List<String> words = trie.getAlphabeticalListWithPrefix("");
+
+        Set<String> prefixes = new TreeSet<>(List.of("", "qzx", "zzzz", "{", "0"));
+        for (String word : words) {
+            for (int i = 1; i <= word.length(); i++) {
+                prefixes.add(word.substring(0, i));
+            }
+            prefixes.add(word + "qz");
+        }
+        List<String> sample = new ArrayList<>(prefixes);
+        Collections.shuffle(sample, new Random(23));
+        sample = sample.subList(0, Math.min(500, sample.size()));
+
+        List<String> failures = new ArrayList<>();
+        for (int shardCount : shardCounts) {
+            ShardedTrie sharded;
+            try {
+                sharded = ShardedTrie.readInDictionary(fileName, shardCount);
+            } catch (IOException e) {
+                System.out.println("Couldn't read " + fileName + ": " + e);
+                return;
+            }
+            String name = shardCount + " shards (" + sharded.getShardCount() + " after collapsing)";
+
+            if (sharded.getShardCount() < 1 || sharded.getShardCount() > shardCount) {
+                failures.add(name + ": the wrong number of shards");
+            }
+            for (int i = 1; i < words.size(); i++) {
+                if (sharded.shardOf(words.get(i)) < sharded.shardOf(words.get(i - 1))) {
+                    failures.add(name + ": " + words.get(i) + " is in an earlier shard than " + words.get(i - 1));
+                }
+            }
+
+            for (String prefix : prefixes) {
+                checkSharded(name, prefix, sharded.getMostFrequentWordWithPrefix(prefix), trie.getMostFrequentWordWithPrefix(prefix), failures);
+                checkSharded(name, prefix, sharded.getTopKWordsWithPrefix(prefix, 10), trie.getTopKWordsWithPrefix(prefix, 10), failures);
+                checkSharded(name, prefix, sharded.getAlphabeticalListWithPrefix(prefix, 50),
+                        trie.streamWithPrefix(prefix).limit(50).collect(Collectors.toList()), failures);
+            }
+            for (String prefix : sample) {
+                for (int k : new int[]{0, 1, 3, 25}) {
+                    checkSharded(name, prefix, sharded.getTopKWordsWithPrefix(prefix, k), trie.getTopKWordsWithPrefix(prefix, k), failures);
+                }
+                checkSharded(name, prefix, sharded.getAlphabeticalListWithPrefix(prefix), trie.getAlphabeticalListWithPrefix(prefix), failures);
+                checkSharded(name, prefix, sharded.getAlphabeticalListWithPrefix(prefix, 0), List.of(), failures);
+            }
+            System.out.println("Checked " + prefixes.size() + " prefixes with " + name);
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("All invariants hold");
+        } else {
+            System.out.println(failures.size() + " failures, for example:");
+            failures.stream().limit(10).forEach(System.out::println);
+        }
+    }
+
+    /**
+     * Type some text into a new text area with a TextAreaCompleter, one
+     * keystroke at a time on the event dispatch thread, and check the
+     * completions it inserts. See level 14.
+     *
+     * @param background Whether the executor runs lookups off the event dispatch thread
+     * @param print      Whether to print how long the keystrokes blocked the event dispatch thread
+     */
+    private static void replayTyping(String name, Trie dt, Executor executor, boolean background, long debounceMillis, long pauseMillis,
+            String text, boolean print, List<String> failures) throws InterruptedException, InvocationTargetException {
+
+        // count the lookups, and the ones that ran on the event dispatch thread
+        AtomicInteger lookups = new AtomicInteger();
+        AtomicInteger lookupsOnEdt = new AtomicInteger();
+        Executor counting = task -> executor.execute(() -> {
+            lookups.incrementAndGet();
+            if (SwingUtilities.isEventDispatchThread()) {
+                lookupsOnEdt.incrementAndGet();
+            }
+            task.run();
+        });
+
+        // only touched on the event dispatch thread
+        JTextArea[] textArea = new JTextArea[1];
+        int[] typed = {0};
+        boolean[] typing = {false};
+        int[] completions = {0};
+
+        SwingUtilities.invokeAndWait(() -> {
+            textArea[0] = new JTextArea();
+            new TextAreaCompleter(textArea[0], dt, counting, debounceMillis);
+
+            // anything inserted other than a keystroke is a completion, which must be for the text typed so far
+            textArea[0].getDocument().addDocumentListener(new DocumentListener() {
+                public void insertUpdate(DocumentEvent ev) {
+                    if (typing[0]) {
+                        return;
+                    }
+                    completions[0]++;
+                    try {
+                        String before = ev.getDocument().getText(0, ev.getOffset());
+                        String completion = ev.getDocument().getText(ev.getOffset(), ev.getLength());
+                        if (!before.equals(text.substring(0, typed[0]))) {
+                            failures.add(name + ": \"" + completion + "\" went in after \"" + before + "\" when \""
+                                    + text.substring(0, typed[0]) + "\" had been typed");
+                        } else if (!completion.equals(expectedCompletion(dt, before))) {
+                            failures.add(name + ": \"" + before + "\" was completed with \"" + completion + "\" instead of \""
+                                    + expectedCompletion(dt, before) + "\"");
+                        }
+                    } catch (BadLocationException e) {
+                        failures.add(name + ": " + e);
+                    }
+                }
+
+                public void removeUpdate(DocumentEvent ev) {
+                }
+
+                public void changedUpdate(DocumentEvent ev) {
+                }
+            });
+        });
+
+        // type each character over the selected completion, if there is one, the way a key press does
+        long[] blocked = new long[text.length()];
+        for (int i = 0; i < text.length(); i++) {
+            int index = i;
+            SwingUtilities.invokeAndWait(() -> {
+                typing[0] = true;
+                typed[0] = index + 1;
+                long start = System.nanoTime();
+                textArea[0].replaceSelection(String.valueOf(text.charAt(index)));
+                blocked[index] = System.nanoTime() - start;
+                typing[0] = false;
+            });
+            Thread.sleep(pauseMillis);
+        }
+
+        // wait for the last completion to arrive, then check it is selected after the text
+        String completion = expectedCompletion(dt, text);
+        String expected = text + ((completion == null) ? "" : completion);
+        String[] result = new String[1];
+        int[] selection = new int[2];
+        long deadline = System.nanoTime() + (debounceMillis + 5000) * 1000000;
+        do {
+            Thread.sleep(10);
+            SwingUtilities.invokeAndWait(() -> {
+                result[0] = textArea[0].getText();
+                selection[0] = textArea[0].getSelectionStart();
+                selection[1] = textArea[0].getSelectionEnd();
+            });
+        } while (!result[0].equals(expected) && System.nanoTime() < deadline);
+
+        if (!result[0].equals(expected) || selection[0] != text.length() || selection[1] != expected.length()) {
+            failures.add(name + ": ended up with \"" + result[0] + "\" and " + selection[0] + "-" + selection[1]
+                    + " selected, instead of \"" + expected + "\" and " + text.length() + "-" + expected.length());
+        }
+        if (background && lookupsOnEdt.get() > 0) {
+            failures.add(name + ": " + lookupsOnEdt.get() + " lookups ran on the event dispatch thread");
+        }
+
+        if (!print) {
+            return;
+        }
+        Arrays.sort(blocked);
+        long total = Arrays.stream(blocked).sum();
+        System.out.printf("%s: %d keystrokes blocked the event dispatch thread for %.1f us in total,"
+                + " mean %.1f us, 99th percentile %.1f us, max %.1f us%n", name, blocked.length, total / 1e3,
+                total / 1e3 / blocked.length, blocked[(int) (blocked.length * 0.99)] / 1e3, blocked[blocked.length - 1] / 1e3);
+        System.out.println(lookups.get() + " lookups (" + lookupsOnEdt.get() + " on the event dispatch thread), "
+                + completions[0] + " completions inserted. Text at the end: " + result[0]);
+    }
+
+    /**
+     * The completion a TextAreaCompleter should insert after some text: the
+     * rest of the most frequent word starting with the last word, if the
+     * last word has at least two letters and there is a longer word.
+     */
+    private static String expectedCompletion(Trie dt, String text) {
+        int start = text.length();
+        while (start > 0 && Character.isLetter(text.charAt(start - 1))) {
+            start--;
+        }
+        String word = text.substring(start).toLowerCase();
+        if (word.length() < 2 || dt.getNode(word) == null) {
+            return null;
+        }
+        String match = dt.getMostFrequentWordWithPrefix(word);
+        return (match.length() > word.length()) ? match.substring(word.length()) : null;
+    }
+
+    /**
+     * The data a writer in level 10 gives a word on one of its rounds. Every
+     * round is less frequent than the one before, and writers don't give the
+     * same frequency in the same round.
+     */
+    private static TrieData racedData(TrieNode node, int round, int writer, int numWriters) {
+        return new TrieData(Math.max(1, node.getFrequency() / (2 + round * numWriters + writer)), node.getRank());
+    }
+
+    /**
+     * Check that a ConcurrentTrie has exactly the same nodes and data as a
+     * Trie, and that every maxFrequency is exactly the highest frequency of
+     * the words at or below its node.
+     *
+     * @return the highest frequency at or below the node
+     */
+    private static int checkSameTrie(TrieNode expected, ConcurrentTrieNode actual, String prefix, ConcurrentLinkedQueue<String> failures) {
+        if (actual.getNumChildren() != expected.getNumChildren() || actual.isTerminal() != expected.isTerminal()
+                || !Objects.equals(actual.getData(), expected.getData())) {
+            failures.add("node differs: " + prefix);
+            return actual.getMaxFrequency();
+        }
+
+        int max = actual.isTerminal() ? actual.getData().getFrequency() : -1;
+        for (int i = 0; i < expected.getNumChildren(); i++) {
+            ConcurrentTrieNode child = actual.getChild(expected.getChildLabel(i));
+            if (child == null) {
+                failures.add("missing child: " + prefix + expected.getChildLabel(i));
+            } else {
+                max = Math.max(max, checkSameTrie(expected.getChildAt(i), child, prefix + expected.getChildLabel(i), failures));
+            }
+        }
+
+        if (actual.getMaxFrequency() != max) {
+            failures.add("maxFrequency is " + actual.getMaxFrequency() + " instead of " + max + ": " + prefix);
+        }
+        return max;
+    }
+
+    /**
+     * Check the answers for a batch of prefixes, one by one in order.
+     */
+    private static void checkCompleted(String name, List<String> batch, List<String> actual, List<String> expected, List<String> failures) {
+        if (actual.size() != expected.size()) {
+            failures.add(name + ": " + actual.size() + " answers for " + expected.size() + " prefixes");
+            return;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!actual.get(i).equals(expected.get(i))) {
+                failures.add(name + ": prefix " + i + " \"" + batch.get(i) + "\" gave " + actual.get(i) + " instead of " + expected.get(i));
+            }
+        }
+    }
+
+    /**
+     * Insert text into a document and tell a CompletionCursor about it, the
+     * way TextAreaCompleter does: if the cursor refuses the insert, it is set
+     * up again from the document.
+     *
+     * @return false if the cursor had to be set up again
+     */
+    private static boolean insertAt(CompletionCursor cursor, StringBuilder document, int offset, String text) {
+        document.insert(offset, text);
+        if (cursor.insert(offset, text)) {
+            return true;
+        }
+        cursor.resync(document, offset + text.length());
+        return false;
+    }
+
+    /**
+     * Send a GET request and check it gives a 200 with the expected words, one per line.
+     */
+    private static void checkServed(HttpClient client, String url, List<String> expected, List<String> failures)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url)).build(), HttpResponse.BodyHandlers.ofString());
+        String body = expected.stream().map(word -> word + "\n").collect(Collectors.joining());
+        if (response.statusCode() != 200 || !response.body().equals(body)) {
+            failures.add(url + " gave " + response.statusCode() + " " + Arrays.asList(response.body().split("\n")) + " instead of " + expected);
+        }
+    }
+
+    private static void checkSharded(String name, String prefix, Object actual, Object expected, List<String> failures) {
+        if (!actual.equals(expected)) {
+            failures.add(name + ": \"" + prefix + "\" gave " + actual + " instead of " + expected);
+        }
+    }
+
+    /**
+     * The fewest edits that turn prefix into some prefix of word.
+     */
+    private static int prefixDistance(String prefix, String word) {
+        // row[i] is the distance from the first i characters of prefix to the part of word seen so far
+        int[] row = new int[prefix.length() + 1];
+        for (int i = 0; i <= prefix.length(); i++) {
+            row[i] = i;
+        }
+        int best = row[prefix.length()];
+
+        for (int j = 0; j < word.length(); j++) {
+            int[] next = new int[row.length];
+            next[0] = j + 1;
+            for (int i = 1; i < row.length; i++) {
+                int substitute = row[i - 1] + ((prefix.charAt(i - 1) == word.charAt(j)) ? 0 : 1);
+                next[i] = Math.min(substitute, Math.min(row[i] + 1, next[i - 1] + 1));
+            }
+            row = next;
+            best = Math.min(best, row[prefix.length()]);
+        }
+        return best;
+    }
+
+    private static void addNodes(PersistentTrieNode node, Set<PersistentTrieNode> nodes) {
+        nodes.add(node);
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            addNodes(node.getChildAt(i), nodes);
+        }
+    }
+
+    private static Trie build(List<String> words, List<TrieData> data, int count) {
+        Trie t = new Trie();
+        for (int i = 0; i < count; i++) {
+            t.insert(words.get(i), data.get(i));
+        }
+        return t;
+    }
+
+    /**
+     * Check that two Tries have exactly the same nodes, data, maxFrequency and
+     * lists of most frequent words, and that the actual one keeps lists on
+     * just the nodes that should have them.
+     */
+    private static void checkSameTrie(TrieNode expected, TrieNode actual, String prefix, List<String> failures) {
+        if (actual.getNumChildren() != expected.getNumChildren() || actual.isTerminal() != expected.isTerminal()
+                || !Objects.equals(actual.getData(), expected.getData())
+                || actual.maxFrequency != expected.maxFrequency
+                || (actual.topWords != null) != actual.keepsTopWords()
+                || !actual.getTopWords(prefix, TrieNode.TOP_K_CAPACITY).equals(expected.getTopWords(prefix, TrieNode.TOP_K_CAPACITY))) {
+            failures.add("node differs: " + prefix);
+            return;
+        }
+
+        for (int i = 0; i < expected.getNumChildren(); i++) {
+            if (actual.getChildLabel(i) != expected.getChildLabel(i)) {
+                failures.add("child " + i + " differs: " + prefix);
+                return;
+            }
+            checkSameTrie(expected.getChildAt(i), actual.getChildAt(i), prefix + expected.getChildLabel(i), failures);
+        }
+    }
+
+    /**
+     * Count the child and top-K array slots allocated at or below a node, used or not.
+     */
+    private static long countSlots(TrieNode node) {
+        long slots = node.labels.length + ((node.dense != null) ? node.dense.length : node.nodes.length)
+                + ((node.topWords == null) ? 0 : node.topWords.length + node.topFrequencies.length);
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            slots += countSlots(node.getChildAt(i));
+        }
+        return slots;
+    }
+
+    private static int countListed(TrieNode node) {
+        int count = (node.topWords != null) ? 1 : 0;
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            count += countListed(node.getChildAt(i));
+        }
+        return count;
+    }
+
+    private static int countNodes(TrieNode node) {
+        int count = 1;
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            count += countNodes(node.getChildAt(i));
+        }
+        return count;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
 }
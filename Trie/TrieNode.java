@@ -1,8 +1,12 @@
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class TrieNode
 {
-	private TrieData data = null;
+	// the word's frequency and rank are kept in row number ordinal of a table shared by every node in the trie
+	private TrieDataTable table = null;
+	private int ordinal = -1;
 	private boolean terminal = false;
 
 	public int maxFrequency = -1;   // the highest frequency among nodes following this one
@@ -13,11 +17,37 @@ public class TrieNode
 
 	private int numChildren = 0;
 
+	// nodes with more children than this switch from the sorted arrays to a dense table indexed by label
+	static final int DENSE_THRESHOLD = 12;
+	// the widest range of labels a dense table is allowed to cover, so a stray label can't blow up its size
+	static final int MAX_DENSE_SPAN = 128;
 
-	HashMap<Character, TrieNode> children = new HashMap<Character, TrieNode>(1, 0.75f);
-	// Using a HashMap because it has very fast access, the cost of slow creation and high space usage.
-	// the point of this is to search trees FAST, since if we're creating a Trie, we probably have the time to add stuff
-	// TODO calculate how often the map is getting rehashed
+	private static final char[] NO_LABELS = new char[0];
+	private static final TrieNode[] NO_NODES = new TrieNode[0];
+
+	char[] labels = NO_LABELS;
+	TrieNode[] nodes = NO_NODES;
+	// The labels are kept sorted, with nodes[i] being the child for labels[i], so a lookup is a binary search over
+	// primitive chars instead of boxing the char and hashing it.
+	// Most nodes only have one or two children, so two small arrays are far smaller than a HashMap and its entries.
+
+	TrieNode[] dense = null;
+	char denseBase = 0;
+	// Once a node has lots of children (the root, and the first couple of levels), nodes is dropped and the children
+	// are stored in dense[label - denseBase] instead, which makes the lookup a single array access.
+	// labels stays sorted in both modes, so the children can always be walked in alphabetical order.
+
+	// the number of most frequent words remembered by each node
+	static final int TOP_K_CAPACITY = 10;
+
+	String[] topWords = null;
+	int[] topFrequencies = null;
+	int topCount = 0;
+	// The most frequent words at or below this node, most frequent first, so top-K completions don't need to walk
+	// the subtree. They are kept up to date by Trie.insert(), from the bottom of the word's path up.
+	// Only nodes where the subtree branches keep a list (see keepsTopWords()). A leaf's only word is its own, and a
+	// node with one child and no word of its own has the same words as that child, so for most nodes the list is
+	// found by following the chain of single children down to the first node that keeps one, or to a leaf.
 
 	/**
 	 * Lookup a child node of the current node that is associated with a
@@ -28,17 +58,42 @@ public class TrieNode
 	 */
 	public TrieNode getChild(char label)
 	{
-		return children.get(label);
+		if (dense != null)
+		{
+			int index = label - denseBase;
+			return (index >= 0 && index < dense.length) ? dense[index] : null;
+		}
+
+		int index = indexOf(label);
+		return (index >= 0) ? nodes[index] : null;
+	}
+
+	/**
+	 * Get the label of one of the children of this node. Children are numbered
+	 * from 0 to {@code getNumChildren() - 1} in alphabetical order of their labels.
+	 *
+	 * @param index The position of the child, in alphabetical order
+	 * @return The label of the child at that position
+	 */
+	public char getChildLabel(int index)
+	{
+		return labels[index];
 	}
 
 	/**
-	 * Get all the children of ths node.
+	 * Get one of the children of this node. Children are numbered from 0 to
+	 * {@code getNumChildren() - 1} in alphabetical order of their labels.
 	 *
-	 * @return The HashMap of all the children
+	 * @param index The position of the child, in alphabetical order
+	 * @return The child at that position
 	 */
-	public HashMap<Character, TrieNode> getChildren()
+	public TrieNode getChildAt(int index)
 	{
-		return children;
+		if (dense != null)
+		{
+			return dense[labels[index] - denseBase];
+		}
+		return nodes[index];
 	}
 
 	/**
@@ -50,8 +105,50 @@ public class TrieNode
 	 */
 	public void addChild(char label, TrieNode node)
 	{
+		int index = indexOf(label);
+
+		// if the label is already in use, just replace the child
+		if (index >= 0)
+		{
+			if (dense != null)
+			{
+				dense[label - denseBase] = node;
+			}
+			else
+			{
+				nodes[index] = node;
+			}
+			return;
+		}
+
+		// make room for the new label at its sorted position
+		index = -(index + 1);
+		if (numChildren == labels.length)
+		{
+			labels = Arrays.copyOf(labels, grow(numChildren));
+		}
+		System.arraycopy(labels, index, labels, index + 1, numChildren - index);
+		labels[index] = label;
+
+		if (dense != null)
+		{
+			numChildren++;
+			putDense(label, node);
+			return;
+		}
+
+		if (numChildren == nodes.length)
+		{
+			nodes = Arrays.copyOf(nodes, grow(numChildren));
+		}
+		System.arraycopy(nodes, index, nodes, index + 1, numChildren - index);
+		nodes[index] = node;
 		numChildren++;
-		children.put(label, node);
+
+		if (numChildren > DENSE_THRESHOLD)
+		{
+			toDense();
+		}
 	}
 
 	/**
@@ -62,8 +159,439 @@ public class TrieNode
 	 */
 	public void addChild(char label)
 	{
-		numChildren++;
-		children.put(label, new TrieNode());
+		addChild(label, new TrieNode());
+	}
+
+	/**
+	 * Remove the child associated with a label, along with everything below it.
+	 * The child storage isn't shrunk; see {@link #compact()}.
+	 *
+	 * @param label The label of the child to remove
+	 * @return The child that was removed, or null if there wasn't a child with that label
+	 */
+	public TrieNode removeChild(char label)
+	{
+		int index = indexOf(label);
+		if (index < 0)
+		{
+			return null;
+		}
+
+		TrieNode child = getChildAt(index);
+		System.arraycopy(labels, index + 1, labels, index, numChildren - index - 1);
+		if (dense != null)
+		{
+			dense[label - denseBase] = null;
+		}
+		else
+		{
+			System.arraycopy(nodes, index + 1, nodes, index, numChildren - index - 1);
+			nodes[numChildren - 1] = null;
+		}
+		numChildren--;
+
+		return child;
+	}
+
+	/**
+	 * Shrink this node's arrays to fit what is in them, after children or
+	 * words have been removed. A dense table that no longer has enough
+	 * children to be worth it goes back to the sorted arrays, and one that
+	 * still does is trimmed to the labels it covers.
+	 */
+	public void compact()
+	{
+		if (numChildren == 0)
+		{
+			labels = NO_LABELS;
+			nodes = NO_NODES;
+			dense = null;
+		}
+		else if (dense != null && numChildren <= DENSE_THRESHOLD)
+		{
+			TrieNode[] sparse = new TrieNode[numChildren];
+			for (int i = 0; i < numChildren; i++)
+			{
+				sparse[i] = dense[labels[i] - denseBase];
+			}
+			labels = Arrays.copyOf(labels, numChildren);
+			nodes = sparse;
+			dense = null;
+		}
+		else
+		{
+			if (labels.length != numChildren)
+			{
+				labels = Arrays.copyOf(labels, numChildren);
+			}
+			if (dense != null)
+			{
+				int span = labels[numChildren - 1] - labels[0] + 1;
+				if (span != dense.length)
+				{
+					dense = Arrays.copyOfRange(dense, labels[0] - denseBase, labels[0] - denseBase + span);
+					denseBase = labels[0];
+				}
+			}
+			else if (nodes.length != numChildren)
+			{
+				nodes = Arrays.copyOf(nodes, numChildren);
+			}
+		}
+
+		if (topCount == 0)
+		{
+			topWords = null;
+			topFrequencies = null;
+		}
+		else if (topWords.length != topCount)
+		{
+			topWords = Arrays.copyOf(topWords, topCount);
+			topFrequencies = Arrays.copyOf(topFrequencies, topCount);
+		}
+	}
+
+	/**
+	 * Binary search the sorted labels for a particular label.
+	 *
+	 * @param label The label to search for
+	 * @return The position of the label, or {@code -(insertion point) - 1} if it isn't a child of this node
+	 */
+	private int indexOf(char label)
+	{
+		int low = 0;
+		int high = numChildren - 1;
+
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			char midLabel = labels[mid];
+
+			if (midLabel < label)
+			{
+				low = mid + 1;
+			}
+			else if (midLabel > label)
+			{
+				high = mid - 1;
+			}
+			else
+			{
+				return mid;
+			}
+		}
+
+		return -(low + 1);
+	}
+
+	/**
+	 * Work out how big to make the child arrays when they are full.
+	 * Small nodes grow one at a time since most never get more than a couple of children.
+	 */
+	private static int grow(int size)
+	{
+		return (size < 4) ? size + 1 : size + (size >> 1);
+	}
+
+	/**
+	 * Move the children out of the sorted arrays and into a dense table, if their labels are close enough together.
+	 */
+	private void toDense()
+	{
+		int span = labels[numChildren - 1] - labels[0] + 1;
+		if (span > MAX_DENSE_SPAN)
+		{
+			return;
+		}
+
+		dense = new TrieNode[span];
+		denseBase = labels[0];
+		for (int i = 0; i < numChildren; i++)
+		{
+			dense[labels[i] - denseBase] = nodes[i];
+		}
+		nodes = null;
+	}
+
+	/**
+	 * Put a child into the dense table, widening the table if needed. If the
+	 * label is too far away from the others to fit in a dense table, the
+	 * children go back to the sorted arrays instead.
+	 * The labels array must already contain the new label.
+	 */
+	private void putDense(char label, TrieNode node)
+	{
+		int low = Math.min(label, denseBase);
+		int high = Math.max(label, denseBase + dense.length - 1);
+		if (high - low + 1 > MAX_DENSE_SPAN)
+		{
+			TrieNode[] sparse = new TrieNode[labels.length];
+			for (int i = 0; i < numChildren; i++)
+			{
+				sparse[i] = (labels[i] == label) ? node : dense[labels[i] - denseBase];
+			}
+			nodes = sparse;
+			dense = null;
+			return;
+		}
+
+		if (low != denseBase || high - low + 1 != dense.length)
+		{
+			TrieNode[] wider = new TrieNode[high - low + 1];
+			System.arraycopy(dense, 0, wider, denseBase - low, dense.length);
+			dense = wider;
+			denseBase = (char) low;
+		}
+
+		dense[label - denseBase] = node;
+	}
+
+	/**
+	 * Work out maxFrequency again from this node's own word and its children's
+	 * maxFrequency, which must already be right. Unlike insert(), this can lower
+	 * maxFrequency.
+	 */
+	public void recomputeMaxFrequency()
+	{
+		int max = terminal ? getFrequency() : -1;
+		for (int i = 0; i < numChildren; i++)
+		{
+			max = Math.max(max, getChildAt(i).maxFrequency);
+		}
+		maxFrequency = max;
+	}
+
+	/**
+	 * Whether this node keeps its own list of most frequent words, which it
+	 * does if it has more than one child, or a word of its own and a child.
+	 * Any other node has the same list as the end of the chain of single
+	 * children below it.
+	 */
+	boolean keepsTopWords()
+	{
+		return numChildren > 1 || (terminal && numChildren > 0);
+	}
+
+	/**
+	 * Let this node know that a word at or below it has been inserted or has
+	 * become more frequent, offering it to the node's list of most frequent
+	 * words if it keeps one. A node that has only just started needing a list,
+	 * because it has gained a second child or its own word, first builds it
+	 * from its children, which is right as long as they were all right before
+	 * the word was inserted.
+	 *
+	 * @param word      The word that can be reached through this node
+	 * @param depth     The number of characters of the word that lead to this node
+	 * @param frequency The frequency of the word
+	 */
+	public void offerTopWord(String word, int depth, int frequency)
+	{
+		if (topWords == null)
+		{
+			if (!keepsTopWords())
+			{
+				return;
+			}
+			rebuildTopWords(word.substring(0, depth));
+		}
+		addTopWord(word, frequency);
+	}
+
+	/**
+	 * Offer a word to this node's list of most frequent words. The word is
+	 * added if there is room, or if it is more frequent than the least frequent
+	 * word in the list. If the word is already in the list, its frequency is
+	 * replaced.
+	 * <p>
+	 * Words with the same frequency are kept in alphabetical order, so the list
+	 * doesn't depend on the order the words were inserted in.
+	 *
+	 * @param word      The word that can be reached through this node
+	 * @param frequency The frequency of the word
+	 */
+	private void addTopWord(String word, int frequency)
+	{
+		// remove the word if it is already there, so it can be put back in the right place
+		for (int i = 0; i < topCount; i++)
+		{
+			if (topWords[i].equals(word))
+			{
+				System.arraycopy(topWords, i + 1, topWords, i, topCount - i - 1);
+				System.arraycopy(topFrequencies, i + 1, topFrequencies, i, topCount - i - 1);
+				topCount--;
+				topWords[topCount] = null;
+				break;
+			}
+		}
+
+		// find where the word belongs
+		int index = topCount;
+		while (index > 0 && isBefore(word, frequency, topWords[index - 1], topFrequencies[index - 1]))
+		{
+			index--;
+		}
+
+		if (index >= TOP_K_CAPACITY)
+		{
+			// the list is full of more frequent words
+			return;
+		}
+
+		if (topWords == null)
+		{
+			topWords = new String[1];
+			topFrequencies = new int[1];
+		}
+		else if (topCount == topWords.length && topCount < TOP_K_CAPACITY)
+		{
+			int newLength = Math.min(topCount * 2, TOP_K_CAPACITY);
+			topWords = Arrays.copyOf(topWords, newLength);
+			topFrequencies = Arrays.copyOf(topFrequencies, newLength);
+		}
+
+		// shift the less frequent words down, dropping the last one if the list is full
+		int moved = Math.min(topCount, TOP_K_CAPACITY - 1) - index;
+		System.arraycopy(topWords, index, topWords, index + 1, moved);
+		System.arraycopy(topFrequencies, index, topFrequencies, index + 1, moved);
+		topWords[index] = word;
+		topFrequencies[index] = frequency;
+		topCount = Math.min(topCount + 1, TOP_K_CAPACITY);
+	}
+
+	/**
+	 * Rebuild this node's list of most frequent words from the lists of its
+	 * children. This is needed when a word becomes less frequent, since a word
+	 * that had been pushed out of the list may now belong back in it, and when
+	 * a word is removed, since the node may no longer need a list at all.
+	 * <p>
+	 * The children's lists must already be correct, so when fixing up a path
+	 * this has to be done from the bottom up.
+	 *
+	 * @param word The word ending at this node, which is only added to the list if the node is terminal
+	 */
+	public void rebuildTopWords(String word)
+	{
+		if (!keepsTopWords())
+		{
+			topWords = null;
+			topFrequencies = null;
+			topCount = 0;
+			return;
+		}
+
+		if (topWords != null)
+		{
+			Arrays.fill(topWords, 0, topCount, null);
+		}
+		topCount = 0;
+
+		// start from a copy of the first list below, which is already in order, then add everything else to it
+		int copied = -1;
+		for (int i = 0; i < numChildren && copied < 0; i++)
+		{
+			TrieNode end = getChildAt(i).endOfChain();
+			if (end.topCount > 0)
+			{
+				if (topWords == null || topWords.length < end.topCount)
+				{
+					topWords = new String[end.topCount];
+					topFrequencies = new int[end.topCount];
+				}
+				System.arraycopy(end.topWords, 0, topWords, 0, end.topCount);
+				System.arraycopy(end.topFrequencies, 0, topFrequencies, 0, end.topCount);
+				topCount = end.topCount;
+				copied = i;
+			}
+		}
+
+		if (terminal && hasData())
+		{
+			addTopWord(word, getFrequency());
+		}
+
+		for (int i = 0; i < numChildren; i++)
+		{
+			TrieNode end = getChildAt(i).endOfChain();
+			if (i == copied)
+			{
+				continue;
+			}
+			if (end.topWords != null)
+			{
+				for (int j = 0; j < end.topCount; j++)
+				{
+					addTopWord(end.topWords[j], end.topFrequencies[j]);
+				}
+			}
+			else if (end.terminal && end.hasData())
+			{
+				addTopWord(getChildAt(i).chainWord(word + getChildLabel(i)), end.getFrequency());
+			}
+		}
+	}
+
+	/**
+	 * Follow the chain of single children down from this node, to the first
+	 * node that keeps a list of most frequent words or has no children.
+	 */
+	private TrieNode endOfChain()
+	{
+		TrieNode node = this;
+		while (node.numChildren == 1 && !node.terminal)
+		{
+			node = node.getChildAt(0);
+		}
+		return node;
+	}
+
+	/**
+	 * Get the string for the end of the chain below this node. See {@link #endOfChain()}.
+	 *
+	 * @param word The string for this node
+	 */
+	private String chainWord(String word)
+	{
+		StringBuilder chain = new StringBuilder(word);
+		for (TrieNode node = this; node.numChildren == 1 && !node.terminal; node = node.getChildAt(0))
+		{
+			chain.append(node.getChildLabel(0));
+		}
+		return chain.toString();
+	}
+
+	/**
+	 * Whether one word should come before another in the list of most frequent words.
+	 */
+	private static boolean isBefore(String word, int frequency, String otherWord, int otherFrequency)
+	{
+		return (frequency > otherFrequency) || (frequency == otherFrequency && word.compareTo(otherWord) < 0);
+	}
+
+	/**
+	 * Get up to k of the most frequent words at or below this node, most frequent first.
+	 *
+	 * @param word The string for this node, which is needed if the only word below it is at the end of a chain
+	 * @param k    The maximum number of words to return, which can't usefully be more than {@code TOP_K_CAPACITY}
+	 * @return A copy of the first k words in the list
+	 */
+	public List<String> getTopWords(String word, int k)
+	{
+		TrieNode end = endOfChain();
+		if (k <= 0)
+		{
+			return new ArrayList<>();
+		}
+		if (end.topWords != null)
+		{
+			return new ArrayList<>(Arrays.asList(Arrays.copyOf(end.topWords, Math.min(k, end.topCount))));
+		}
+
+		List<String> words = new ArrayList<>();
+		if (end.terminal && end.hasData())
+		{
+			words.add(chainWord(word));
+		}
+		return words;
 	}
 
 	/**
@@ -80,13 +608,115 @@ public class TrieNode
 	}
 
 	/**
-	 * Add a new data object to the node, replacing data already there.
+	 * Get the data object attached to this node. The data is kept in a
+	 * {@link TrieDataTable}, so this is a new copy every time; use
+	 * {@link #getFrequency()} to avoid making one.
+	 *
+	 * @return The data for the word ending at this node, or null if there isn't any
+	 */
+	public TrieData getData()
+	{
+		return hasData() ? table.getData(ordinal) : null;
+	}
+
+	/**
+	 * Add a new data object to the node, replacing data already there. The
+	 * data goes in a new row of the table the node already uses, which for a
+	 * node in a trie is the trie's table (the old row is given back by
+	 * {@link Trie#compact()}). A node without a table, one that isn't part of
+	 * a trie, gets a table with room for just its own row. A trie calls
+	 * {@link #setData(TrieDataTable, int)} instead.
 	 *
 	 * @param dataObject The data object to be added to the node.
 	 */
 	public void addData(TrieData dataObject)
 	{
-		data = dataObject;
+		if (dataObject == null)
+		{
+			setData(null, -1);
+			return;
+		}
+
+		TrieDataTable dataTable = (table != null) ? table : new TrieDataTable(1);
+		setData(dataTable, dataTable.add(dataObject.getFrequency(), dataObject.getRank()));
+	}
+
+	/**
+	 * Point this node at a row of a table, replacing data already there.
+	 *
+	 * @param dataTable The table holding the row, or null to remove the data
+	 * @param row       The ordinal of the row
+	 */
+	void setData(TrieDataTable dataTable, int row)
+	{
+		table = dataTable;
+		ordinal = row;
+	}
+
+	TrieDataTable getTable()
+	{
+		return table;
+	}
+
+	int getOrdinal()
+	{
+		return ordinal;
+	}
+
+	/**
+	 * Return whether this node has data attached.
+	 */
+	public boolean hasData()
+	{
+		return table != null;
+	}
+
+	/**
+	 * Get the frequency of the word ending at this node.
+	 *
+	 * @return The frequency, or -1 if the node doesn't have any data
+	 */
+	public int getFrequency()
+	{
+		return hasData() ? table.getFrequency(ordinal) : -1;
+	}
+
+	/**
+	 * Get the rank of the word ending at this node.
+	 *
+	 * @return The rank, or -1 if the node doesn't have any data
+	 */
+	public int getRank()
+	{
+		return hasData() ? table.getRank(ordinal) : -1;
+	}
+
+	/**
+	 * Get the extra columns of the dictionary line the word ending at this
+	 * node was read from. See {@link TrieDataTable#getMetadata(int)}.
+	 *
+	 * @return The text after the frequency on the line, or "" if there isn't any
+	 */
+	public String getMetadata()
+	{
+		return hasData() ? table.getMetadata(ordinal) : "";
+	}
+
+	/**
+	 * Change the frequency of the word ending at this node, keeping its rank.
+	 * This doesn't fix maxFrequency or the lists of most frequent words; see
+	 * {@link Trie#setFrequency(String, int)}.
+	 */
+	void setFrequency(int frequency)
+	{
+		if (hasData())
+		{
+			table.setFrequency(ordinal, frequency);
+		}
+		else
+		{
+			addData(new TrieData(frequency));
+		}
 	}
 
 	/**
@@ -100,7 +730,6 @@ public class TrieNode
 	@Override
 	public String toString()
 	{
-		return "TrieNode; isTerminal=" + terminal + ", data=" + ((data == null) ? "null" : data.toString()) + ", #children=" + numChildren;
+		return "TrieNode; isTerminal=" + terminal + ", data=" + (hasData() ? String.valueOf(getFrequency()) : "null") + ", #children=" + numChildren;
 	}
 }
-
@@ -0,0 +1,41 @@
+import java.util.List;
+
+/**
+ * One part of a {@link ShardedTrie}, holding the words in one range. A shard
+ * can be a trie in the same JVM ({@link LocalTrieShard}) or a
+ * {@link CompletionServer} in another process ({@link RemoteTrieShard}).
+ * <p>
+ * The answers come with their frequencies, so that the answers from several
+ * shards can be merged.
+ */
+public interface TrieShard
+{
+	/**
+	 * A word and its frequency.
+	 */
+	record Completion(String word, int frequency)
+	{
+	}
+
+	/**
+	 * Find the most frequent word in this shard that begins with a prefix,
+	 * chosen the same way as {@link Trie#getMostFrequentWordWithPrefix(String)}.
+	 *
+	 * @return The word, or null if no word in this shard begins with the prefix
+	 */
+	Completion getMostFrequentWordWithPrefix(String prefix);
+
+	/**
+	 * Find up to k of the most frequent words in this shard that begin with a
+	 * prefix, most frequent first, in the same order as
+	 * {@link Trie#getTopKWordsWithPrefix(String, int)}.
+	 */
+	List<Completion> getTopKWordsWithPrefix(String prefix, int k);
+
+	/**
+	 * List the words in this shard that begin with a prefix, in alphabetical order.
+	 *
+	 * @param limit The most words to list
+	 */
+	List<String> getAlphabeticalListWithPrefix(String prefix, int limit);
+}
@@ -0,0 +1,108 @@
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Walks a {@link Trie} and reports its shape and estimated size: how many
+ * nodes and words it has, how many children the nodes have, how deep they
+ * are, and roughly how many bytes go on the nodes, the child arrays, the
+ * top-K lists, the words kept in those lists and the data table. See
+ * {@link StructureStats} for how the bytes are estimated.
+ * <p>
+ * Usage: {@code java TrieStats [dictionary]}, which also reports the trie
+ * again after {@link Trie#compact()}.
+ */
+public final class TrieStats
+{
+	private TrieStats()
+	{
+	}
+
+	/**
+	 * Walk a trie.
+	 *
+	 * @param name What the trie holds, for the report
+	 */
+	public static StructureStats of(Trie trie, String name)
+	{
+		StructureStats stats = new StructureStats("Trie of " + name);
+		// the same word is kept in the top-K list of every node on its path, so only count each String once
+		Set<String> words = Collections.newSetFromMap(new IdentityHashMap<>());
+		walk(trie.getRoot(), 0, stats, words);
+
+		for (String word : words)
+		{
+			stats.add("top-K words", 1, StructureStats.stringSize(word));
+		}
+		trie.getDataTable().addSizes(stats);
+		return stats;
+	}
+
+	private static void walk(TrieNode node, int depth, StructureStats stats, Set<String> words)
+	{
+		stats.count("nodes", 1);
+		stats.add("nodes", 1, StructureStats.shallowSize(TrieNode.class));
+		stats.record("fanout", node.getNumChildren());
+		stats.record("depth", depth);
+		if (node.isTerminal())
+		{
+			stats.count("terminals", 1);
+		}
+
+		// the shared empty arrays of a leaf cost nothing, and a dense node has no nodes array
+		long arrays = 0;
+		long arrayBytes = 0;
+		if (node.labels.length > 0)
+		{
+			arrays++;
+			arrayBytes += StructureStats.arraySize(char.class, node.labels.length);
+		}
+		if (node.nodes != null && node.nodes.length > 0)
+		{
+			arrays++;
+			arrayBytes += StructureStats.arraySize(TrieNode.class, node.nodes.length);
+		}
+		if (node.dense != null)
+		{
+			arrays++;
+			arrayBytes += StructureStats.arraySize(TrieNode.class, node.dense.length);
+			stats.count("dense nodes", 1);
+			stats.count("unused child slots", node.dense.length - node.getNumChildren());
+		}
+		else
+		{
+			stats.count("unused child slots", node.nodes.length - node.getNumChildren());
+		}
+		stats.add("child arrays", arrays, arrayBytes);
+
+		if (node.topWords != null)
+		{
+			stats.add("top-K lists", 2, StructureStats.arraySize(String.class, node.topWords.length)
+					+ StructureStats.arraySize(int.class, node.topFrequencies.length));
+			for (int i = 0; i < node.topCount; i++)
+			{
+				words.add(node.topWords[i]);
+			}
+		}
+
+		for (int i = 0; i < node.getNumChildren(); i++)
+		{
+			walk(node.getChildAt(i), depth + 1, stats, words);
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		String fileName = (args.length > 0) ? args[0] : "Trie/data/word-freq.expanded.trim.txt";
+
+		Trie trie = Trie.readInDictionary(fileName);
+		if (trie == null)
+		{
+			return;
+		}
+		System.out.println(of(trie, fileName));
+
+		trie.compact();
+		System.out.println(of(trie, fileName + " after compact()"));
+	}
+}
@@ -0,0 +1,127 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks every word below a node of a trie, in alphabetical order, one word at
+ * a time.
+ * <p>
+ * The children of a TrieNode are stored in order of their labels, so a
+ * depth-first walk that visits a node before its children finds the words
+ * already sorted. The walk keeps its own stack of nodes, each with the
+ * position of the next child to visit, and builds the words in a single
+ * StringBuilder, so nothing is allocated per node and the only cost of
+ * stopping early is the words that were never visited.
+ */
+public class TrieWordIterator implements Iterator<String>
+{
+	private TrieNode[] nodes = new TrieNode[16];
+	private int[] nextChild = new int[16];
+	private int depth;
+
+	// the word for the node at the top of the stack
+	private final StringBuilder word;
+
+	// the next word to return, or null if it hasn't been found yet
+	private String next = null;
+	private boolean startVisited = false;
+
+	/**
+	 * Create an iterator over the words at or below a node.
+	 *
+	 * @param start  The node to start at, or null for no words at all
+	 * @param prefix The string required to reach the starting node
+	 */
+	public TrieWordIterator(TrieNode start, String prefix)
+	{
+		word = new StringBuilder(prefix);
+		nodes[0] = start;
+		depth = (start == null) ? -1 : 0;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if (next == null)
+		{
+			next = findNext();
+		}
+		return next != null;
+	}
+
+	@Override
+	public String next()
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+
+		String result = next;
+		next = null;
+		return result;
+	}
+
+	/**
+	 * Continue the walk until the next terminal node.
+	 *
+	 * @return The word for the next terminal node, or null if there are no more
+	 */
+	private String findNext()
+	{
+		if (!startVisited && depth == 0)
+		{
+			startVisited = true;
+			if (nodes[0].isTerminal())
+			{
+				return word.toString();
+			}
+		}
+
+		while (depth >= 0)
+		{
+			TrieNode node = nodes[depth];
+			int index = nextChild[depth];
+
+			if (index < node.getNumChildren())
+			{
+				// go down to the next child
+				nextChild[depth] = index + 1;
+				push(node.getChildAt(index));
+				word.append(node.getChildLabel(index));
+
+				if (nodes[depth].isTerminal())
+				{
+					return word.toString();
+				}
+			}
+			else
+			{
+				// every child has been visited, so go back up
+				nodes[depth] = null;
+				if (depth > 0)
+				{
+					word.setLength(word.length() - 1);
+				}
+				depth--;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Push a node onto the stack, growing the stack if needed.
+	 */
+	private void push(TrieNode node)
+	{
+		depth++;
+		if (depth == nodes.length)
+		{
+			nodes = Arrays.copyOf(nodes, depth * 2);
+			nextChild = Arrays.copyOf(nextChild, depth * 2);
+		}
+		nodes[depth] = node;
+		nextChild[depth] = 0;
+	}
+}
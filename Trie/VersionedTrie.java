@@ -0,0 +1,83 @@
+import java.io.IOException;
+
+/**
+ * Serves the latest version of a {@link PersistentTrie} to any number of
+ * readers, while writers make new versions.
+ * <p>
+ * A reader calls {@link #snapshot()} and then asks that version as many
+ * questions as it likes. The version it holds never changes, so all its
+ * answers agree with each other even if the dictionary is reloaded half way
+ * through, and reading never takes a lock or waits for a writer. A writer
+ * builds the new version off to the side and then publishes it with a single
+ * volatile write, so readers see either the old version or the new one and
+ * never anything in between.
+ * <p>
+ * Writers take turns, so each batch is applied to the version made by the
+ * one before. An old version is garbage collected once the last reader
+ * holding it lets go, and since versions share everything that didn't change,
+ * a reload only needs extra memory for the words that changed.
+ */
+public class VersionedTrie
+{
+	private volatile PersistentTrie current = PersistentTrie.EMPTY;
+	private final Object writeLock = new Object();
+
+	/**
+	 * Get the latest version, for asking any number of questions of.
+	 */
+	public PersistentTrie snapshot()
+	{
+		return current;
+	}
+
+	/**
+	 * Make the changes in a batch, and publish the result as the latest version.
+	 *
+	 * @return The new version
+	 */
+	public PersistentTrie apply(PersistentTrie.Batch batch)
+	{
+		synchronized (writeLock)
+		{
+			current = current.apply(batch);
+			return current;
+		}
+	}
+
+	/**
+	 * Read a dictionary file again, and publish a version holding exactly its
+	 * words. Readers carry on using the old version while the file is read and
+	 * the new version is built.
+	 *
+	 * @param fileName The dictionary file
+	 * @return The new version
+	 * @throws IOException if the file can't be read, in which case the latest version is left alone
+	 */
+	public PersistentTrie reload(String fileName) throws IOException
+	{
+		// read the file before taking the lock, so other writers don't have to wait for it
+		PersistentTrie.Batch batch = PersistentTrie.Batch.readInDictionary(fileName);
+		return replaceWith(batch);
+	}
+
+	/**
+	 * Publish a version holding exactly the words put in a batch. See
+	 * {@link PersistentTrie#replaceWith(PersistentTrie.Batch)}.
+	 *
+	 * @return The new version
+	 */
+	public PersistentTrie replaceWith(PersistentTrie.Batch batch)
+	{
+		synchronized (writeLock)
+		{
+			current = current.replaceWith(batch);
+			return current;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "VersionedTrie; " + current;
+	}
+}